@@ -0,0 +1,77 @@
+package fluid.benchmark;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Scenario;
+import fluid.setup.Setup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares how sharp a blob of ink stays against what it costs, with the ink carried by the mass and traced by
+ * MacCormack advection, at full size and at half the cells along each side. The blob drifts across the grid once,
+ * so that it's moved as far through the fluid at either size.
+ * <p>
+ * Sharpness is the mean alpha of the ink, weighted by its alpha: 1 while the blob is all solid, falling towards 0 as
+ * it's smeared thin.
+ * <p>
+ * Arguments: the side length of the full size grid, then the scenarios to compare, the first being the baseline.
+ */
+public class AdvectionBenchmark {
+
+    private static final List<String> DEFAULT_SCENARIOS = Arrays.asList("ink-blob", "ink-blob-maccormack");
+
+    public static void main(String[] args) throws IOException {
+        int side = Benchmark.getArgument(args, 0, 128);
+        List<String> scenarios = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : DEFAULT_SCENARIOS;
+
+        // Not counted, so that the first scenario isn't timed while it's being compiled
+        Universe warmup = create(Scenario.load(scenarios.get(0)), side / 2);
+        Benchmark.timeSteps(warmup::updateUniverseState, 0, getCrossingSteps(warmup, side / 2));
+
+        double baseline = 0;
+        for (String name : scenarios) {
+            Scenario scenario = Scenario.load(name);
+            for (int size : new int[]{side, side / 2}) {
+                Universe universe = create(scenario, size);
+                int steps = getCrossingSteps(universe, size);
+                double millisPerStep = Benchmark.timeSteps(universe::updateUniverseState, 0, steps);
+                if (baseline == 0) {
+                    baseline = millisPerStep * steps;
+                }
+                Benchmark.report(name + " " + size + " x " + size, size * size, millisPerStep);
+                System.out.printf("%-40s %10.2f x baseline %10.3f sharpness%n", "", millisPerStep * steps / baseline, getSharpness(universe));
+            }
+        }
+    }
+
+    private static Universe create(Scenario scenario, int size) {
+        Universe universe = new Universe(Setup.createGrid(scenario, Subdomain.whole(size, size)));
+        universe.setInkAdvection(scenario.getInkAdvection());
+        return universe;
+    }
+
+    /**
+     * Steps for the fluid to move the width of the grid
+     */
+    private static int getCrossingSteps(Universe universe, int size) {
+        double deltaX = universe.getEntities()[0][0].getDeltaX();
+        return (int) Math.ceil(size * FluidEntity.SPACE / Math.abs(deltaX));
+    }
+
+    private static double getSharpness(Universe universe) {
+        double alpha = 0;
+        double squared = 0;
+        for (FluidEntity[] column : universe.getEntities()) {
+            for (FluidEntity entity : column) {
+                alpha += entity.getInkAlpha();
+                squared += entity.getInkAlpha() * entity.getInkAlpha();
+            }
+        }
+        return alpha == 0 ? 0 : squared / alpha;
+    }
+
+}
@@ -0,0 +1,49 @@
+package fluid.benchmark;
+
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Setup;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * How many bytes stepping the default universe allocates, per step and per cell, across every thread stepping it.
+ * Everything allocated in a step is garbage by the next, so this is most of what the collector has to keep up with.
+ * <p>
+ * Arguments: steps, then the side length of the grid. Needs a JVM that counts allocations by thread, as HotSpot does.
+ */
+public class AllocationBenchmark {
+
+    public static void main(String[] args) {
+        int steps = Benchmark.getArgument(args, 0, 100);
+        int side = Benchmark.getArgument(args, 1, 256);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM doesn't count allocations by thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Universe universe = new Universe(Setup.createGrid(Subdomain.whole(side, side)));
+        Setup.createInputs(side, side).forEach(universe::addInput);
+        for (int i = 0; i < steps / 4; i++) {
+            universe.updateUniverseState();
+        }
+
+        // The pool threads doing the parallel passes outlive the steps, so their counts can be read after
+        long before = getAllocatedBytes(threads);
+        for (int i = 0; i < steps; i++) {
+            universe.updateUniverseState();
+        }
+        long bytesPerStep = (getAllocatedBytes(threads) - before) / steps;
+
+        System.out.printf("%-40s %14d bytes/step %10.1f bytes/cell%n", side + " x " + side, bytesPerStep,
+                (double) bytesPerStep / (side * side));
+    }
+
+    private static long getAllocatedBytes(com.sun.management.ThreadMXBean threads) {
+        return Arrays.stream(threads.getThreadAllocatedBytes(threads.getAllThreadIds())).filter(bytes -> bytes > 0).sum();
+    }
+
+}
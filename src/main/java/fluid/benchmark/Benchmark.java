@@ -0,0 +1,32 @@
+package fluid.benchmark;
+
+/**
+ * Timing for the benchmark mains in this package. Nothing clever, so run them on a quiet machine and with enough
+ * steps for the results to settle.
+ */
+class Benchmark {
+
+    /**
+     * @return the mean milliseconds per step after the warmup steps
+     */
+    static double timeSteps(Runnable step, int warmupSteps, int steps) {
+        for (int i = 0; i < warmupSteps; i++) {
+            step.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            step.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / steps;
+    }
+
+    static int getArgument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    static void report(String name, int cells, double millisPerStep) {
+        System.out.printf("%-40s %10.3f ms/step %12.0f cells/s%n", name, millisPerStep, cells / millisPerStep * 1000);
+    }
+
+}
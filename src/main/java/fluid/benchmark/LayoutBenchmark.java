@@ -0,0 +1,43 @@
+package fluid.benchmark;
+
+import fluid.physics.CellLayout;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Setup;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares stepping the default universe with its grid kept in column-major order against Z-order, over square grids of a
+ * few sizes. The gap should open up once a grid no longer fits in cache.
+ * <p>
+ * Arguments: steps, then COLUMN_MAJOR, MORTON or ALL, then the side lengths of the grids. Java can't read the cache miss
+ * counters, so to see the miss rates behind the timings run one order and size at a time under perf, e.g.
+ * perf stat -e cache-references,cache-misses java ... fluid.benchmark.LayoutBenchmark 200 MORTON 1024
+ */
+public class LayoutBenchmark {
+
+    private static final int[] DEFAULT_SIDES = {64, 256, 1024};
+
+    public static void main(String[] args) {
+        int steps = Benchmark.getArgument(args, 0, 100);
+        List<CellLayout.Order> orders = args.length > 1 && !args[1].equals("ALL")
+                ? Arrays.asList(CellLayout.Order.valueOf(args[1]))
+                : Arrays.asList(CellLayout.Order.values());
+        int[] sides = args.length > 2
+                ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_SIDES;
+        int warmupSteps = steps / 4;
+
+        for (int side : sides) {
+            for (CellLayout.Order order : orders) {
+                Universe universe = new Universe(Setup.createGrid(Setup.getDefaultScenario(), Subdomain.whole(side, side), order));
+                Setup.createInputs(side, side).forEach(universe::addInput);
+                Benchmark.report(order + " " + side + " x " + side, side * side,
+                        Benchmark.timeSteps(universe::updateUniverseState, warmupSteps, steps));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package fluid.benchmark;
+
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Scenario;
+import fluid.setup.Setup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares stepping a box of a single fluid against the same box holding a mix of materials, to see what working out
+ * the properties of each cell's mix and carrying the fractions costs, and with them following equations of state other
+ * than an ideal gas and changing phase.
+ * <p>
+ * Arguments: steps, then the side length of the grid, then the scenarios to compare, the first being the baseline.
+ */
+public class MaterialBenchmark {
+
+    private static final List<String> DEFAULT_SCENARIOS = Arrays.asList("box", "air-water", "boiling");
+
+    public static void main(String[] args) throws IOException {
+        int steps = Benchmark.getArgument(args, 0, 100);
+        int side = Benchmark.getArgument(args, 1, 256);
+        List<String> scenarios = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : DEFAULT_SCENARIOS;
+        int warmupSteps = steps / 4;
+
+        double baseline = 0;
+        for (String name : scenarios) {
+            Scenario scenario = Scenario.load(name);
+            Universe universe = new Universe(Setup.createGrid(scenario, Subdomain.whole(side, side)));
+            scenario.createInputs(side, side).forEach(universe::addInput);
+
+            double millisPerStep = Benchmark.timeSteps(universe::updateUniverseState, warmupSteps, steps);
+            if (baseline == 0) {
+                baseline = millisPerStep;
+            }
+            Benchmark.report(name + " (" + scenario.getConstants().getMaterials().getCount() + " materials) " + side + " x " + side,
+                    side * side, millisPerStep);
+            System.out.printf("%-40s %10.2f x baseline%n", "", millisPerStep / baseline);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package fluid.benchmark;
+
+import fluid.distributed.DomainDecomposition;
+import fluid.distributed.PartitionedUniverse;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Setup;
+
+/**
+ * Compares stepping the default universe with parallel streams against splitting it between threads that each own a
+ * subdomain.
+ * <p>
+ * Arguments: width, height, steps, and the number of partition columns and rows, by default as many as there are
+ * processors, in one row. On a multi socket machine run with -XX:+UseNUMA, and compare with the process bound to one
+ * node (numactl --cpunodebind=0 --membind=0) to see how much crossing between sockets costs.
+ */
+public class PartitionBenchmark {
+
+    public static void main(String[] args) {
+        int width = Benchmark.getArgument(args, 0, Setup.getDefaultScenario().getWidth());
+        int height = Benchmark.getArgument(args, 1, Setup.getDefaultScenario().getHeight());
+        int steps = Benchmark.getArgument(args, 2, 200);
+        int columns = Benchmark.getArgument(args, 3, Runtime.getRuntime().availableProcessors());
+        int rows = Benchmark.getArgument(args, 4, 1);
+        int warmupSteps = steps / 4;
+
+        Universe universe = new Universe(Setup.createGrid(Subdomain.whole(width, height)));
+        Setup.createInputs(width, height).forEach(universe::addInput);
+        Benchmark.report("Parallel streams", width * height,
+                Benchmark.timeSteps(universe::updateUniverseState, warmupSteps, steps));
+
+        DomainDecomposition decomposition = new DomainDecomposition(width, height, columns, rows);
+        try (PartitionedUniverse partitioned = new PartitionedUniverse(decomposition, Setup::createGrid)) {
+            Setup.createInputs(width, height).forEach(partitioned::addInput);
+            Benchmark.report(columns + " x " + rows + " owned partitions", width * height,
+                    Benchmark.timeSteps(partitioned::updateUniverseState, warmupSteps, steps));
+        }
+    }
+
+}
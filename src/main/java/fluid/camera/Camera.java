@@ -4,6 +4,8 @@ import fluid.entity.DimensionalEntity;
 import fluid.entity.MobileDimensionalEntity;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 
+import java.util.stream.IntStream;
+
 /**
  * A camera in three dimensional space.
  * <p>
@@ -66,6 +68,13 @@ public class Camera implements MobileDimensionalEntity {
             {0, 0, 0, 1}});
 
 
+    // Points projected by each thread at a time
+    private static final int BATCH_SIZE = 4096;
+
+    // The translation then the rotations, as one row major 4x4 matrix, or null when the camera has moved or turned
+    // since it was last worked out
+    private volatile double[] transform;
+
     public Camera(double x, double y, double z) {
         this.x = x;
         this.y = y;
@@ -92,6 +101,7 @@ public class Camera implements MobileDimensionalEntity {
     public void setX(double x) {
         this.x = x;
         translationMatrix.setEntry(0, 3, -x);
+        transform = null;
     }
 
     @Override
@@ -123,6 +133,7 @@ public class Camera implements MobileDimensionalEntity {
     public void setY(double y) {
         this.y = y;
         translationMatrix.setEntry(1, 3, -y);
+        transform = null;
     }
 
     @Override
@@ -154,6 +165,7 @@ public class Camera implements MobileDimensionalEntity {
     public void setZ(double z) {
         this.z = z;
         translationMatrix.setEntry(2, 3, -z);
+        transform = null;
     }
 
     @Override
@@ -218,6 +230,7 @@ public class Camera implements MobileDimensionalEntity {
         xRotationMatrix.setEntry(1, 2, Math.sin(Math.toRadians(this.xAngle)));
         xRotationMatrix.setEntry(2, 1, -Math.sin(Math.toRadians(this.xAngle)));
         xRotationMatrix.setEntry(2, 2, -Math.cos(Math.toRadians(this.xAngle)));
+        transform = null;
     }
 
     private void incrementXAngle(double increment) {
@@ -234,6 +247,7 @@ public class Camera implements MobileDimensionalEntity {
         yRotationMatrix.setEntry(0, 2, -Math.sin(Math.toRadians(this.yAngle)));
         yRotationMatrix.setEntry(2, 0, Math.sin(Math.toRadians(this.yAngle)));
         yRotationMatrix.setEntry(2, 2, -Math.cos(Math.toRadians(this.yAngle)));
+        transform = null;
     }
 
     private void incrementYAngle(double increment) {
@@ -250,6 +264,7 @@ public class Camera implements MobileDimensionalEntity {
         zRotationMatrix.setEntry(0, 1, Math.sin(Math.toRadians(this.zAngle)));
         zRotationMatrix.setEntry(1, 0, -Math.sin(Math.toRadians(this.zAngle)));
         zRotationMatrix.setEntry(1, 1, -Math.cos(Math.toRadians(this.zAngle)));
+        transform = null;
     }
 
     private void incrementZAngle(double increment) {
@@ -384,4 +399,54 @@ public class Camera implements MobileDimensionalEntity {
         return zRotationMatrix.multiply(matrix);
     }
 
+
+    /**
+     * The translation and the rotations of {@link #translate} and the perform rotation methods, in that order, as one
+     * row major 4x4 matrix. Only worked out again after the camera moves or turns. Don't change it.
+     */
+    public double[] getTransform() {
+        double[] transform = this.transform;
+        if (transform == null) {
+            Array2DRowRealMatrix composed = zRotationMatrix.multiply(yRotationMatrix).multiply(xRotationMatrix).multiply(translationMatrix);
+            transform = new double[16];
+            for (int row = 0; row < 4; row++) {
+                for (int column = 0; column < 4; column++) {
+                    transform[4 * row + column] = composed.getEntry(row, column);
+                }
+            }
+            this.transform = transform;
+        }
+        return transform;
+    }
+
+    /**
+     * Projects points on a plane at the given depth onto the viewing plane, the further away the nearer its center,
+     * and at their size if they're eyeDistance from the camera. The camera's center lands on centerX, centerY. Points
+     * at or behind the camera come out as NaN.
+     * <p>
+     * Large batches are split between threads. Nothing is allocated for the points, so this can be called for every
+     * cell each frame.
+     */
+    public void project(final double[] xs, final double[] ys, final double z, final int count, final double eyeDistance,
+                        final double centerX, final double centerY, final double[] screenXs, final double[] screenYs) {
+        final double[] m = getTransform();
+        IntStream batches = IntStream.range(0, (count + BATCH_SIZE - 1) / BATCH_SIZE);
+        (count > BATCH_SIZE ? batches.parallel() : batches).forEach(batch -> {
+            int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+            for (int i = batch * BATCH_SIZE; i < end; i++) {
+                double x = xs[i];
+                double y = ys[i];
+                double depth = m[8] * x + m[9] * y + m[10] * z + m[11];
+                if (depth <= 0) {
+                    screenXs[i] = Double.NaN;
+                    screenYs[i] = Double.NaN;
+                    continue;
+                }
+                double distanceRatio = eyeDistance / depth;
+                screenXs[i] = (m[0] * x + m[1] * y + m[2] * z + m[3]) * distanceRatio + centerX;
+                screenYs[i] = (m[4] * x + m[5] * y + m[6] * z + m[7]) * distanceRatio + centerY;
+            }
+        });
+    }
+
 }
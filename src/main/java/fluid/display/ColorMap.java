@@ -0,0 +1,148 @@
+package fluid.display;
+
+import fluid.entity.Ink;
+
+/**
+ * Colors for the values of a field from min to max, worked out once into a table of packed ARGB, so that coloring a
+ * cell is a lookup of its value, rounded to the nearest of the table's entries, rather than a new color. Values
+ * outside the range take the color at its nearest end.
+ * <p>
+ * https://en.wikipedia.org/wiki/Lookup_table
+ */
+public final class ColorMap {
+
+    // Entries in the table, enough that neighbouring ones can't be told apart
+    private static final int SIZE = 1024;
+
+    /**
+     * Colors from the start to the end of a range, interpolated between stops spread evenly along it
+     */
+    public enum Palette {
+        /**
+         * Blue for the bottom of the range, fading to black in the middle, then to red at the top
+         */
+        HEAT(0xff0000ff, 0xff000000, 0xffff0000),
+
+        /**
+         * Black, from clear at the bottom of the range to opaque at the top
+         */
+        BLACK(0x00000000, 0xff000000),
+
+        /**
+         * Red, from clear to opaque
+         */
+        RED(0x00ff0000, 0xffff0000),
+
+        /**
+         * Green, from clear to opaque, and darker the clearer
+         */
+        GREEN(0x00000000, 0xff00ff00),
+
+        /**
+         * Opaque black to white
+         */
+        GRAY(0xff000000, 0xffffffff),
+
+        /**
+         * Perceptually uniform dark blue to yellow, which reads the same in grayscale and to most color blindness.
+         * https://bids.github.io/colormap/
+         */
+        VIRIDIS(0xff440154, 0xff472c7a, 0xff3b518b, 0xff2c718e, 0xff21908d, 0xff27ad81, 0xff5cc863, 0xffaadc32,
+                0xfffde725),
+
+        /**
+         * Perceptually uniform black to pale yellow, through purple and orange
+         */
+        INFERNO(0xff000004, 0xff1f0c48, 0xff550f6d, 0xff88226a, 0xffba3655, 0xffe35933, 0xfff98c0a, 0xfff9c932,
+                0xfffcffa4),
+
+        /**
+         * Diverging blue to red through light gray, for values either side of a middle such as the default
+         * temperature. http://www.kennethmoreland.com/color-maps/
+         */
+        COOLWARM(0xff3b4cc0, 0xff8db0fe, 0xffdddcdc, 0xfff49a7b, 0xffb40426);
+
+        private final int[] stops;
+
+        Palette(int... stops) {
+            this.stops = stops;
+        }
+
+        /**
+         * @param position 0 to 1 along the range
+         */
+        int getArgb(double position) {
+            double stop = position * (stops.length - 1);
+            int lower = Math.min((int) stop, stops.length - 2);
+            double fraction = stop - lower;
+            int from = stops[lower];
+            int to = stops[lower + 1];
+            return Ink.argb(interpolate(from >> 16 & 0xff, to >> 16 & 0xff, fraction),
+                    interpolate(from >> 8 & 0xff, to >> 8 & 0xff, fraction),
+                    interpolate(from & 0xff, to & 0xff, fraction),
+                    interpolate(from >>> 24, to >>> 24, fraction));
+        }
+
+        private static double interpolate(int from, int to, double fraction) {
+            return Math.max(0, Math.min(1, (from + fraction * (to - from)) / 255));
+        }
+    }
+
+    private final Palette palette;
+    private final double min;
+    private final double max;
+    private final int[] colors = new int[SIZE];
+    // Entries per unit of value
+    private final double scale;
+
+    public ColorMap(Palette palette, double min, double max) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException("Color map range must be from a min to a greater max, got " + min + " to " + max);
+        }
+        this.palette = palette;
+        this.min = min;
+        this.max = max;
+        scale = (SIZE - 1) / (max - min);
+        for (int i = 0; i < SIZE; i++) {
+            colors[i] = palette.getArgb(i / (double) (SIZE - 1));
+        }
+    }
+
+    /**
+     * Parses a palette and range given as PALETTE:min:max, such as VIRIDIS:0:600, with the range optional
+     *
+     * @param defaults for what isn't given
+     */
+    public static ColorMap parse(String value, ColorMap defaults) {
+        String[] parts = value.split(":");
+        if (parts.length != 1 && parts.length != 3) {
+            throw new IllegalArgumentException("Expected a palette, optionally followed by :min:max, got " + value);
+        }
+        Palette palette = parts[0].trim().isEmpty() ? defaults.palette : Palette.valueOf(parts[0].trim());
+        if (parts.length == 1) {
+            return new ColorMap(palette, defaults.min, defaults.max);
+        }
+        return new ColorMap(palette, Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim()));
+    }
+
+    /**
+     * @return packed ARGB, see {@link Ink}
+     */
+    public int getArgb(double value) {
+        int index = (int) ((value - min) * scale + .5);
+        return colors[index < 0 ? 0 : index >= SIZE ? SIZE - 1 : index];
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+}
@@ -2,12 +2,15 @@ package fluid.display;
 
 import fluid.camera.Camera;
 import fluid.entity.FluidEntity;
+import fluid.entity.Ink;
+import fluid.physics.DisplaySnapshot;
+import fluid.physics.GridGeometry;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 
-import java.awt.geom.Point2D;
 import java.util.stream.IntStream;
 
 public class FluidEntityCanvas extends Canvas {
@@ -16,10 +19,111 @@ public class FluidEntityCanvas extends Canvas {
 
     private static final int EYE_DISTANCE = 5000;
 
-    Array2DRowRealMatrix vector = new Array2DRowRealMatrix(new double[]{0, 0, 0, 1});
+    // TODO: Make this factor parameter a user controlled variable
+    private static final double VELOCITY_FACTOR = 20;
+
+    // Positions to project, then where they land on the canvas, reused each frame and grown as needed. Only touched
+    // on the JavaFX thread.
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] canvasXs = new double[0];
+    private double[] canvasYs = new double[0];
+    // Of the ends of the velocity lines
+    private double[] endXs = new double[0];
+    private double[] endYs = new double[0];
+    private double[] canvasEndXs = new double[0];
+    private double[] canvasEndYs = new double[0];
+
+    // Mass at which a cell's pixel is opaque when drawing mass
+    private static final double OPAQUE_MASS = 2 * FluidEntity.DEFAULT_MASS;
+
+    private static final int BLACK = 0xff000000;
+
+    // Each of JavaFX's Color.saturate() and darker() scales the color's HSB saturation or brightness by this
+    private static final double DERIVE_FACTOR = .7;
+    private static final double INK_SATURATION = 1 / (DERIVE_FACTOR * DERIVE_FACTOR * DERIVE_FACTOR);
+    private static final double INK_BRIGHTNESS = DERIVE_FACTOR * DERIVE_FACTOR;
+
+    public static final ColorMap DEFAULT_TEMPERATURE_MAP = new ColorMap(ColorMap.Palette.HEAT, 0, 2 * FluidEntity.DEFAULT_TEMPERATURE);
+    public static final ColorMap DEFAULT_MASS_MAP = new ColorMap(ColorMap.Palette.BLACK, 0, OPAQUE_MASS);
+    public static final ColorMap DEFAULT_VELOCITY_MAP = new ColorMap(ColorMap.Palette.RED, 0, FluidEntity.SPACE);
+    public static final ColorMap DEFAULT_SCALAR_MAP = new ColorMap(ColorMap.Palette.GREEN, 0, 1);
+
+    private volatile ColorMap temperatureMap = DEFAULT_TEMPERATURE_MAP;
+    private volatile ColorMap massMap = DEFAULT_MASS_MAP;
+    private volatile ColorMap velocityMap = DEFAULT_VELOCITY_MAP;
+    private volatile ColorMap scalarMap = DEFAULT_SCALAR_MAP;
+
+    // Colors of what was last drawn as shapes, in slots by a hash of their ARGB, so that the same few colors aren't
+    // made again for every cell each frame. Only touched on the JavaFX thread.
+    private static final int SHAPE_COLOR_BITS = 12;
+    private final int[] shapeArgbs = new int[1 << SHAPE_COLOR_BITS];
+    private final Color[] shapeColors = new Color[1 << SHAPE_COLOR_BITS];
 
     public enum DrawType {
-        INK, TEMPERATURE, VELOCITY, MASS
+        INK, TEMPERATURE, VELOCITY, MASS, SCALAR
+    }
+
+    /**
+     * How the cells are drawn
+     */
+    public enum Rendering {
+        /**
+         * A dot for each cell, sized by its mass, with lines for velocities. Each is its own call to the canvas, so
+         * they're slow to draw for large grids.
+         */
+        SHAPES,
+
+        /**
+         * A pixel for each cell, or for each block of cells where there are more cells than pixels to show them, its
+         * color worked out off the JavaFX thread, then written to an image at once and stretched over where the
+         * cells are on the canvas, see {@link #fillPixels} and {@link #drawPixels}
+         */
+        PIXELS
+    }
+
+    // The last filled frame, for drawing, and whether it's been drawn yet, both only touched holding the lock. The
+    // other frame is only touched by fillPixels, and swapped with the last filled once it's filled.
+    private final Object frameLock = new Object();
+    private Frame drawn = new Frame();
+    private boolean fresh;
+    private Frame filling = new Frame();
+    // Only touched by fillPixels: blocks of cells averaged together, where the grid's corners land on the canvas,
+    // and the tracers' positions
+    private DisplaySnapshot blocks;
+    private final double[] cornerXs = new double[2];
+    private final double[] cornerYs = new double[2];
+    private final double[] canvasCornerXs = new double[2];
+    private final double[] canvasCornerYs = new double[2];
+    private double[] tracerXs = new double[0];
+    private double[] tracerYs = new double[0];
+    // Only touched on the JavaFX thread
+    private WritableImage image;
+
+    /**
+     * Colors of the blocks of cells on the canvas, a row at a time from the top, packed ARGB, which cells they are
+     * and where they're drawn, and where the tracers are drawn
+     */
+    private static final class Frame {
+        private int[] pixels = new int[0];
+        private int width;
+        private int height;
+        // The bottom left block's bottom left cell, one past the top right block's top right cell, and cells along
+        // each side of a block. The top and right blocks are cut short where the cells don't fill them.
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+        private int block = 1;
+        // Where the outer edges of the top left and bottom right cells land on the canvas
+        private double left;
+        private double top;
+        private double right;
+        private double bottom;
+        // Where the tracers land on the canvas, NaN for those behind the camera
+        private double[] tracerXs = new double[0];
+        private double[] tracerYs = new double[0];
+        private int tracerCount;
     }
 
     public FluidEntityCanvas(int width, int height, Camera camera) {
@@ -27,130 +131,423 @@ public class FluidEntityCanvas extends Canvas {
         this.camera = camera;
     }
 
-    public void drawEntities(final FluidEntity[][] entities, final DrawType drawType) {
+    /**
+     * Sets the colors the cells are drawn by for the draw type, which is any but {@link DrawType#INK}, as the cells
+     * have their own colors of ink. Velocity is colored by speed, and only when drawing pixels, as shapes draw it as
+     * lines.
+     */
+    public void setColorMap(final DrawType drawType, final ColorMap colorMap) {
+        switch (drawType) {
+            case TEMPERATURE:
+                temperatureMap = colorMap;
+                break;
+            case MASS:
+                massMap = colorMap;
+                break;
+            case VELOCITY:
+                velocityMap = colorMap;
+                break;
+            case SCALAR:
+                scalarMap = colorMap;
+                break;
+            default:
+                throw new IllegalArgumentException("Cells are drawn in their own colors for " + drawType);
+        }
+    }
+
+    public void drawEntities(final DisplaySnapshot snapshot, final GridGeometry geometry, final DrawType drawType) {
+        drawEntities(snapshot, geometry, drawType, 0);
+    }
+
+    /**
+     * @param scalarField which of the grid's scalar fields to draw, for {@link DrawType#SCALAR}
+     */
+    public void drawEntities(final DisplaySnapshot snapshot, final GridGeometry geometry, final DrawType drawType, final int scalarField) {
         final double canvasWidth = getWidth();
         final double canvasHeight = getHeight();
         final GraphicsContext gc = getGraphicsContext2D();
         gc.clearRect(0, 0, canvasWidth, canvasHeight);
 
-        IntStream.range(0, entities.length).forEach(x -> IntStream.range(0, entities[x].length).forEach(y -> drawEntity(gc, camera, entities[x][y], canvasWidth, canvasHeight, drawType)));
+        int width = snapshot.getWidth();
+        int height = snapshot.getHeight();
+        int count = width * height;
+        ensureCapacity(count);
+        boolean velocity = drawType.equals(DrawType.VELOCITY);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int i = x * height + y;
+                xs[i] = geometry.getX(x);
+                ys[i] = geometry.getY(y);
+                if (velocity) {
+                    endXs[i] = xs[i] + snapshot.getVelocityX(x, y) * VELOCITY_FACTOR;
+                    endYs[i] = ys[i] + snapshot.getVelocityY(x, y) * VELOCITY_FACTOR;
+                }
+            }
+        }
+        project(xs, ys, geometry, count, canvasXs, canvasYs);
+        if (velocity) {
+            project(endXs, endYs, geometry, count, canvasEndXs, canvasEndYs);
+        }
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                drawEntity(gc, snapshot, x, y, x * height + y, drawType, scalarField);
+            }
+        }
     }
 
-    private void drawEntity(final GraphicsContext gc, Camera camera, final FluidEntity entity, final double canvasWidth, final double canvasHeight, final DrawType drawType) {
+    /**
+     * Works out the color of each pixel, split between threads, and where they and the snapshot's tracers land on the
+     * canvas, with what's filled drawn by the next {@link #drawPixels}. It's for a thread of its own, so that the
+     * JavaFX thread only draws, and is called one call at a time. The pixels are filled alternately into two frames,
+     * swapped once the fill is done, so a fill never writes to the frame being drawn.
+     * <p>
+     * Only the cells on the canvas are filled, and where there are more of them than pixels to show them, square
+     * blocks of them are averaged into a pixel each, with about a block to a pixel of the canvas, see
+     * {@link DisplaySnapshot#aggregate}. So the pixels filled and drawn are bounded by the size of the canvas rather
+     * than the grid.
+     * <p>
+     * https://en.wikipedia.org/wiki/Level_of_detail_(computer_graphics)
+     */
+    public void fillPixels(final DisplaySnapshot snapshot, final GridGeometry geometry, final DrawType drawType, final int scalarField) {
+        Frame frame = filling;
+        frame.width = 0;
+        frame.height = 0;
+        int width = snapshot.getWidth();
+        int height = snapshot.getHeight();
+
+        // The outer edges of the bottom left and top right cells
+        cornerXs[0] = geometry.getX(-.5);
+        cornerYs[0] = geometry.getY(-.5);
+        cornerXs[1] = geometry.getX(width - .5);
+        cornerYs[1] = geometry.getY(height - .5);
+        project(cornerXs, cornerYs, geometry, 2, canvasCornerXs, canvasCornerYs);
+        double cellSize = Math.abs(canvasCornerXs[1] - canvasCornerXs[0]) / width;
+        if (width > 0 && height > 0 && cellSize > 0 && !Double.isNaN(canvasCornerXs[0]) && !Double.isNaN(canvasCornerXs[1])) {
+            int minX = getFirstVisible(canvasCornerXs[0], canvasCornerXs[1], width, getWidth());
+            int maxX = getEndVisible(canvasCornerXs[0], canvasCornerXs[1], width, getWidth());
+            int minY = getFirstVisible(canvasCornerYs[0], canvasCornerYs[1], height, getHeight());
+            int maxY = getEndVisible(canvasCornerYs[0], canvasCornerYs[1], height, getHeight());
+            if (minX < maxX && minY < maxY) {
+                fillFrame(frame, snapshot, minX, minY, maxX, maxY, Math.max(1, (int) (1 / cellSize)), drawType, scalarField);
+                placeFrame(frame, geometry);
+            }
+        }
+        fillTracers(frame, snapshot, geometry);
 
-        double radius = 0;
-        Color color = Color.TRANSPARENT;
+        synchronized (frameLock) {
+            filling = drawn;
+            drawn = frame;
+            fresh = true;
+        }
+    }
 
-        // NOTE: When this stops being 2D will have to calculate radius
-        if (drawType.equals(DrawType.INK)) {
-            radius = Math.sqrt(entity.getMass()); // NOTE: Probably want to change this to cube root when we go 3d
-            color = entity.getColor();
-            // TODO: Some UI controlled value to do this instead
-            color = color.saturate().saturate().darker().darker().saturate();
-        } else if (drawType.equals(DrawType.TEMPERATURE)) {
-            radius = Math.sqrt(entity.getMass());
-            double temperature = entity.getTemperature();
-            if (temperature < FluidEntity.DEFAULT_TEMPERATURE) {
-                double normalizedCold = (FluidEntity.DEFAULT_TEMPERATURE - temperature) / FluidEntity.DEFAULT_TEMPERATURE;
-                color = new Color(0, 0, normalizedCold, 1);
-            } else {
-                double normalizedHot = (temperature - FluidEntity.DEFAULT_TEMPERATURE) / FluidEntity.DEFAULT_TEMPERATURE;
-                color = new Color(Math.min(1, normalizedHot), 0, 0, 1);
+    /**
+     * Fills the frame with the cells from min, inclusive, to max, exclusive, in blocks of the given size
+     */
+    private void fillFrame(final Frame frame, final DisplaySnapshot snapshot, final int minX, final int minY, final int maxX, final int maxY,
+                           final int block, final DrawType drawType, final int scalarField) {
+        final int width = (maxX - minX + block - 1) / block;
+        final int height = (maxY - minY + block - 1) / block;
+        final DisplaySnapshot cells;
+        final int offsetX;
+        final int offsetY;
+        if (block == 1) {
+            cells = snapshot;
+            offsetX = minX;
+            offsetY = minY;
+        } else {
+            if (blocks == null || blocks.getWidth() != width || blocks.getHeight() != height
+                    || blocks.getScalarCount() != snapshot.getScalarCount()) {
+                blocks = new DisplaySnapshot(width, height, snapshot.getScalarCount());
             }
-        } else if (drawType.equals(DrawType.VELOCITY)) {
-            radius = 1;
-            color = Color.BLACK;
-        } else if (drawType.equals(DrawType.MASS)) {
-            radius = Math.sqrt(entity.getMass()); // NOTE: Probably want to change this to cube root when we go 3
-            color = Color.BLACK;
+            blocks.aggregate(snapshot, minX, minY, block);
+            cells = blocks;
+            offsetX = 0;
+            offsetY = 0;
         }
 
-        if (radius < 1 || color.equals(Color.TRANSPARENT)) {
+        if (frame.pixels.length < width * height) {
+            frame.pixels = new int[width * height];
+        }
+        final int[] pixels = frame.pixels;
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int row = (height - 1 - y) * width;
+            for (int x = 0; x < width; x++) {
+                pixels[row + x] = getPixel(cells, offsetX + x, offsetY + y, drawType, scalarField);
+            }
+        });
+        frame.width = width;
+        frame.height = height;
+        frame.minX = minX;
+        frame.minY = minY;
+        frame.maxX = maxX;
+        frame.maxY = maxY;
+        frame.block = block;
+    }
+
+    /**
+     * Works out where the frame's cells are drawn on the canvas, or leaves it empty if they're behind the camera
+     */
+    private void placeFrame(final Frame frame, final GridGeometry geometry) {
+        cornerXs[0] = geometry.getX(frame.minX - .5);
+        cornerYs[0] = geometry.getY(frame.maxY - .5);
+        cornerXs[1] = geometry.getX(frame.maxX - .5);
+        cornerYs[1] = geometry.getY(frame.minY - .5);
+        project(cornerXs, cornerYs, geometry, 2, canvasCornerXs, canvasCornerYs);
+        if (Double.isNaN(canvasCornerXs[0]) || Double.isNaN(canvasCornerXs[1])) {
+            frame.width = 0;
+            frame.height = 0;
             return;
         }
+        frame.left = canvasCornerXs[0];
+        frame.top = canvasCornerYs[0];
+        frame.right = canvasCornerXs[1];
+        frame.bottom = canvasCornerYs[1];
+    }
 
-        Point2D.Double point = getCanvasLocation(camera, canvasWidth, canvasHeight, entity.getR4Matrix());
-        if (point == null) return;
+    /**
+     * Works out where the snapshot's tracers land on the canvas
+     */
+    private void fillTracers(final Frame frame, final DisplaySnapshot snapshot, final GridGeometry geometry) {
+        int count = snapshot.getTracerCount();
+        if (tracerXs.length < count) {
+            tracerXs = new double[count];
+            tracerYs = new double[count];
+        }
+        if (frame.tracerXs.length < count) {
+            frame.tracerXs = new double[count];
+            frame.tracerYs = new double[count];
+        }
+        for (int i = 0; i < count; i++) {
+            tracerXs[i] = geometry.getX(snapshot.getTracerX(i));
+            tracerYs[i] = geometry.getY(snapshot.getTracerY(i));
+        }
+        project(tracerXs, tracerYs, geometry, count, frame.tracerXs, frame.tracerYs);
+        frame.tracerCount = count;
+    }
 
-        double xP = point.getX();
-        double yP = point.getY();
+    /**
+     * The first of the count cells spanning from start to end along one of the canvas' axes that's on the canvas,
+     * which is the given size along it
+     */
+    private static int getFirstVisible(double start, double end, int count, double size) {
+        double cell = (end - start) / count;
+        return (int) Math.max(0, Math.floor(Math.min(-start / cell, (size - start) / cell)));
+    }
 
+    /**
+     * One past the last of the cells on the canvas, see {@link #getFirstVisible}
+     */
+    private static int getEndVisible(double start, double end, int count, double size) {
+        double cell = (end - start) / count;
+        return (int) Math.min(count, Math.ceil(Math.max(-start / cell, (size - start) / cell)));
+    }
 
-        // Subtract half the radius from the projection point, because g.fillOval does not surround the center point
+    /**
+     * Clears the canvas and draws the last filled pixels over where their cells are on it, in a single write to the
+     * image and a single draw of it, then the tracers over them. Nothing is drawn if nothing has been filled since the
+     * last draw, as it would be the same again. The fill waits for the draw to finish before it swaps frames.
+     *
+     * @return whether it drew
+     */
+    public boolean drawPixels() {
+        synchronized (frameLock) {
+            if (!fresh) return false;
+            fresh = false;
+            final Frame frame = drawn;
+            final GraphicsContext gc = getGraphicsContext2D();
+            gc.clearRect(0, 0, getWidth(), getHeight());
+            int width = frame.width;
+            int height = frame.height;
+            if (width > 0 && height > 0) {
+                if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                    image = new WritableImage(width, height);
+                }
+                image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), frame.pixels, 0, width);
+
+                // Only the part of the right and top pixels that their cells fill, so every block is drawn the same size
+                double blocksWide = (frame.maxX - frame.minX) / (double) frame.block;
+                double blocksHigh = (frame.maxY - frame.minY) / (double) frame.block;
+                gc.drawImage(image, 0, height - blocksHigh, blocksWide, blocksHigh,
+                        frame.left, frame.top, frame.right - frame.left, frame.bottom - frame.top);
+            }
+            drawDots(gc, frame.tracerXs, frame.tracerYs, frame.tracerCount);
+            return true;
+        }
+    }
 
-        gc.setFill(color);
-        gc.fillOval((int) xP - radius / 2, (int) yP - radius / 2, radius, radius);
+    /**
+     * The color of the cell's pixel, packed ARGB. Pixels are all the same size, so what the shapes show by their
+     * size, pixels show by their opacity.
+     */
+    private int getPixel(final DisplaySnapshot snapshot, final int x, final int y, final DrawType drawType, final int scalarField) {
+        if (drawType == DrawType.VELOCITY) {
+            double velocityX = snapshot.getVelocityX(x, y);
+            double velocityY = snapshot.getVelocityY(x, y);
+            return velocityMap.getArgb(Math.sqrt(velocityX * velocityX + velocityY * velocityY));
+        }
+        if (snapshot.getMass(x, y) < 1) {
+            return Ink.TRANSPARENT;
+        }
+        if (drawType == DrawType.MASS) {
+            return massMap.getArgb(snapshot.getMass(x, y));
+        }
+        return getArgb(snapshot, x, y, drawType, scalarField);
+    }
 
-        // Drawing where the entity is moving towards
+    /**
+     * Draws the snapshot's tracer particles as dots over whatever has been drawn, so after drawEntities. Pixels are
+     * drawn with their tracers, see {@link #drawPixels}.
+     */
+    public void drawTracers(final DisplaySnapshot snapshot, final GridGeometry geometry) {
+        int drawn = snapshot.getTracerCount();
+        ensureCapacity(drawn);
+        for (int i = 0; i < drawn; i++) {
+            xs[i] = geometry.getX(snapshot.getTracerX(i));
+            ys[i] = geometry.getY(snapshot.getTracerY(i));
+        }
+        project(xs, ys, geometry, drawn, canvasXs, canvasYs);
+        drawDots(getGraphicsContext2D(), canvasXs, canvasYs, drawn);
+    }
 
-        if (drawType.equals(DrawType.VELOCITY)) {
-            entity.getNextLocationAsFluidEntity(vector, 20); // TODO: Make this factor parameter a user controlled variable
-            Point2D.Double vectorPoint = getCanvasLocation(camera, canvasWidth, canvasHeight, vector);
-            gc.setStroke(Color.RED);
-            gc.strokeLine(xP, yP, vectorPoint.getX(), vectorPoint.getY());
+    /**
+     * Draws tracers at the given places on the canvas, skipping those that are NaN
+     */
+    private static void drawDots(final GraphicsContext gc, final double[] canvasXs, final double[] canvasYs, final int count) {
+        gc.setFill(Color.DIMGRAY);
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(canvasXs[i])) continue;
+            gc.fillRect(canvasXs[i], canvasYs[i], 1, 1);
         }
     }
 
     /**
-     * Looking into doing this all with matrix math for speed improvement.
-     * <p>
-     * http://www.matrix44.net/cms/notes/opengl-3d-graphics/basic-3d-math-matrices
-     *
-     * @param camera
-     * @param canvasWidth
-     * @param canvasHeight
-     * @return
-     */
-    private static Point2D.Double getCanvasLocation(Camera camera,
-                                                    final double canvasWidth,
-                                                    final double canvasHeight,
-                                                    Array2DRowRealMatrix entityMatrix) {
-
-        /* Starting offset from camera
-         * This is to set the camera at the center of things
-         * 0, 0 is now the location of the camera.
-         *
-         * Bear in mind that we are still using the coordinate system of the display,
-         * so something at 1, 1 would not be in the upper right quadrant, but would
-         * be in the lower right quadrant. 1, -1 would be in the upper right.
-         * May want to undo that later...
-         */
-        Array2DRowRealMatrix matrix = camera.translate(entityMatrix);
+     * @param index of the entity's position in the projected positions
+     */
+    private void drawEntity(final GraphicsContext gc, final DisplaySnapshot snapshot, final int x, final int y, final int index,
+                            final DrawType drawType, final int scalarField) {
+
+        // NOTE: When this stops being 2D will have to calculate radius
+        // NOTE: Probably want to change this to cube root when we go 3d
+        double radius = drawType == DrawType.VELOCITY ? 1 : Math.sqrt(snapshot.getMass(x, y));
+        if (radius < 1) {
+            return;
+        }
+        int argb = getArgb(snapshot, x, y, drawType, scalarField);
+        if (argb == Ink.TRANSPARENT) {
+            return;
+        }
 
+        double xP = canvasXs[index];
+        double yP = canvasYs[index];
+        if (Double.isNaN(xP)) return;
 
-        // Perform the rotations on the various axes
-        // Note: Apparently order matters here, which I am somewhat confused by.
 
-        // X axis rotation
-        matrix = camera.performXRotation(matrix);
+        // Subtract half the radius from the projection point, because g.fillOval does not surround the center point
+
+        gc.setFill(getShapeColor(argb));
+        gc.fillOval((int) xP - radius / 2, (int) yP - radius / 2, radius, radius);
 
-        // Y axis rotation
-        matrix = camera.performYRotation(matrix);
+        // Drawing where the entity is moving towards
 
-        // Z axis rotation
-        matrix = camera.performZRotation(matrix);
+        if (drawType.equals(DrawType.VELOCITY) && !Double.isNaN(canvasEndXs[index])) {
+            gc.setStroke(Color.RED);
+            gc.strokeLine(xP, yP, canvasEndXs[index], canvasEndYs[index]);
+        }
+    }
 
-        // Rotation is complete
-        double xP = matrix.getEntry(0, 0);
-        double yP = matrix.getEntry(1, 0);
-        double zP = matrix.getEntry(2, 0);
+    /**
+     * The color of the cell, packed ARGB. Shapes show mass by their size and velocity by their lines, so for those
+     * it's black.
+     */
+    private int getArgb(final DisplaySnapshot snapshot, final int x, final int y, final DrawType drawType, final int scalarField) {
+        switch (drawType) {
+            case INK:
+                return adjustInk(snapshot.getInk(x, y));
+            case TEMPERATURE:
+                return temperatureMap.getArgb(snapshot.getTemperature(x, y));
+            case SCALAR:
+                return scalarMap.getArgb(snapshot.getScalar(scalarField, x, y));
+            default:
+                return BLACK;
+        }
+    }
+
+    /**
+     * Ink as it used to be drawn, saturated three times and darkened twice, which as they scale separate parts of
+     * its HSB color is its saturation scaled by 1 / .7^3, up to 1, and its brightness by .7^2, with its hue kept.
+     * In RGB, brightness is the largest channel, and each channel keeps where it was between the smallest and largest
+     * as the saturation spreads them. It's worked out on the bytes of the channels, so it can round a channel a unit
+     * differently from the colors.
+     * <p>
+     * https://en.wikipedia.org/wiki/HSL_and_HSV
+     *
+     * @param ink packed ARGB, see {@link Ink}
+     */
+    static int adjustInk(final int ink) {
+        if (ink == Ink.TRANSPARENT) {
+            return Ink.TRANSPARENT;
+        }
+        // TODO: Some UI controlled value to do this instead
+        int red = ink >> 16 & 0xff;
+        int green = ink >> 8 & 0xff;
+        int blue = ink & 0xff;
+        int brightness = Math.max(red, Math.max(green, blue));
+        int spread = brightness - Math.min(red, Math.min(green, blue));
+        double adjustedBrightness = brightness * INK_BRIGHTNESS;
+        // Each channel's distance below the largest, as a fraction of the spread, scaled by the new saturation
+        double perSpread = spread == 0 ? 0 : Math.min(1, spread * INK_SATURATION / brightness) / spread;
+        return ink & 0xff000000
+                | toByte(adjustedBrightness * (1 - perSpread * (brightness - red))) << 16
+                | toByte(adjustedBrightness * (1 - perSpread * (brightness - green))) << 8
+                | toByte(adjustedBrightness * (1 - perSpread * (brightness - blue)));
+    }
 
-        // Objects with a negative zP will not be displayed.
-        // Objects with a 0 zP are assumed to be on the camera, covering the screen essentially
-        if (zP <= 0) return null;
+    private static int toByte(double channel) {
+        return (int) (Math.max(0, channel) + .5);
+    }
 
-        // Project onto viewing plane, ie the further away it is, the more it will appear towards the center
-        double distanceRatio = EYE_DISTANCE / zP;
-        xP = xP * distanceRatio;
-        yP = yP * distanceRatio;
+    /**
+     * The color for the ARGB, made only if it isn't the last one drawn in its slot
+     * <p>
+     * https://en.wikipedia.org/wiki/Hash_function#Fibonacci_hashing
+     */
+    private Color getShapeColor(final int argb) {
+        int slot = (argb * 0x9e3779b9) >>> (32 - SHAPE_COLOR_BITS);
+        Color color = shapeColors[slot];
+        if (color == null || shapeArgbs[slot] != argb) {
+            color = Color.rgb(argb >> 16 & 0xff, argb >> 8 & 0xff, argb & 0xff, (argb >>> 24) / 255.0);
+            shapeColors[slot] = color;
+            shapeArgbs[slot] = argb;
+        }
+        return color;
+    }
 
-        // Adding width / 2 and height / 2 to the mX and mY projections, so that 0,0 appears in the middle of the screen
-        // Resizing the radius, so that if an object's zP is equal to EYE_DISTANCE, it is shown at its default
-        // radius, otherwise smaller if further away, larger if closer.
-        xP += (canvasWidth / 2);
-        yP += (canvasHeight / 2);
+    /**
+     * Where the positions land on the canvas, NaN for those behind the camera, by the camera's transform.
+     * <p>
+     * We are still using the coordinate system of the display, so something at 1, 1 would not be in the upper right
+     * quadrant, but would be in the lower right quadrant. 1, -1 would be in the upper right. The camera's center is
+     * the middle of the canvas, and things at EYE_DISTANCE from the camera are shown at their size, otherwise smaller
+     * if further away, larger if closer.
+     * <p>
+     * http://www.matrix44.net/cms/notes/opengl-3d-graphics/basic-3d-math-matrices
+     */
+    private void project(double[] xs, double[] ys, GridGeometry geometry, int count, double[] canvasXs, double[] canvasYs) {
+        camera.project(xs, ys, geometry.getZ(), count, EYE_DISTANCE, getWidth() / 2, getHeight() / 2, canvasXs, canvasYs);
+    }
 
-        return new Point2D.Double(xP, yP);
+    private void ensureCapacity(int count) {
+        if (xs.length >= count) return;
+        xs = new double[count];
+        ys = new double[count];
+        canvasXs = new double[count];
+        canvasYs = new double[count];
+        endXs = new double[count];
+        endYs = new double[count];
+        canvasEndXs = new double[count];
+        canvasEndYs = new double[count];
     }
 
 }
@@ -0,0 +1,60 @@
+package fluid.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a scenario split between worker processes on this machine, one {@link SubdomainWorker} per
+ * subdomain, all on this process' classpath.
+ * <p>
+ * Takes the same arguments as the worker, apart from --rank. For example
+ * <pre>
+ * java -cp ... fluid.distributed.DistributedLauncher --columns 2 --rows 2 --steps 1000 --port 47000
+ * </pre>
+ */
+public class DistributedLauncher {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.exit(launch(args));
+    }
+
+    /**
+     * @return 0 if every worker succeeded
+     */
+    public static int launch(String... args) throws IOException, InterruptedException {
+        Map<String, String> arguments = SubdomainWorker.parseArguments(args);
+        if (arguments.containsKey("rank")) {
+            throw new IllegalArgumentException("Ranks are assigned by the launcher");
+        }
+        int ranks = Integer.parseInt(arguments.get("columns")) * Integer.parseInt(arguments.get("rows"));
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int rank = 0; rank < ranks; rank++) {
+                List<String> command = new ArrayList<>(Arrays.asList(
+                        java, "-cp", System.getProperty("java.class.path"), SubdomainWorker.class.getName(),
+                        "--rank", String.valueOf(rank)));
+                command.addAll(Arrays.asList(args));
+                workers.add(new ProcessBuilder(command).inheritIO().start());
+            }
+
+            int failures = 0;
+            for (Process worker : workers) {
+                if (worker.waitFor() != 0) {
+                    failures++;
+                    // The others would wait forever on its halo
+                    workers.forEach(Process::destroy);
+                }
+            }
+            return failures == 0 ? 0 : 1;
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package fluid.distributed;
+
+import fluid.physics.Subdomain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the simulation grid into columns x rows rectangular subdomains of as equal size as possible.
+ * <p>
+ * Subdomains are numbered by rank, counting along the lowest row of subdomains first.
+ */
+public class DomainDecomposition {
+
+    /**
+     * Matching and reflective boundary cells interact with the cell next to them, so a subdomain must be wide enough
+     * to hold both. It must also be as wide as the border, so that its neighbors' halos only reach into it.
+     */
+    private static final int MIN_SUBDOMAIN_SIZE = 2;
+
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+    private final int border;
+
+    public DomainDecomposition(int width, int height, int columns, int rows) {
+        this(width, height, columns, rows, Subdomain.DEFAULT_BORDER);
+    }
+
+    public DomainDecomposition(int width, int height, int columns, int rows, int border) {
+        int minSize = Math.max(MIN_SUBDOMAIN_SIZE, border);
+        if (columns < 1 || rows < 1 || width / columns < minSize || height / rows < minSize) {
+            throw new IllegalArgumentException("Cannot split a " + width + " x " + height + " grid into "
+                    + columns + " x " + rows + " subdomains with a border of " + border);
+        }
+        this.width = width;
+        this.height = height;
+        this.columns = columns;
+        this.rows = rows;
+        this.border = border;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRanks() {
+        return columns * rows;
+    }
+
+    public Subdomain getSubdomain(int rank) {
+        int column = rank % columns;
+        int row = rank / columns;
+        return new Subdomain(width, height,
+                getColumnStart(column), getRowStart(row),
+                getColumnStart(column + 1), getRowStart(row + 1), border);
+    }
+
+    /**
+     * Rank of the subdomain owning the cell at the given grid indices.
+     */
+    public int getOwner(int x, int y) {
+        // Inverse of getColumnStart, which rounds down
+        int column = ((x + 1) * columns - 1) / width;
+        int row = ((y + 1) * rows - 1) / height;
+        return row * columns + column;
+    }
+
+    /**
+     * Ranks of the subdomains bordering the given one, including diagonally, as advection can move mass into the
+     * corner of the halo.
+     */
+    public List<Integer> getNeighbors(int rank) {
+        int column = rank % columns;
+        int row = rank / columns;
+
+        List<Integer> neighbors = new ArrayList<>();
+        for (int neighborRow = row - 1; neighborRow <= row + 1; neighborRow++) {
+            for (int neighborColumn = column - 1; neighborColumn <= column + 1; neighborColumn++) {
+                if (neighborRow < 0 || neighborRow >= rows || neighborColumn < 0 || neighborColumn >= columns) continue;
+                if (neighborRow == row && neighborColumn == column) continue;
+                neighbors.add(neighborRow * columns + neighborColumn);
+            }
+        }
+        return neighbors;
+    }
+
+    private int getColumnStart(int column) {
+        return column * width / columns;
+    }
+
+    private int getRowStart(int row) {
+        return row * height / rows;
+    }
+
+}
@@ -0,0 +1,26 @@
+package fluid.distributed;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries halo messages between the subdomain workers. Messages between any two workers arrive in the order they
+ * were sent.
+ */
+public interface HaloTransport extends Closeable {
+
+    /**
+     * Queues the message, from its position to its limit, for sending without waiting for the receiver. The
+     * transport takes ownership of the buffer.
+     */
+    void send(int rank, ByteBuffer message);
+
+    /**
+     * Waits for the next message from the given worker.
+     */
+    ByteBuffer receive(int rank);
+
+    @Override
+    void close();
+
+}
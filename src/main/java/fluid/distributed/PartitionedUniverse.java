@@ -0,0 +1,176 @@
+package fluid.distributed;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.Grid;
+import fluid.physics.InputSource;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Function;
+
+/**
+ * The grid split into subdomains within this process, each owned by one thread for the life of the simulation.
+ * <p>
+ * Unlike the parallel streams of a single {@link Universe}, which hand cells to whichever thread is free on every
+ * pass, a thread here only ever touches its own subdomain's cells and the halo messages from its neighbors. It also
+ * creates its own cells, so with a NUMA aware allocator (-XX:+UseNUMA) they are placed in the memory of the socket
+ * the thread runs on.
+ */
+public class PartitionedUniverse implements AutoCloseable {
+
+    private final SharedMemoryHaloTransport transport;
+    private final Thread[] threads;
+    private final Universe[] universes;
+
+    // The caller and every partition thread meet at these, before and after each step
+    private final CyclicBarrier stepStart;
+    private final CyclicBarrier stepEnd;
+
+    /**
+     * References to the owned cells of every partition, laid out as the whole grid.
+     */
+    private final FluidEntity[][] entities;
+
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    /**
+     * @param gridFactory creates the cells held by a subdomain, including its halo. Called on the thread that owns
+     *                    the subdomain.
+     */
+    public PartitionedUniverse(DomainDecomposition decomposition, Function<Subdomain, Grid> gridFactory) {
+        int ranks = decomposition.getRanks();
+        transport = new SharedMemoryHaloTransport(ranks);
+        threads = new Thread[ranks];
+        universes = new Universe[ranks];
+        stepStart = new CyclicBarrier(ranks + 1);
+        stepEnd = new CyclicBarrier(ranks + 1);
+        entities = new FluidEntity[decomposition.getWidth()][decomposition.getHeight()];
+
+        CountDownLatch created = new CountDownLatch(ranks);
+        for (int rank = 0; rank < ranks; rank++) {
+            int threadRank = rank;
+            threads[rank] = new Thread(() -> run(decomposition, threadRank, gridFactory, created), "partition-" + rank);
+            threads[rank].setDaemon(true);
+            threads[rank].start();
+        }
+
+        try {
+            created.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while creating partitions", e);
+        }
+        if (failure != null) {
+            close();
+            checkFailure();
+        }
+    }
+
+    private void run(DomainDecomposition decomposition, int rank, Function<Subdomain, Grid> gridFactory, CountDownLatch created) {
+        Universe universe;
+        try {
+            Subdomain subdomain = decomposition.getSubdomain(rank);
+            Grid grid = gridFactory.apply(subdomain);
+            universe = new Universe(grid, subdomain,
+                    new TransportHaloExchange(decomposition, rank, transport.getTransport(rank)), false);
+            universes[rank] = universe;
+
+            for (int x = subdomain.getMinX(); x < subdomain.getMaxX(); x++) {
+                for (int y = subdomain.getMinY(); y < subdomain.getMaxY(); y++) {
+                    entities[x][y] = grid.getEntity(subdomain.toLocalX(x), subdomain.toLocalY(y));
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            fail(e);
+            return;
+        } finally {
+            created.countDown();
+        }
+
+        try {
+            while (true) {
+                stepStart.await();
+                if (!running) return;
+                universe.updateUniverseState();
+                stepEnd.await();
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // Closed, or another partition failed
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+        transport.abort();
+        stepStart.reset();
+        stepEnd.reset();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Partition failed", failure);
+        }
+    }
+
+    /**
+     * Run round of physics in every partition
+     */
+    public synchronized void updateUniverseState() {
+        checkFailure();
+        try {
+            stepStart.await();
+            stepEnd.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while stepping partitions", e);
+        } catch (BrokenBarrierException e) {
+            checkFailure();
+            throw new IllegalStateException("Partitions stopped", e);
+        }
+    }
+
+    public FluidEntity[][] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Adds the source to every partition, each acting on the cells of it that it owns.
+     */
+    public void addInput(InputSource source) {
+        for (Universe universe : universes) {
+            universe.addInput(source);
+        }
+    }
+
+    public void removeInput(InputSource source) {
+        for (Universe universe : universes) {
+            universe.removeInput(source);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package fluid.distributed;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Halo transport between threads of one process, each stepping its own subdomain.
+ * <p>
+ * A sent message is left in a buffer slot for the receiving thread, which reads it in place once every thread has
+ * reached the barrier that ends the sending half of the exchange. As each thread's halo exchanges send to all of its
+ * neighbors before receiving from any of them, the first receive after sending is where the barrier is awaited.
+ * <p>
+ * Each pair of threads has two slots per direction, used alternately: a slot is not written again until the sender
+ * has passed the next barrier, which the receiver only reaches after reading it.
+ */
+public class SharedMemoryHaloTransport {
+
+    private final int ranks;
+    private final CyclicBarrier barrier;
+
+    private final ByteBuffer[] slots;
+    private final int[] sendCounts;
+    private final int[] receiveCounts;
+
+    public SharedMemoryHaloTransport(int ranks) {
+        this.ranks = ranks;
+        barrier = new CyclicBarrier(ranks);
+        slots = new ByteBuffer[ranks * ranks * 2];
+        // Each count is only used by one thread, and the barrier publishes it along with the slots
+        sendCounts = new int[ranks * ranks];
+        receiveCounts = new int[ranks * ranks];
+    }
+
+    /**
+     * The transport for the thread stepping the given rank's subdomain.
+     */
+    public HaloTransport getTransport(int rank) {
+        return new RankTransport(rank);
+    }
+
+    /**
+     * Releases any threads waiting on the barrier, for when one of them has failed.
+     */
+    public void abort() {
+        barrier.reset();
+    }
+
+    private class RankTransport implements HaloTransport {
+
+        private final int rank;
+        private boolean sentSinceBarrier;
+
+        RankTransport(int rank) {
+            this.rank = rank;
+        }
+
+        @Override
+        public void send(int toRank, ByteBuffer message) {
+            int pair = rank * ranks + toRank;
+            slots[pair * 2 + sendCounts[pair] % 2] = message;
+            sendCounts[pair]++;
+            sentSinceBarrier = true;
+        }
+
+        @Override
+        public ByteBuffer receive(int fromRank) {
+            if (sentSinceBarrier) {
+                try {
+                    barrier.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for halo from rank " + fromRank, e);
+                } catch (BrokenBarrierException e) {
+                    throw new IllegalStateException("Another subdomain failed", e);
+                }
+                sentSinceBarrier = false;
+            }
+
+            int pair = fromRank * ranks + rank;
+            ByteBuffer message = slots[pair * 2 + receiveCounts[pair] % 2];
+            receiveCounts[pair]++;
+            return message;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
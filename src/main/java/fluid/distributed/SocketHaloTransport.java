@@ -0,0 +1,301 @@
+package fluid.distributed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Halo transport over loopback TCP, for workers running as separate processes on one machine.
+ * <p>
+ * Worker of rank r listens on basePort + r, and connects to each of its lower ranked neighbors. Once connected, all
+ * reading and writing is non-blocking, done by a single I/O thread, so that sends return immediately and the
+ * simulation thread carries on while messages are in flight. Messages are framed by a leading int length.
+ */
+public class SocketHaloTransport implements HaloTransport {
+
+    private static final int CONNECT_ATTEMPTS = 200;
+    private static final long CONNECT_RETRY_MILLIS = 50;
+    private static final long CLOSE_FLUSH_MILLIS = 5000;
+
+    /**
+     * Put in a receive queue when nothing more will arrive on that connection
+     */
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final Map<Integer, Connection> connections;
+    private final Selector selector;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Thread ioThread;
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private SocketHaloTransport(Map<Integer, Connection> connections) throws IOException {
+        this.connections = connections;
+        selector = Selector.open();
+        for (Connection connection : connections.values()) {
+            connection.channel.configureBlocking(false);
+            connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+
+        ioThread = new Thread(this::run, "halo-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Connects to all neighbors, waiting for them to start up if needed.
+     */
+    public static SocketHaloTransport open(int rank, Collection<Integer> neighbors, int basePort) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        Map<Integer, Connection> connections = new HashMap<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(loopback, basePort + rank));
+
+            int higherRankedNeighbors = 0;
+            for (int neighbor : neighbors) {
+                if (neighbor > rank) {
+                    higherRankedNeighbors++;
+                    continue;
+                }
+                SocketChannel channel = connect(new InetSocketAddress(loopback, basePort + neighbor));
+                ByteBuffer hello = ByteBuffer.allocate(Integer.BYTES).putInt(0, rank);
+                while (hello.hasRemaining()) {
+                    channel.write(hello);
+                }
+                connections.put(neighbor, new Connection(channel));
+            }
+
+            for (int i = 0; i < higherRankedNeighbors; i++) {
+                SocketChannel channel = server.accept();
+                ByteBuffer hello = ByteBuffer.allocate(Integer.BYTES);
+                while (hello.hasRemaining()) {
+                    if (channel.read(hello) < 0) {
+                        throw new IOException("Neighbor disconnected before identifying itself");
+                    }
+                }
+                int neighbor = hello.getInt(0);
+                if (!neighbors.contains(neighbor) || connections.containsKey(neighbor)) {
+                    throw new IOException("Unexpected connection from rank " + neighbor);
+                }
+                connections.put(neighbor, new Connection(channel));
+            }
+        } catch (IOException e) {
+            for (Connection connection : connections.values()) {
+                connection.channel.close();
+            }
+            throw e;
+        }
+
+        for (Connection connection : connections.values()) {
+            connection.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        return new SocketHaloTransport(connections);
+    }
+
+    private static SocketChannel connect(InetSocketAddress address) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return SocketChannel.open(address);
+            } catch (IOException e) {
+                // The neighbor may not be listening yet
+                if (attempt == CONNECT_ATTEMPTS) throw e;
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while connecting to " + address, interrupted);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void send(int rank, ByteBuffer message) {
+        Connection connection = getConnection(rank);
+
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + message.remaining());
+        frame.putInt(message.remaining());
+        frame.put(message);
+        frame.flip();
+
+        connection.outgoing.add(frame);
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public ByteBuffer receive(int rank) {
+        Connection connection = getConnection(rank);
+        ByteBuffer message;
+        try {
+            message = connection.incoming.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for halo from rank " + rank, e);
+        }
+        if (message == END_OF_STREAM) {
+            // Leave it for any later receives
+            connection.incoming.add(END_OF_STREAM);
+            throw new IllegalStateException("Connection to rank " + rank + " closed", failure);
+        }
+        return message;
+    }
+
+    private Connection getConnection(int rank) {
+        Connection connection = connections.get(rank);
+        if (connection == null) {
+            throw new IllegalArgumentException("Rank " + rank + " is not a neighbor");
+        }
+        return connection;
+    }
+
+    /**
+     * Waits for queued messages to be written before disconnecting, as the neighbors may still be waiting on them.
+     */
+    @Override
+    public void close() {
+        long deadline = System.currentTimeMillis() + CLOSE_FLUSH_MILLIS;
+        while (failure == null && System.currentTimeMillis() < deadline && hasUnsentMessages()) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join();
+            for (Connection connection : connections.values()) {
+                connection.channel.close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean hasUnsentMessages() {
+        for (Connection connection : connections.values()) {
+            if (!connection.outgoing.isEmpty()) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * I/O thread
+     */
+
+    private void run() {
+        try {
+            while (!closed) {
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    if (connection.key.isValid()) {
+                        connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    connection = (Connection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            for (Connection connection : connections.values()) {
+                connection.incoming.add(END_OF_STREAM);
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        while (true) {
+            ByteBuffer buffer = connection.body != null ? connection.body : connection.header;
+            int read = connection.channel.read(buffer);
+            if (read < 0) {
+                connection.key.cancel();
+                connection.incoming.add(END_OF_STREAM);
+                return;
+            }
+            if (buffer.hasRemaining()) {
+                // Wait for the rest to arrive
+                return;
+            }
+
+            if (connection.body == null) {
+                connection.body = ByteBuffer.allocate(connection.header.getInt(0));
+                connection.header.clear();
+            }
+            if (!connection.body.hasRemaining()) {
+                connection.body.flip();
+                connection.incoming.add(connection.body);
+                connection.body = null;
+            }
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer frame;
+        while ((frame = connection.outgoing.peek()) != null) {
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                // Socket buffer is full, carry on when it is writable again
+                return;
+            }
+            connection.outgoing.poll();
+        }
+        // Anything queued after this is followed by another pendingWrites entry
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private static class Connection {
+
+        final SocketChannel channel;
+        final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+        final BlockingQueue<ByteBuffer> incoming = new LinkedBlockingQueue<>();
+
+        final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        ByteBuffer body;
+
+        SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package fluid.distributed;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.Grid;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Scenario;
+import fluid.setup.Setup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process stepping one subdomain of a scenario, in lockstep with the workers for the other subdomains.
+ * <p>
+ * Arguments are --rank, --columns, --rows, --steps, --port, the base port of the workers' listeners, and optionally
+ * --scenario, a scenario file or the name of a built in one, --width and --height, by default the scenario's,
+ * --border, the width of the halo, and --output, a directory to write the owned cells' final state into.
+ */
+public class SubdomainWorker {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = parseArguments(args);
+        int rank = Integer.parseInt(arguments.get("rank"));
+        int steps = Integer.parseInt(arguments.get("steps"));
+        Scenario scenario = Scenario.load(arguments.getOrDefault("scenario", Scenario.DEFAULT));
+        DomainDecomposition decomposition = new DomainDecomposition(
+                Integer.parseInt(arguments.getOrDefault("width", String.valueOf(scenario.getWidth()))),
+                Integer.parseInt(arguments.getOrDefault("height", String.valueOf(scenario.getHeight()))),
+                Integer.parseInt(arguments.get("columns")),
+                Integer.parseInt(arguments.get("rows")),
+                Integer.parseInt(arguments.getOrDefault("border", String.valueOf(Subdomain.DEFAULT_BORDER))));
+        Subdomain subdomain = decomposition.getSubdomain(rank);
+
+        try (HaloTransport transport = SocketHaloTransport.open(rank, decomposition.getNeighbors(rank), Integer.parseInt(arguments.get("port")))) {
+            Universe universe = new Universe(Setup.createGrid(scenario, subdomain), subdomain,
+                    new TransportHaloExchange(decomposition, rank, transport));
+            Setup.configure(universe, scenario);
+
+            long start = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                universe.updateUniverseState();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("Rank " + rank + " stepped " + subdomain.getWidth() + " x " + subdomain.getHeight()
+                    + " cells " + steps + " times in " + seconds + "s");
+
+            if (arguments.containsKey("output")) {
+                writeState(universe, new File(arguments.get("output"), getOutputFileName(rank)));
+            }
+        }
+    }
+
+    static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> arguments = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs, got " + args[i]);
+            }
+            arguments.put(args[i].substring(2), args[++i]);
+        }
+        return arguments;
+    }
+
+    public static String getOutputFileName(int rank) {
+        return "subdomain-" + rank + ".dat";
+    }
+
+    /**
+     * Writes the number of owned cells, then for each their grid x and y, mass, temperature, deltaX and deltaY.
+     */
+    private static void writeState(Universe universe, File file) throws IOException {
+        Subdomain subdomain = universe.getSubdomain();
+        Grid grid = universe.getGrid();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(subdomain.getWidth() * subdomain.getHeight());
+            for (int x = subdomain.getMinX(); x < subdomain.getMaxX(); x++) {
+                for (int y = subdomain.getMinY(); y < subdomain.getMaxY(); y++) {
+                    FluidEntity entity = grid.getEntity(subdomain.toLocalX(x), subdomain.toLocalY(y));
+                    out.writeInt(x);
+                    out.writeInt(y);
+                    out.writeDouble(entity.getMass());
+                    out.writeDouble(entity.getTemperature());
+                    out.writeDouble(entity.getDeltaX());
+                    out.writeDouble(entity.getDeltaY());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package fluid.distributed;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.Grid;
+import fluid.physics.HaloExchange;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Halo exchange between the subdomains of a {@link DomainDecomposition}, over a {@link HaloTransport}.
+ * <p>
+ * Every neighbor is sent exactly one message per exchange, even when it is empty, so that each side always knows how
+ * many messages to wait for. Cells are identified by whole grid indices in the messages.
+ */
+public class TransportHaloExchange implements HaloExchange {
+
+    // mass, temperature, deltaX, deltaY, and the ink's red, green, blue and alpha, then each scalar field, as the mix
+    // of materials is among them
+    private static final int STATE_BYTES = 4 * Double.BYTES + 4 * Float.BYTES;
+    // origin x, origin y, target x, target y, proportion
+    private static final int TRANSFER_BYTES = 4 * Integer.BYTES + Double.BYTES;
+    // x, y, mass change, mass temperature, velocity x, velocity y, and the ink's red, green, blue and alpha, then the
+    // concentration of each scalar field
+    private static final int MASS_CHANGE_BYTES = 2 * Integer.BYTES + 4 * Double.BYTES + 4 * Float.BYTES;
+
+    private final DomainDecomposition decomposition;
+    private final Subdomain subdomain;
+    private final HaloTransport transport;
+
+    private final List<Neighbor> neighbors = new ArrayList<>();
+
+    private final Queue<HaloTransfer> haloTransfers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Stand ins for cells beyond the border, that a neighbor's cells pulled mass from this subdomain into. Only ever
+     * receive mass changes, which go straight back to the neighbor.
+     */
+    private final Map<Long, FluidEntity> remoteTargets = new HashMap<>();
+
+    public TransportHaloExchange(DomainDecomposition decomposition, int rank, HaloTransport transport) {
+        this.decomposition = decomposition;
+        this.subdomain = decomposition.getSubdomain(rank);
+        this.transport = transport;
+
+        for (int neighborRank : decomposition.getNeighbors(rank)) {
+            Subdomain neighborSubdomain = decomposition.getSubdomain(neighborRank);
+            neighbors.add(new Neighbor(neighborRank,
+                    getOverlap(subdomain, neighborSubdomain),
+                    getOverlap(neighborSubdomain, subdomain)));
+        }
+    }
+
+    /**
+     * The cells owned by the owner subdomain that are in the halo of the holder subdomain, in the order both sides
+     * use in state messages.
+     */
+    private static int[][] getOverlap(Subdomain holder, Subdomain owner) {
+        int minX = Math.max(holder.getMinX() - holder.getBorder(), owner.getMinX());
+        int maxX = Math.min(holder.getMaxX() + holder.getBorder(), owner.getMaxX());
+        int minY = Math.max(holder.getMinY() - holder.getBorder(), owner.getMinY());
+        int maxY = Math.min(holder.getMaxY() + holder.getBorder(), owner.getMaxY());
+
+        List<int[]> cells = new ArrayList<>();
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                cells.add(new int[]{x, y});
+            }
+        }
+        return cells.toArray(new int[cells.size()][]);
+    }
+
+
+    /**
+     * State of the edge cells
+     */
+
+    @Override
+    public void beginStateExchange(Universe universe) {
+        Grid grid = universe.getGrid();
+        int scalarCount = grid.getScalarFields().getCount();
+        for (Neighbor neighbor : neighbors) {
+            ByteBuffer message = ByteBuffer.allocate(neighbor.sentCells.length * (STATE_BYTES + scalarCount * Double.BYTES));
+            for (int[] cell : neighbor.sentCells) {
+                FluidEntity entity = grid.getEntity(subdomain.toLocalX(cell[0]), subdomain.toLocalY(cell[1]));
+                message.putDouble(entity.getMass());
+                message.putDouble(entity.getTemperature());
+                message.putDouble(entity.getDeltaX());
+                message.putDouble(entity.getDeltaY());
+                message.putFloat(entity.getInkRed());
+                message.putFloat(entity.getInkGreen());
+                message.putFloat(entity.getInkBlue());
+                message.putFloat(entity.getInkAlpha());
+                for (int field = 0; field < scalarCount; field++) {
+                    message.putDouble(entity.getScalar(field));
+                }
+            }
+            message.flip();
+            transport.send(neighbor.rank, message);
+        }
+    }
+
+    @Override
+    public void completeStateExchange(Universe universe) {
+        Grid grid = universe.getGrid();
+        int scalarCount = grid.getScalarFields().getCount();
+        for (Neighbor neighbor : neighbors) {
+            ByteBuffer message = transport.receive(neighbor.rank);
+            for (int[] cell : neighbor.haloCells) {
+                FluidEntity entity = grid.getEntity(subdomain.toLocalX(cell[0]), subdomain.toLocalY(cell[1]));
+                entity.clearPendingChanges();
+                entity.setMass(message.getDouble());
+                entity.setTemperature(message.getDouble());
+                entity.setDeltaX(message.getDouble());
+                entity.setDeltaY(message.getDouble());
+                entity.setInk(message.getFloat(), message.getFloat(), message.getFloat(), message.getFloat());
+                for (int field = 0; field < scalarCount; field++) {
+                    entity.setScalar(field, message.getDouble());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Mass pulled from halo cells
+     */
+
+    @Override
+    public void recordHaloTransfer(int originX, int originY, int targetX, int targetY, double proportion) {
+        haloTransfers.add(new HaloTransfer(
+                subdomain.toGridX(originX), subdomain.toGridY(originY),
+                subdomain.toGridX(targetX), subdomain.toGridY(targetY),
+                proportion));
+    }
+
+    @Override
+    public void exchangeTransferProportions(Universe universe) {
+        Map<Integer, List<HaloTransfer>> transfersByOwner = new HashMap<>();
+        for (Neighbor neighbor : neighbors) {
+            transfersByOwner.put(neighbor.rank, new ArrayList<>());
+        }
+        HaloTransfer transfer;
+        while ((transfer = haloTransfers.poll()) != null) {
+            transfersByOwner.get(decomposition.getOwner(transfer.originX, transfer.originY)).add(transfer);
+        }
+
+        for (Neighbor neighbor : neighbors) {
+            List<HaloTransfer> transfers = transfersByOwner.get(neighbor.rank);
+            ByteBuffer message = ByteBuffer.allocate(Integer.BYTES + transfers.size() * TRANSFER_BYTES);
+            message.putInt(transfers.size());
+            for (HaloTransfer sent : transfers) {
+                message.putInt(sent.originX);
+                message.putInt(sent.originY);
+                message.putInt(sent.targetX);
+                message.putInt(sent.targetY);
+                message.putDouble(sent.proportion);
+            }
+            message.flip();
+            transport.send(neighbor.rank, message);
+        }
+
+        Grid grid = universe.getGrid();
+        for (Neighbor neighbor : neighbors) {
+            ByteBuffer message = transport.receive(neighbor.rank);
+            int count = message.getInt();
+            for (int i = 0; i < count; i++) {
+                int originX = message.getInt();
+                int originY = message.getInt();
+                int targetX = message.getInt();
+                int targetY = message.getInt();
+                double proportion = message.getDouble();
+
+                FluidEntity origin = grid.getEntity(subdomain.toLocalX(originX), subdomain.toLocalY(originY));
+                FluidEntity target;
+                if (subdomain.holds(targetX, targetY)) {
+                    target = grid.getEntity(subdomain.toLocalX(targetX), subdomain.toLocalY(targetY));
+                } else {
+                    target = remoteTargets.computeIfAbsent(getKey(targetX, targetY), key -> {
+                        FluidEntity remoteTarget = new FluidEntity(0, 0);
+                        grid.getScalarFields().attachDetached(remoteTarget);
+                        return remoteTarget;
+                    });
+                }
+                origin.recordMassTransferTo(target, proportion);
+            }
+        }
+    }
+
+
+    /**
+     * Mass pushed into halo cells
+     */
+
+    @Override
+    public void exchangeMassChanges(Universe universe) {
+        Grid grid = universe.getGrid();
+        int scalarCount = grid.getScalarFields().getCount();
+
+        Map<Integer, List<MassChange>> changesByOwner = new HashMap<>();
+        for (Neighbor neighbor : neighbors) {
+            List<MassChange> changes = new ArrayList<>();
+            for (int[] cell : neighbor.haloCells) {
+                grid.getEntity(subdomain.toLocalX(cell[0]), subdomain.toLocalY(cell[1]))
+                        .drainMassChanges(record -> changes.add(new MassChange(cell[0], cell[1], record)));
+            }
+            changesByOwner.put(neighbor.rank, changes);
+        }
+        for (Map.Entry<Long, FluidEntity> remoteTarget : remoteTargets.entrySet()) {
+            int x = (int) (remoteTarget.getKey() >> 32);
+            int y = (int) (long) remoteTarget.getKey();
+            List<MassChange> changes = changesByOwner.get(decomposition.getOwner(x, y));
+            remoteTarget.getValue().drainMassChanges(record -> changes.add(new MassChange(x, y, record)));
+        }
+        remoteTargets.clear();
+
+        for (Neighbor neighbor : neighbors) {
+            List<MassChange> changes = changesByOwner.get(neighbor.rank);
+            ByteBuffer message = ByteBuffer.allocate(Integer.BYTES + changes.size() * (MASS_CHANGE_BYTES + scalarCount * Double.BYTES));
+            message.putInt(changes.size());
+            for (MassChange change : changes) {
+                message.putInt(change.x);
+                message.putInt(change.y);
+                message.putDouble(change.record.getMassChange());
+                message.putDouble(change.record.getMassTemperature());
+                message.putDouble(change.record.getVelocityX());
+                message.putDouble(change.record.getVelocityY());
+                message.putFloat(change.record.getInkRed());
+                message.putFloat(change.record.getInkGreen());
+                message.putFloat(change.record.getInkBlue());
+                message.putFloat(change.record.getInkAlpha());
+                for (double concentration : change.record.getScalars()) {
+                    message.putDouble(concentration);
+                }
+            }
+            message.flip();
+            transport.send(neighbor.rank, message);
+        }
+
+        for (Neighbor neighbor : neighbors) {
+            ByteBuffer message = transport.receive(neighbor.rank);
+            int count = message.getInt();
+            for (int i = 0; i < count; i++) {
+                int x = message.getInt();
+                int y = message.getInt();
+                double massChange = message.getDouble();
+                double massTemperature = message.getDouble();
+                double velocityX = message.getDouble();
+                double velocityY = message.getDouble();
+                float inkRed = message.getFloat();
+                float inkGreen = message.getFloat();
+                float inkBlue = message.getFloat();
+                float inkAlpha = message.getFloat();
+                double[] scalars = new double[scalarCount];
+                for (int j = 0; j < scalarCount; j++) {
+                    scalars[j] = message.getDouble();
+                }
+                FluidEntity.MassChangeRecord record = new FluidEntity.MassChangeRecord(massChange, massTemperature,
+                        velocityX, velocityY, inkRed, inkGreen, inkBlue, inkAlpha, scalars);
+                grid.getEntity(subdomain.toLocalX(x), subdomain.toLocalY(y)).recordMassChange(record);
+            }
+        }
+    }
+
+
+    /**
+     * Encoding
+     */
+
+    private static long getKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static class Neighbor {
+
+        final int rank;
+        // This subdomain's halo cells owned by the neighbor
+        final int[][] haloCells;
+        // This subdomain's cells in the neighbor's halo
+        final int[][] sentCells;
+
+        Neighbor(int rank, int[][] haloCells, int[][] sentCells) {
+            this.rank = rank;
+            this.haloCells = haloCells;
+            this.sentCells = sentCells;
+        }
+    }
+
+    private static class HaloTransfer {
+
+        final int originX;
+        final int originY;
+        final int targetX;
+        final int targetY;
+        final double proportion;
+
+        HaloTransfer(int originX, int originY, int targetX, int targetY, double proportion) {
+            this.originX = originX;
+            this.originY = originY;
+            this.targetX = targetX;
+            this.targetY = targetY;
+            this.proportion = proportion;
+        }
+    }
+
+    private static class MassChange {
+
+        final int x;
+        final int y;
+        final FluidEntity.MassChangeRecord record;
+
+        MassChange(int x, int y, FluidEntity.MassChangeRecord record) {
+            this.x = x;
+            this.y = y;
+            this.record = record;
+        }
+    }
+
+}
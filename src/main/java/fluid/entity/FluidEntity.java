@@ -1,102 +1,86 @@
 package fluid.entity;
 
+import fluid.physics.MaterialTable;
+import fluid.physics.PhysicalConstants;
 import fluid.physics.Universe;
-import javafx.scene.paint.Color;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * http://cowboyprogramming.com/2008/04/01/practical-fluid-mechanics/
  * <p>
  * Created by mjanes on 6/12/2014.
  */
-public class FluidEntity implements DimensionalEntity {
+public class FluidEntity {
 
     public static final double FUZZ = .0000001;
 
     public static final int SPACE = 5; // spacing between entities, currently writing this that they must be placed on a grid
-    private static final double GAS_CONSTANT = .02;
 
     public static final double DEFAULT_TEMPERATURE = 10;
     public static final double DEFAULT_MASS = 10;
-    static final Color DEFAULT_COLOR = Color.TRANSPARENT;
 
     public static final double CELL_AREA = Math.pow(SPACE, 2);
 
+    // Of fluid of no material
+    private static final double DEFAULT_MOLAR_WEIGHT = 1;
+    private static final double DEFAULT_VISCOSITY = .1;
+    private static final double DEFAULT_DENSITY = 1;
 
-    private double x;
-    private double y;
-    private double z;
-
-    private final Array2DRowRealMatrix r4Matrix = new Array2DRowRealMatrix(new double[]{0, 0, 0, 1});
 
     private double deltaX;
     private double deltaY;
     private double deltaZ;
     protected double mass;
     protected double temperature;
-    private Color color;
+    // Ink, kept as primitive channels rather than a color object so that mixing it doesn't allocate
+    private float inkRed;
+    private float inkGreen;
+    private float inkBlue;
+    private float inkAlpha;
+    private PhysicalConstants constants = PhysicalConstants.DEFAULT;
+
+    // This entity's slice of its grid's passive scalars, and of the sums of those moving in, see ScalarFields
+    private double[] scalars;
+    private double[] incomingScalars;
+    private int scalarOffset;
+    private int scalarCount;
+
+    // The properties of the entity's mix of materials, worked out again whenever the mix changes rather than on each
+    // use, as the kernels read them for every neighbor
+    private double molarWeight;
+    private double conductivity;
+    private double viscosity;
+    private double restDensity;
+
+    // As of the start of the step, worked out once for the neighbors to read rather than for each of them
+    private double pressure;
 
     final ConcurrentHashMap<FluidEntity, Double> massTransferRecords = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<MassChangeRecord, Integer> massChangeRecords = new ConcurrentHashMap<>();
 
     private double pendingDeltaMass;
     private double pendingDeltaHeat;
     private double pendingDeltaForceX;
     private double pendingDeltaForceY;
 
+    // Mass moving in, summed as it's recorded. Everything else is weighted by the mass it comes with, so that it can
+    // be mixed in all at once without keeping a record of each transfer.
+    private double incomingMass;
+    private double incomingHeat;
+    private double incomingMomentumX;
+    private double incomingMomentumY;
+    private double incomingInkRed;
+    private double incomingInkGreen;
+    private double incomingInkBlue;
+    private double incomingInkAlpha;
+
 
-    public FluidEntity(double x, double y, double z, double mass, double temperature) {
-        setX(x);
-        setY(y);
-        setZ(z);
+    public FluidEntity(double mass, double temperature) {
         setMass(mass);
         setTemperature(temperature);
-        setColor(Color.TRANSPARENT);
-    }
-
-    @Override
-    public synchronized void setX(double x) {
-        this.x = x;
-        r4Matrix.setEntry(0, 0, x);
-    }
-
-    @Override
-    public synchronized double getX() {
-        return x;
-    }
-
-    @Override
-    public synchronized void setY(double y) {
-        this.y = y;
-        r4Matrix.setEntry(1, 0, y);
-    }
-
-    @Override
-    public synchronized double getY() {
-        return y;
-    }
-
-    @Override
-    public synchronized void setZ(double z) {
-        this.z = z;
-        r4Matrix.setEntry(2, 0, z);
-    }
-
-    @Override
-    public synchronized double getZ() {
-        return z;
-    }
-
-    @Override
-    public synchronized double getDistance(DimensionalEntity other) {
-        return DimensionalEntity.getDistance(this, other);
-    }
-
-    @Override
-    public synchronized Array2DRowRealMatrix getR4Matrix() {
-        return r4Matrix;
+        updateMixture();
+        updatePressure();
     }
 
 
@@ -128,19 +112,11 @@ public class FluidEntity implements DimensionalEntity {
         addDeltaX(forceX / mass);
     }
 
-    private double getForceX() {
-        return deltaX * mass;
-    }
-
 
     public synchronized void setDeltaY(double deltaY) {
         this.deltaY = deltaY;
     }
 
-    private double getForceY() {
-        return deltaY * mass;
-    }
-
     private synchronized void addDeltaY(double deltaDeltaY) {
         setDeltaY(deltaY + deltaDeltaY);
     }
@@ -200,11 +176,52 @@ public class FluidEntity implements DimensionalEntity {
         return mass;
     }
 
-    public synchronized void addMass(double deltaMass, double massTemperature, Color color) {
-        addMass(deltaMass, massTemperature, 0, 0, color);
+    public synchronized void addMass(double deltaMass, double massTemperature, int ink) {
+        addMass(deltaMass, massTemperature, 0, 0, ink);
+    }
+
+    /**
+     * @param ink packed ARGB, see {@link Ink}
+     */
+    public synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY, int ink) {
+        addMass(deltaMass, massTemperature, incomingDeltaX, incomingDeltaY, Ink.red(ink), Ink.green(ink), Ink.blue(ink), Ink.alpha(ink));
+    }
+
+    /**
+     * @param ink     packed ARGB, see {@link Ink}
+     * @param scalars concentration of each of the grid's scalar fields in the mass, in their order
+     */
+    public synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY, int ink, double[] scalars) {
+        addMass(deltaMass, massTemperature, incomingDeltaX, incomingDeltaY, ink);
+        addScalars(deltaMass, scalars);
+    }
+
+    /**
+     * Adds mass without any ink, but with the given concentration of each of the grid's scalar fields, in their order.
+     */
+    public synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY, double[] scalars) {
+        addMass(deltaMass, massTemperature, incomingDeltaX, incomingDeltaY);
+        addScalars(deltaMass, scalars);
     }
 
-    public synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY, Color color) {
+    // For mass just added, which has already diluted what was there
+    private void addScalars(double deltaMass, double[] scalars) {
+        if (deltaMass <= 0) return;
+        for (int i = 0; i < Math.min(scalarCount, scalars.length); i++) {
+            this.scalars[scalarOffset + i] += scalars[i] * deltaMass / mass;
+        }
+        updateMixture();
+    }
+
+    /**
+     * Adds mass without any ink, leaving this entity's as it is.
+     */
+    public synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY) {
+        addMass(deltaMass, massTemperature, incomingDeltaX, incomingDeltaY, inkRed, inkGreen, inkBlue, inkAlpha);
+    }
+
+    private synchronized void addMass(double deltaMass, double massTemperature, double incomingDeltaX, double incomingDeltaY,
+                                      float red, float green, float blue, float alpha) {
         if (deltaMass < 0) {
             System.out.println("Negative delta mass in addMass");
             return;
@@ -231,41 +248,168 @@ public class FluidEntity implements DimensionalEntity {
         setDeltaY(newDeltaY);
         setTemperature(newTemperature);
 
-        if (!(color == null || color.equals(this.color))) {
+        // Scalars are only carried by mass moving between cells, so any other mass dilutes them
+        for (int i = scalarOffset; i < scalarOffset + scalarCount; i++) {
+            scalars[i] *= oldProportion;
+        }
+        if (oldProportion == 0) {
+            // Diluting only changes the mix of materials when it takes all of them away
+            updateMixture();
+        }
+
+        if (red != inkRed || green != inkGreen || blue != inkBlue || alpha != inkAlpha) {
             // Ink - doing this in a separate block
-            double prevRed = this.color.getRed();
-            double prevGreen = this.color.getGreen();
-            double prevBlue = this.color.getBlue();
-            double prevAlpha = this.color.getOpacity();
+            inkRed = mixInk(inkRed, red, oldProportion, newProportion);
+            inkGreen = mixInk(inkGreen, green, oldProportion, newProportion);
+            inkBlue = mixInk(inkBlue, blue, oldProportion, newProportion);
+            inkAlpha = mixInk(inkAlpha, alpha, oldProportion, newProportion);
+        }
+    }
 
-            double newRed = prevRed * oldProportion + color.getRed() * newProportion;
-            double newGreen = prevGreen * oldProportion + color.getGreen() * newProportion;
-            double newBlue = prevBlue * oldProportion + color.getBlue() * newProportion;
-            double newAlpha = prevAlpha * oldProportion + color.getOpacity() * newProportion;
+    private static float mixInk(float previous, float incoming, double oldProportion, double newProportion) {
+        double mixed = previous * oldProportion + incoming * newProportion;
+        if (mixed < 0) return 0;
+        if (mixed > 1) return 1;
+        return (float) mixed;
+    }
 
-            if (newRed < 0) newRed = 0;
-            if (newGreen < 0) newGreen = 0;
-            if (newBlue < 0) newBlue = 0;
-            if (newAlpha < 0) newAlpha = 0;
-            if (newRed > 1) newRed = 1;
-            if (newGreen > 1) newGreen = 1;
-            if (newBlue > 1) newBlue = 1;
-            if (newAlpha > 1) newAlpha = 1;
+    /**
+     * Ink
+     * <p>
+     * Each channel is from 0 to 1. Only turned into a color to draw.
+     */
 
-            setColor(new Color(newRed, newGreen, newBlue, newAlpha));
-        }
+    public float getInkRed() {
+        return inkRed;
+    }
+
+    public float getInkGreen() {
+        return inkGreen;
+    }
+
+    public float getInkBlue() {
+        return inkBlue;
+    }
+
+    public float getInkAlpha() {
+        return inkAlpha;
     }
 
     /**
-     * Ink
+     * @return the ink as packed ARGB, rounded to 8 bits a channel
+     */
+    public int getInk() {
+        return Ink.argb(inkRed, inkGreen, inkBlue, inkAlpha);
+    }
+
+    public synchronized void setInk(int ink) {
+        setInk(Ink.red(ink), Ink.green(ink), Ink.blue(ink), Ink.alpha(ink));
+    }
+
+    public synchronized void setInk(float red, float green, float blue, float alpha) {
+        inkRed = red;
+        inkGreen = green;
+        inkBlue = blue;
+        inkAlpha = alpha;
+    }
+
+
+    /**
+     * Passive scalars
+     * <p>
+     * Concentrations, in the order of the fields of the entity's grid.
+     */
+
+    public double getScalar(int field) {
+        return scalars[scalarOffset + field];
+    }
+
+    public synchronized void setScalar(int field, double concentration) {
+        scalars[scalarOffset + field] = concentration;
+        updateMixture();
+    }
+
+    /**
+     * Sets all of this entity's scalars to those of the other, for copies of cells
+     */
+    public synchronized void setScalars(FluidEntity other) {
+        System.arraycopy(other.scalars, other.scalarOffset, scalars, scalarOffset, scalarCount);
+        updateMixture();
+    }
+
+    public int getScalarCount() {
+        return scalarCount;
+    }
+
+    /**
+     * Where the entity keeps its scalars, its count of them from the offset in each array. Set by the grid.
+     */
+    public synchronized void setScalarStorage(double[] scalars, double[] incomingScalars, int offset, int count) {
+        this.scalars = scalars;
+        this.incomingScalars = incomingScalars;
+        this.scalarOffset = offset;
+        this.scalarCount = count;
+        updateMixture();
+    }
+
+
+    /**
+     * Physical constants, shared by every entity of a scenario
+     */
+
+    public PhysicalConstants getConstants() {
+        return constants;
+    }
+
+    public void setConstants(PhysicalConstants constants) {
+        this.constants = constants;
+        updateMixture();
+    }
+
+
+    /**
+     * Materials
+     * <p>
+     * The fraction of the entity's mass that's each of the materials of its constants is the first of its scalars.
      */
 
-    public Color getColor() {
-        return color;
+    private void updateMixture() {
+        MaterialTable materials = constants.getMaterials();
+        if (!hasMaterials()) {
+            molarWeight = DEFAULT_MOLAR_WEIGHT;
+            conductivity = constants.getConductivity();
+            viscosity = DEFAULT_VISCOSITY;
+            restDensity = DEFAULT_DENSITY;
+            return;
+        }
+        molarWeight = materials.getMolarWeight(scalars, scalarOffset);
+        conductivity = materials.getConductivity(scalars, scalarOffset);
+        viscosity = materials.getViscosity(scalars, scalarOffset);
+        restDensity = materials.getDensity(scalars, scalarOffset);
     }
 
-    public synchronized void setColor(Color color) {
-        this.color = color;
+    private boolean hasMaterials() {
+        int count = constants.getMaterials().getCount();
+        return count > 0 && scalarCount >= count;
+    }
+
+    /**
+     * Turns the entity's materials into each other by the phase transitions between them, at its temperature.
+     */
+    public synchronized void changePhase() {
+        MaterialTable materials = constants.getMaterials();
+        if (mass <= 0 || !materials.hasTransitions() || !hasMaterials()) {
+            return;
+        }
+        temperature = materials.changePhase(scalars, scalarOffset, temperature);
+        updateMixture();
+    }
+
+    /**
+     * The density of the entity's mix of materials at rest
+     */
+    public double getRestDensity() {
+        return restDensity;
     }
 
 
@@ -301,25 +445,37 @@ public class FluidEntity implements DimensionalEntity {
      * Pressure
      * <p>
      * We are presuming that the volume of a fluid entity cell is constant, but the amount of mass, and the temperature
-     * of that mass may change.
+     * of that mass may change. Fluid of no material, and mixes of ideal gases, are one ideal gas, and other mixes
+     * follow the equations of state of their materials.
      * <p>
      * https://en.wikipedia.org/wiki/Pressure
      * http://www.passmyexams.co.uk/GCSE/physics/pressure-temperature-relationship-of-gas-pressure-law.html
      * https://en.wikipedia.org/wiki/Charles%27s_Law
      */
     public double getPressure() {
-        return GAS_CONSTANT * mass * getTemperature() / getMolarWeight();
+        if (!hasMaterials()) {
+            return constants.getGasConstant() * mass * getTemperature() / getMolarWeight();
+        }
+        MaterialTable materials = constants.getMaterials();
+        if (materials.isIdealGas()) {
+            return materials.getGasConstant() * mass * getTemperature() / getMolarWeight();
+        }
+        return materials.getPressure(scalars, scalarOffset, mass, getTemperature());
     }
 
-
     /**
-     * For display
+     * Works out the pressure the entity's neighbors push against for this step. Called once a step, after its state
+     * was last set and before the interactions.
      */
+    public void updatePressure() {
+        pressure = getPressure();
+    }
 
-    public void getNextLocationAsFluidEntity(Array2DRowRealMatrix vector, double velocityFactor) {
-        vector.setEntry(0, 0, getX() + getDeltaX() * velocityFactor);
-        vector.setEntry(1, 0, getY() + getDeltaY() * velocityFactor);
-        vector.setEntry(2, 0, getZ() + getDeltaZ() * velocityFactor);
+    /**
+     * The pressure last worked out by {@link #updatePressure()}
+     */
+    public double getUpdatedPressure() {
+        return pressure;
     }
 
 
@@ -344,10 +500,8 @@ public class FluidEntity implements DimensionalEntity {
         // Do not record transfers to self.
         if (this.equals(targetEntity)) return;
 
-        if (massTransferRecords.get(targetEntity) != null) {
-            proportion += massTransferRecords.get(targetEntity);
-        }
-        massTransferRecords.put(targetEntity, proportion);
+        // Neighbors pulling mass from this entity during reverse advection may be recording from other threads
+        massTransferRecords.merge(targetEntity, proportion, Double::sum);
     }
 
     /**
@@ -367,20 +521,99 @@ public class FluidEntity implements DimensionalEntity {
                 massTransfer = getMass() * massTransferRecords.get(targetEntity);
             }
 
-            //recordMassChange(new MassChangeRecord(-massTransfer, getTemperature(), getDeltaX(), getDeltaY(), color));
             pendingDeltaMass += -massTransfer;
 
-            targetEntity.recordMassChange(new MassChangeRecord(massTransfer, getTemperature(), getDeltaX(), getDeltaY(), color));
+            targetEntity.recordMassChange(massTransfer, getTemperature(), getDeltaX(), getDeltaY(), inkRed, inkGreen, inkBlue, inkAlpha,
+                    scalars, scalarOffset);
         }
 
         massTransferRecords.clear();
     }
 
+    /**
+     * Stage 1 of the mass transfer steps, for an entity acting as an endless reservoir off the edge of the simulation.
+     * Each target gets its proportion of this entity's mass, without it losing any, and without any ink. It does carry
+     * the reservoir's scalars, so that dyed fluid can flow in from an edge.
+     */
+    public void convertMassTransferFromReservoir() {
+        for (FluidEntity targetEntity : massTransferRecords.keySet()) {
+            double massTransfer = massTransferRecords.get(targetEntity) * getMass();
+            targetEntity.recordMassChange(massTransfer, getTemperature(), getDeltaX(), getDeltaY(), 0, 0, 0, 0, scalars, scalarOffset);
+        }
+        massTransferRecords.clear();
+    }
+
     /**
      * Transferring mass to a fluid entity
      */
-    void recordMassChange(MassChangeRecord record) {
-        massChangeRecords.put(record, 0);
+    public void recordMassChange(MassChangeRecord record) {
+        recordMassChange(record.massChange, record.massTemperature, record.velocityX, record.velocityY,
+                record.inkRed, record.inkGreen, record.inkBlue, record.inkAlpha, record.scalars, 0);
+    }
+
+    /**
+     * @param scalars concentrations of the grid's scalar fields in the mass, from the offset, or null for none
+     */
+    public synchronized void recordMassChange(double massChange, double massTemperature, double velocityX, double velocityY,
+                                              float inkRed, float inkGreen, float inkBlue, float inkAlpha,
+                                              double[] scalars, int offset) {
+        incomingMass += massChange;
+        incomingHeat += massChange * massTemperature;
+        incomingMomentumX += massChange * velocityX;
+        incomingMomentumY += massChange * velocityY;
+        incomingInkRed += massChange * inkRed;
+        incomingInkGreen += massChange * inkGreen;
+        incomingInkBlue += massChange * inkBlue;
+        incomingInkAlpha += massChange * inkAlpha;
+        if (scalars != null) {
+            for (int i = 0; i < scalarCount; i++) {
+                incomingScalars[scalarOffset + i] += massChange * scalars[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Hands the pending incoming mass to the consumer, as one change, instead of applying it, for entities that are
+     * only copies of a cell held elsewhere.
+     */
+    public synchronized void drainMassChanges(Consumer<MassChangeRecord> consumer) {
+        if (incomingMass > 0) {
+            double[] concentrations = new double[scalarCount];
+            for (int i = 0; i < scalarCount; i++) {
+                concentrations[i] = incomingScalars[scalarOffset + i] / incomingMass;
+            }
+            consumer.accept(new MassChangeRecord(incomingMass, incomingHeat / incomingMass,
+                    incomingMomentumX / incomingMass, incomingMomentumY / incomingMass,
+                    (float) (incomingInkRed / incomingMass), (float) (incomingInkGreen / incomingMass),
+                    (float) (incomingInkBlue / incomingMass), (float) (incomingInkAlpha / incomingMass), concentrations));
+        }
+        clearIncomingMass();
+    }
+
+    private void clearIncomingMass() {
+        incomingMass = 0;
+        incomingHeat = 0;
+        incomingMomentumX = 0;
+        incomingMomentumY = 0;
+        incomingInkRed = 0;
+        incomingInkGreen = 0;
+        incomingInkBlue = 0;
+        incomingInkAlpha = 0;
+        for (int i = scalarOffset; i < scalarOffset + scalarCount; i++) {
+            incomingScalars[i] = 0;
+        }
+    }
+
+    /**
+     * Forgets all recorded but not yet applied changes.
+     */
+    public synchronized void clearPendingChanges() {
+        massTransferRecords.clear();
+        clearIncomingMass();
+        pendingDeltaMass = 0;
+        pendingDeltaHeat = 0;
+        pendingDeltaForceX = 0;
+        pendingDeltaForceY = 0;
     }
 
     public void changeMass() {
@@ -398,11 +631,18 @@ public class FluidEntity implements DimensionalEntity {
         }
         pendingDeltaMass = 0;
 
-        for (MassChangeRecord transferRecord : massChangeRecords.keySet()) {
-            transferRecord.transfer(this);
+        if (incomingMass > 0) {
+            addMass(incomingMass, incomingHeat / incomingMass,
+                    incomingMomentumX / incomingMass, incomingMomentumY / incomingMass,
+                    (float) (incomingInkRed / incomingMass), (float) (incomingInkGreen / incomingMass),
+                    (float) (incomingInkBlue / incomingMass), (float) (incomingInkAlpha / incomingMass));
+            // Added to what's left after the mixing above diluted it
+            for (int i = scalarOffset; i < scalarOffset + scalarCount; i++) {
+                scalars[i] += incomingScalars[i] / mass;
+            }
+            updateMixture();
         }
-
-        massChangeRecords.clear();
+        clearIncomingMass();
     }
 
 
@@ -410,7 +650,7 @@ public class FluidEntity implements DimensionalEntity {
      * Force transfers
      */
 
-    public void recordForceChange(double deltaForceX, double deltaForceY) {
+    public synchronized void recordForceChange(double deltaForceX, double deltaForceY) {
         pendingDeltaForceX += deltaForceX;
         pendingDeltaForceY += deltaForceY;
     }
@@ -427,7 +667,7 @@ public class FluidEntity implements DimensionalEntity {
      * Heat transfers
      */
 
-    public void recordHeatChange(double deltaHeat) {
+    public synchronized void recordHeatChange(double deltaHeat) {
         pendingDeltaHeat += deltaHeat;
     }
 
@@ -441,46 +681,99 @@ public class FluidEntity implements DimensionalEntity {
      * https://en.wikipedia.org/wiki/Avogadro%27s_law
      */
     private double getMolarWeight() {
-        return 1;
+        return molarWeight;
     }
 
 
     /**
+     * Of the entity's mix of materials, as the share of its heat it passes on per degree of difference each step
+     * <p>
      * https://en.wikipedia.org/wiki/Thermal_conductivity
      */
-    private double getConductivity() {
-        return .0001;
+    public double getConductivity() {
+        return conductivity;
     }
 
     /**
+     * Of the entity's mix of materials, as how fast its velocity spreads to its neighbors', in cells squared per step
+     * <p>
      * https://en.wikipedia.org/wiki/Viscosity
      */
-    private double getViscosity() {
-        return .1;
+    public double getViscosity() {
+        return viscosity;
     }
 
     /*********************************************************************
      * Record classes
      */
 
-    static class MassChangeRecord {
+    public static class MassChangeRecord {
 
         final private double massChange;
         final private double massTemperature;
         final private double velocityX;
         final private double velocityY;
-        final private Color inkColor;
+        final private float inkRed;
+        final private float inkGreen;
+        final private float inkBlue;
+        final private float inkAlpha;
+        final private double[] scalars;
+
+        public MassChangeRecord(double massChange, double massTemperature, double velocityX, double velocityY,
+                                float inkRed, float inkGreen, float inkBlue, float inkAlpha) {
+            this(massChange, massTemperature, velocityX, velocityY, inkRed, inkGreen, inkBlue, inkAlpha, null);
+        }
 
-        MassChangeRecord(double massChange, double massTemperature, double velocityX, double velocityY, Color inkColor) {
+        /**
+         * @param scalars concentrations of the grid's scalar fields, or null for none
+         */
+        public MassChangeRecord(double massChange, double massTemperature, double velocityX, double velocityY,
+                                float inkRed, float inkGreen, float inkBlue, float inkAlpha, double[] scalars) {
             this.massChange = massChange;
             this.massTemperature = massTemperature;
             this.velocityX = velocityX;
             this.velocityY = velocityY;
-            this.inkColor = inkColor;
+            this.inkRed = inkRed;
+            this.inkGreen = inkGreen;
+            this.inkBlue = inkBlue;
+            this.inkAlpha = inkAlpha;
+            this.scalars = scalars;
+        }
+
+        public double getMassChange() {
+            return massChange;
+        }
+
+        public double getMassTemperature() {
+            return massTemperature;
+        }
+
+        public double getVelocityX() {
+            return velocityX;
+        }
+
+        public double getVelocityY() {
+            return velocityY;
+        }
+
+        public float getInkRed() {
+            return inkRed;
+        }
+
+        public float getInkGreen() {
+            return inkGreen;
         }
 
-        void transfer(FluidEntity entity) {
-            entity.addMass(massChange, massTemperature, velocityX, velocityY, inkColor);
+        public float getInkBlue() {
+            return inkBlue;
+        }
+
+        public float getInkAlpha() {
+            return inkAlpha;
+        }
+
+        public double[] getScalars() {
+            return scalars;
         }
     }
 
@@ -493,13 +786,25 @@ public class FluidEntity implements DimensionalEntity {
     }
 
     private void gravity() {
-        recordForceChange(0, getMass() * -Universe.GRAVITATIONAL_CONSTANT);
+        recordForceChange(0, getMass() * -constants.getGravity());
     }
 
-    public void applyNeighborInteractions(FluidEntity other) {
-        applyHeatConduction(other);
-        applyPressure(other);
-        //applyViscosityBetweenCells(other);
+    /**
+     * The other entity is the given offset away, one cell along one axis. Cells don't know where they are, as that's
+     * worked out from their indices in the grid.
+     *
+     * @param conduct whether heat is conducted between the entities here, rather than by the universe solving for
+     *                every cell at once
+     * @param push    whether the entities push each other by their pressures here, rather than by the universe across
+     *                the faces between every cell at once
+     */
+    public void applyNeighborInteractions(FluidEntity other, int offsetX, int offsetY, boolean conduct, boolean push) {
+        if (conduct) {
+            applyHeatConduction(other);
+        }
+        if (push) {
+            applyPressure(other, offsetX, offsetY);
+        }
     }
 
     /**
@@ -523,54 +828,13 @@ public class FluidEntity implements DimensionalEntity {
         }
     }
 
-    private void applyPressure(FluidEntity other) {
-        double pressureDifference = getPressure() - other.getPressure();
-        if (pressureDifference > 0) {
-            if (Math.abs(getX() - other.getX()) > FUZZ) {
-                if (getX() > other.getX()) {
-                    other.recordForceChange(-pressureDifference, 0);
-                } else {
-                    other.recordForceChange(pressureDifference, 0);
-                }
-            }
-            if (Math.abs(getY() - other.getY()) > FUZZ) {
-                if (getY() > other.getY()) {
-                    other.recordForceChange(0, -pressureDifference);
-                } else {
-                    other.recordForceChange(0, pressureDifference);
-                }
-            }
-        }
-    }
-
     /**
-     * https://en.wikipedia.org/wiki/Viscosity
-     * https://en.wikipedia.org/wiki/Shear_stress
-     * <p>
-     * TODO: Make this math cleaner and easier to understand.
-     * TODO: Make this not redundant, since it's being applied twice
+     * Pushes the other entity away across the face between them, if this one's pressure is higher.
      */
-    private void applyViscosityBetweenCells(FluidEntity other) {
-        double totalMass = getMass() + other.getMass();
-
-        if (getX() != other.getX() && getDeltaY() - other.getDeltaY() != 0) {
-            double forceAvailableForTransfer = getForceY() * getViscosity() + other.getForceY() * other.getViscosity();
-
-            double forceLossFromA = -(getForceY() * getViscosity());
-            double forceGainForA = ((getMass() / totalMass) * forceAvailableForTransfer);
-            double forceTransfer = forceLossFromA + forceGainForA;
-
-            recordForceChange(0, forceTransfer);
-            recordForceChange(0, -forceTransfer);
-        } else if (getY() != other.getY() && getDeltaX() - other.getDeltaX() != 0) {
-            double forceAvailableForTransfer = getForceX() * getViscosity() + other.getForceX() * other.getViscosity();
-
-            double forceLossFromA = -(getForceX() * getViscosity());
-            double forceGainForA = ((getMass() / totalMass) * forceAvailableForTransfer);
-            double forceTransfer = forceLossFromA + forceGainForA;
-
-            recordForceChange(forceTransfer, 0);
-            recordForceChange(-forceTransfer, 0);
+    private void applyPressure(FluidEntity other, int offsetX, int offsetY) {
+        double pressureDifference = pressure - other.pressure;
+        if (pressureDifference > 0) {
+            other.recordForceChange(offsetX * pressureDifference, offsetY * pressureDifference);
         }
     }
 
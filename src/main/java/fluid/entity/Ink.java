@@ -0,0 +1,53 @@
+package fluid.entity;
+
+/**
+ * Ink colors packed into an int as 8 bit alpha, red, green and blue channels, the same as JavaFX's and AWT's ARGB.
+ * Cells keep their ink as float channels, so that it can mix by small proportions each step, and these are only for
+ * handing colors in and out.
+ */
+public final class Ink {
+
+    public static final int TRANSPARENT = 0;
+
+    private Ink() {
+    }
+
+    /**
+     * @param red   0 to 1
+     * @param green 0 to 1
+     * @param blue  0 to 1
+     * @param alpha 0 to 1
+     */
+    public static int argb(double red, double green, double blue, double alpha) {
+        return toByte(alpha) << 24 | toByte(red) << 16 | toByte(green) << 8 | toByte(blue);
+    }
+
+    public static float alpha(int argb) {
+        return toChannel(argb >>> 24);
+    }
+
+    public static float red(int argb) {
+        return toChannel(argb >> 16 & 0xff);
+    }
+
+    public static float green(int argb) {
+        return toChannel(argb >> 8 & 0xff);
+    }
+
+    public static float blue(int argb) {
+        return toChannel(argb & 0xff);
+    }
+
+    private static int toByte(double channel) {
+        if (channel < 0 || channel > 1) {
+            throw new IllegalArgumentException("Ink channels must be between 0 and 1, got " + channel);
+        }
+        return (int) Math.round(channel * 255);
+    }
+
+    // Rounded the same way as JavaFX's colors, so that a color handed through here mixes exactly as it did before
+    private static float toChannel(int value) {
+        return (float) (value / 255.0);
+    }
+
+}
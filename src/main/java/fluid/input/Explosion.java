@@ -0,0 +1,49 @@
+package fluid.input;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * A burst of hot mass into a disc of cells, spread over a few steps from the given one.
+ */
+public class Explosion extends RegionInput {
+
+    private final int centerX;
+    private final int centerY;
+    private final int radius;
+    private final double mass;
+    private final double temperature;
+    private final Integer ink;
+
+    /**
+     * @param mass added to each cell in each step of the burst
+     * @param ink  packed ARGB, or null for none
+     */
+    public Explosion(int centerX, int centerY, int radius, double mass, double temperature, Integer ink, int step, int steps) {
+        super(centerX - radius, centerY - radius, centerX + radius + 1, centerY + radius + 1);
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+        this.mass = mass;
+        this.temperature = temperature;
+        this.ink = ink;
+        startingAt(step);
+        endingAt(step + steps);
+    }
+
+    @Override
+    protected boolean contains(int x, int y) {
+        int dx = x - centerX;
+        int dy = y - centerY;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    @Override
+    public void apply(FluidEntity entity, int step) {
+        if (ink == null) {
+            entity.addMass(mass, temperature, 0, 0);
+        } else {
+            entity.addMass(mass, temperature, ink);
+        }
+    }
+
+}
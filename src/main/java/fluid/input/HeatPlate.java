@@ -0,0 +1,24 @@
+package fluid.input;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Holds its cells at a fixed temperature, such as the heated floor and cooled ceiling of Rayleigh-Benard convection.
+ * <p>
+ * https://en.wikipedia.org/wiki/Rayleigh%E2%80%93B%C3%A9nard_convection
+ */
+public class HeatPlate extends RegionInput {
+
+    private final double temperature;
+
+    public HeatPlate(int minX, int minY, int maxX, int maxY, double temperature) {
+        super(minX, minY, maxX, maxY);
+        this.temperature = temperature;
+    }
+
+    @Override
+    public void apply(FluidEntity entity, int step) {
+        entity.setTemperature(temperature);
+    }
+
+}
@@ -0,0 +1,58 @@
+package fluid.input;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Adds mass of the given temperature and velocity to each of its cells every step, such as a candle or a jet. The mass
+ * carries the given ink, packed ARGB, or none if it's null, and the given concentrations of the grid's scalar fields.
+ */
+public class MassEmitter extends RegionInput {
+
+    private final double mass;
+    private final double temperature;
+    private final double deltaX;
+    private final double deltaY;
+    private final Integer ink;
+    private final double[] scalars;
+
+    public MassEmitter(int minX, int minY, int maxX, int maxY, double mass, double temperature, double deltaX, double deltaY, Integer ink) {
+        this(minX, minY, maxX, maxY, mass, temperature, deltaX, deltaY, ink, null);
+    }
+
+    /**
+     * @param scalars concentration of each of the grid's scalar fields in the mass, in their order, or null for none
+     */
+    public MassEmitter(int minX, int minY, int maxX, int maxY, double mass, double temperature, double deltaX, double deltaY,
+                       Integer ink, double[] scalars) {
+        super(minX, minY, maxX, maxY);
+        this.mass = mass;
+        this.temperature = temperature;
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
+        this.ink = ink;
+        this.scalars = scalars;
+    }
+
+    /**
+     * A single still cell
+     */
+    public MassEmitter(int x, int y, double mass, double temperature, Integer ink) {
+        this(x, y, x + 1, y + 1, mass, temperature, 0, 0, ink);
+    }
+
+    @Override
+    public void apply(FluidEntity entity, int step) {
+        if (scalars != null) {
+            if (ink == null) {
+                entity.addMass(mass, temperature, deltaX, deltaY, scalars);
+            } else {
+                entity.addMass(mass, temperature, deltaX, deltaY, ink, scalars);
+            }
+        } else if (ink == null) {
+            entity.addMass(mass, temperature, deltaX, deltaY);
+        } else {
+            entity.addMass(mass, temperature, deltaX, deltaY, ink);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package fluid.input;
+
+import fluid.physics.InputSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An input acting on a rectangle of the grid, from a first step until an end step. Max values are exclusive.
+ */
+public abstract class RegionInput implements InputSource {
+
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    private int firstStep = 0;
+    private int endStep = Integer.MAX_VALUE;
+
+    protected RegionInput(int minX, int minY, int maxX, int maxY) {
+        if (maxX <= minX || maxY <= minY) {
+            throw new IllegalArgumentException("Empty region " + minX + ", " + minY + " to " + maxX + ", " + maxY);
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Acts from the given step on
+     */
+    public RegionInput startingAt(int step) {
+        firstStep = step;
+        return this;
+    }
+
+    /**
+     * Stops acting at the given step
+     */
+    public RegionInput endingAt(int step) {
+        endStep = step;
+        return this;
+    }
+
+    @Override
+    public int[][] getCells(int gridWidth, int gridHeight) {
+        List<int[]> cells = new ArrayList<>();
+        for (int x = Math.max(0, minX); x < Math.min(gridWidth, maxX); x++) {
+            for (int y = Math.max(0, minY); y < Math.min(gridHeight, maxY); y++) {
+                if (contains(x, y)) {
+                    cells.add(new int[]{x, y});
+                }
+            }
+        }
+        return cells.toArray(new int[cells.size()][]);
+    }
+
+    /**
+     * Whether the cell, within the rectangle, is acted on. For regions that aren't rectangles.
+     */
+    protected boolean contains(int x, int y) {
+        return true;
+    }
+
+    @Override
+    public boolean isActive(int step) {
+        return step >= firstStep && step < endStep;
+    }
+
+}
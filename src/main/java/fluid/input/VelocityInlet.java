@@ -0,0 +1,31 @@
+package fluid.input;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Sets the velocity of its cells every step, such as a breeze blowing in from an edge. Marks them with the given
+ * ink, packed ARGB, if any, so the flow from it can be followed.
+ */
+public class VelocityInlet extends RegionInput {
+
+    private final double deltaX;
+    private final double deltaY;
+    private final Integer ink;
+
+    public VelocityInlet(int minX, int minY, int maxX, int maxY, double deltaX, double deltaY, Integer ink) {
+        super(minX, minY, maxX, maxY);
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
+        this.ink = ink;
+    }
+
+    @Override
+    public void apply(FluidEntity entity, int step) {
+        entity.setDeltaX(deltaX);
+        entity.setDeltaY(deltaY);
+        if (ink != null) {
+            entity.setInk(ink);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package fluid.main;
+
+import fluid.camera.Camera;
+import fluid.display.FluidEntityCanvas;
+import fluid.physics.DisplaySnapshot;
+import fluid.physics.Universe;
+import javafx.animation.AnimationTimer;
+
+import java.util.function.Consumer;
+
+/**
+ * Draws the universe's latest snapshot each time JavaFX is about to show a frame, so no more often than the display
+ * shows them, however fast the simulation steps. Snapshots published between frames are skipped, and a frame with
+ * nothing new to show isn't drawn again.
+ * <p>
+ * Pixels are filled on a thread of their own, see {@link PixelFiller}, so each frame the JavaFX thread only draws the
+ * pixels last filled, then asks for the next. Shapes are drawn straight from the snapshot.
+ * <p>
+ * Once a second it reports the steps taken per second, the frames drawn per second, and how many frames were dropped:
+ * those the display showed without a pulse, as drawing or something else on the JavaFX thread took too long.
+ */
+final class DisplayLoop extends AnimationTimer {
+
+    // JavaFX pulses at up to 60 frames a second
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    private static final long REPORT_NANOS = 1_000_000_000L;
+
+    private final Universe universe;
+    private final SimulationDriver driver;
+    private final FluidEntityCanvas canvas;
+    private final Camera camera;
+    private final Consumer<String> report;
+    // Null unless drawing pixels
+    private final PixelFiller filler;
+
+    // Only touched on the JavaFX thread
+    private FluidEntityCanvas.DrawType drawType = FluidEntityCanvas.DrawType.INK;
+    private int scalarField;
+    // What was last drawn, to tell whether there's anything new
+    private int drawnStep = -1;
+    private double[] drawnTransform;
+    private boolean redraw = true;
+
+    private long lastPulse;
+    private long reportStart;
+    private long reportSteps;
+    private int framesDrawn;
+    private int framesDropped;
+
+    /**
+     * @param report given the steps and frames per second and the dropped frames once a second, on the JavaFX thread
+     */
+    DisplayLoop(Universe universe, SimulationDriver driver, FluidEntityCanvas canvas, Camera camera,
+                FluidEntityCanvas.Rendering rendering, Consumer<String> report) {
+        this.universe = universe;
+        this.driver = driver;
+        this.canvas = canvas;
+        this.camera = camera;
+        this.report = report;
+        filler = rendering == FluidEntityCanvas.Rendering.PIXELS ? new PixelFiller(universe, canvas, camera) : null;
+    }
+
+    @Override
+    public void start() {
+        if (filler != null) {
+            filler.start();
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (filler != null) {
+            filler.stop();
+        }
+    }
+
+    /**
+     * @param scalarField which of the grid's scalar fields to draw, for {@link FluidEntityCanvas.DrawType#SCALAR}
+     */
+    void setDrawType(FluidEntityCanvas.DrawType drawType, int scalarField) {
+        this.drawType = drawType;
+        this.scalarField = scalarField;
+        redraw = true;
+        if (filler != null) {
+            filler.setDrawType(drawType, scalarField);
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        camera.move();
+        if (lastPulse == 0) {
+            reportStart = now;
+            reportSteps = driver.getSteps();
+        } else {
+            long frames = (now - lastPulse + FRAME_NANOS / 2) / FRAME_NANOS;
+            if (frames > 1) {
+                framesDropped += frames - 1;
+            }
+        }
+        lastPulse = now;
+
+        if (filler != null) {
+            // The filler reads the snapshots, and fills again only if there's something new
+            if (canvas.drawPixels()) {
+                framesDrawn++;
+            }
+            filler.request();
+        } else {
+            DisplaySnapshot snapshot = universe.getSnapshot();
+            double[] transform = camera.getTransform();
+            if (redraw || snapshot.getStep() != drawnStep || transform != drawnTransform) {
+                canvas.drawEntities(snapshot, universe.getGeometry(), drawType, scalarField);
+                canvas.drawTracers(snapshot, universe.getGeometry());
+                drawnStep = snapshot.getStep();
+                drawnTransform = transform;
+                redraw = false;
+                framesDrawn++;
+            }
+        }
+
+        if (now - reportStart >= REPORT_NANOS) {
+            double seconds = (now - reportStart) / 1e9;
+            long steps = driver.getSteps();
+            report.accept(String.format("%.0f steps/s%n%.0f frames/s%n%d dropped frames",
+                    (steps - reportSteps) / seconds, framesDrawn / seconds, framesDropped));
+            reportStart = now;
+            reportSteps = steps;
+            framesDrawn = 0;
+            framesDropped = 0;
+        }
+    }
+
+}
@@ -1,43 +1,54 @@
 package fluid.main;
 
 import fluid.camera.Camera;
+import fluid.display.ColorMap;
 import fluid.display.FluidEntityCanvas;
 import fluid.physics.Universe;
+import fluid.setup.Scenario;
 import fluid.setup.Setup;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 
 public class Main extends Application {
 
     private final int FRAME_DELAY = 80;
     private final boolean IS_RUNNING = true;
 
-    private final Universe universe = Setup.create();
+    private Universe universe;
     private FluidEntityCanvas canvas;
     private Camera camera;
 
-    private ExecutorService executorService;
+    private SimulationDriver driver;
+    private DisplayLoop displayLoop;
+    private final Label stats = new Label();
 
-    private volatile FluidEntityCanvas.DrawType drawType;
+    private FluidEntityCanvas.DrawType drawType;
+    private int scalarField;
+    private FluidEntityCanvas.Rendering rendering;
+    // 0 for as fast as it can
+    private double stepsPerSecond;
 
     /**
      * http://cowboyprogramming.com/2008/04/01/practical-fluid-mechanics/
+     * <p>
+     * Takes an optional scenario file, or the name of a built in scenario such as kelvin-helmholtz, and optionally
+     * --rendering=SHAPES to draw each cell as a dot rather than a pixel, and --stepsPerSecond= to step at most that
+     * often rather than as fast as it can.
+     * <p>
+     * The colors of temperature, mass, speed and scalar fields are set by --temperatureColors=, --massColors=,
+     * --velocityColors= and --scalarColors=, each a palette with an optional range, such as VIRIDIS:0:600, see
+     * {@link ColorMap}.
      */
     public static void main(String[] args) {
         launch(args);
@@ -47,6 +58,13 @@ public class Main extends Application {
     public void start(Stage stage) throws Exception {
         stage.setTitle("Fluid simulation");
 
+        List<String> scenario = getParameters().getUnnamed();
+        universe = Setup.create(Scenario.load(scenario.isEmpty() ? Scenario.DEFAULT : scenario.get(0)));
+        universe.setPublishingSnapshots(true);
+        rendering = FluidEntityCanvas.Rendering.valueOf(
+                getParameters().getNamed().getOrDefault("rendering", FluidEntityCanvas.Rendering.PIXELS.name()));
+        stepsPerSecond = Double.parseDouble(getParameters().getNamed().getOrDefault("stepsPerSecond", "0"));
+
         camera = new Camera(0, 0, 0);
 
         StackPane root = new StackPane();
@@ -56,6 +74,10 @@ public class Main extends Application {
 
         // Canvas
         canvas = new FluidEntityCanvas(1400, 900, camera);
+        setColorMap(FluidEntityCanvas.DrawType.TEMPERATURE, "temperatureColors", FluidEntityCanvas.DEFAULT_TEMPERATURE_MAP);
+        setColorMap(FluidEntityCanvas.DrawType.MASS, "massColors", FluidEntityCanvas.DEFAULT_MASS_MAP);
+        setColorMap(FluidEntityCanvas.DrawType.VELOCITY, "velocityColors", FluidEntityCanvas.DEFAULT_VELOCITY_MAP);
+        setColorMap(FluidEntityCanvas.DrawType.SCALAR, "scalarColors", FluidEntityCanvas.DEFAULT_SCALAR_MAP);
 
         HBox parentBox = new HBox();
         parentBox.getChildren().add(displayType);
@@ -68,6 +90,7 @@ public class Main extends Application {
         stage.show();
 
         stage.setOnCloseRequest(e -> {
+            driver.stop();
             Platform.exit();
             System.exit(0);
         });
@@ -75,6 +98,13 @@ public class Main extends Application {
         runSimulation();
     }
 
+    private void setColorMap(FluidEntityCanvas.DrawType drawType, String parameter, ColorMap defaults) {
+        String value = getParameters().getNamed().get(parameter);
+        if (value != null) {
+            canvas.setColorMap(drawType, ColorMap.parse(value, defaults));
+        }
+    }
+
     private VBox getDisplayTypeButtons() {
         RadioButton inkButton = new RadioButton("Ink");
         RadioButton massButton = new RadioButton("Mass");
@@ -96,6 +126,12 @@ public class Main extends Application {
                 drawType = FluidEntityCanvas.DrawType.TEMPERATURE;
             } else if (displayTypeGroup.getSelectedToggle().equals(velocityButton)) {
                 drawType = FluidEntityCanvas.DrawType.VELOCITY;
+            } else {
+                scalarField = (Integer) displayTypeGroup.getSelectedToggle().getUserData();
+                drawType = FluidEntityCanvas.DrawType.SCALAR;
+            }
+            if (displayLoop != null) {
+                displayLoop.setDrawType(drawType, scalarField);
             }
         });
 
@@ -106,6 +142,16 @@ public class Main extends Application {
         box.getChildren().add(massButton);
         box.getChildren().add(heatButton);
         box.getChildren().add(velocityButton);
+        // One for each of the scenario's scalar fields
+        List<String> scalarNames = universe.getScalarFields().getNames();
+        for (int field = 0; field < scalarNames.size(); field++) {
+            RadioButton scalarButton = new RadioButton(scalarNames.get(field));
+            scalarButton.setUserData(field);
+            scalarButton.setToggleGroup(displayTypeGroup);
+            box.getChildren().add(scalarButton);
+        }
+        stats.setPadding(new Insets(20, 0, 0, 0));
+        box.getChildren().add(stats);
         box.setPadding(new Insets(20, 20, 20, 20));
 
         return box;
@@ -119,49 +165,18 @@ public class Main extends Application {
         return IS_RUNNING;
     }
 
+    /**
+     * Steps the simulation on a thread of its own, and draws it as often as the display shows frames, whichever is
+     * quicker, so neither waits on the other.
+     */
     private void runSimulation() {
-        executorService = Executors.newSingleThreadExecutor();
-
-        Timeline timeline = new Timeline();
-        timeline.setCycleCount(Animation.INDEFINITE);
-        KeyFrame increment = new KeyFrame(Duration.millis(1), e -> increment());
-        timeline.getKeyFrames().add(increment);
-        timeline.play();
-    }
-
-
-    private void increment() {
-        // Perform physics simulations
+        driver = new SimulationDriver(universe, stepsPerSecond);
+        displayLoop = new DisplayLoop(universe, driver, canvas, camera, rendering, stats::setText);
+        displayLoop.setDrawType(drawType, scalarField);
         if (isRunning()) {
-
-            SimulationTask incrementStep = new SimulationTask(universe);
-            incrementStep.setOnSucceeded(e -> {
-                camera.move();
-
-                // tell graphics to repaint
-                canvas.drawEntities(universe.getEntities(), drawType);
-            });
-
-            incrementStep.setOnFailed(e -> System.out.println("Error: " + e.toString()));
-
-            executorService.submit(incrementStep);
-        }
-    }
-
-
-    private static class SimulationTask extends Task<Void> {
-
-        final Universe universe;
-
-        SimulationTask(Universe universe) {
-            this.universe = universe;
-        }
-
-        @Override
-        protected Void call() throws Exception {
-            universe.updateUniverseState();
-            return null;
+            driver.start();
         }
+        displayLoop.start();
     }
 
 }
@@ -0,0 +1,90 @@
+package fluid.main;
+
+import fluid.camera.Camera;
+import fluid.display.FluidEntityCanvas;
+import fluid.physics.DisplaySnapshot;
+import fluid.physics.Universe;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fills the canvas' pixels from the universe's latest snapshot on a thread of its own, so that the JavaFX thread only
+ * has to draw them, see {@link FluidEntityCanvas#fillPixels}. It fills when asked, which is once for each frame the
+ * display shows, and only if the snapshot, the camera or what's drawn has changed since the last fill.
+ * <p>
+ * It reads the universe's snapshots, so nothing else may while it runs.
+ */
+final class PixelFiller {
+
+    private final Universe universe;
+    private final FluidEntityCanvas canvas;
+    private final Camera camera;
+    private final Thread thread;
+
+    private volatile boolean running;
+    // Set by the JavaFX thread, the scalar field before the draw type and read the other way round, so a new draw
+    // type is never filled with the last one's field
+    private volatile FluidEntityCanvas.DrawType drawType = FluidEntityCanvas.DrawType.INK;
+    private volatile int scalarField;
+    private volatile boolean refill = true;
+
+    // Only touched by the filling thread: what was last filled, to tell whether there's anything new
+    private int filledStep = -1;
+    private double[] filledTransform;
+
+    PixelFiller(Universe universe, FluidEntityCanvas canvas, Camera camera) {
+        this.universe = universe;
+        this.canvas = canvas;
+        this.camera = camera;
+        thread = new Thread(this::run, "pixels");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @param scalarField which of the grid's scalar fields to draw, for {@link FluidEntityCanvas.DrawType#SCALAR}
+     */
+    void setDrawType(FluidEntityCanvas.DrawType drawType, int scalarField) {
+        this.scalarField = scalarField;
+        this.drawType = drawType;
+        refill = true;
+        request();
+    }
+
+    /**
+     * Asks for the pixels to be filled, if there's anything new to fill, without waiting for them
+     */
+    void request() {
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                LockSupport.park(this);
+                DisplaySnapshot snapshot = universe.getSnapshot();
+                double[] transform = camera.getTransform();
+                if (refill || snapshot.getStep() != filledStep || transform != filledTransform) {
+                    refill = false;
+                    FluidEntityCanvas.DrawType drawType = this.drawType;
+                    canvas.fillPixels(snapshot, universe.getGeometry(), drawType, scalarField);
+                    filledStep = snapshot.getStep();
+                    filledTransform = transform;
+                }
+            }
+        } catch (RuntimeException e) {
+            running = false;
+            System.out.println("Error: " + e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package fluid.main;
+
+import fluid.physics.Universe;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a universe on a thread of its own, either as fast as it can or at a target rate. The next step only starts
+ * once the last is done, so a slow step delays the next one rather than piling more up behind it, and falling behind
+ * the target rate doesn't bring a burst of steps to catch up.
+ */
+final class SimulationDriver {
+
+    private final Universe universe;
+    // 0 for as fast as it can
+    private final double stepsPerSecond;
+    private final Thread thread;
+
+    private volatile boolean running;
+    private volatile long steps;
+
+    /**
+     * @param stepsPerSecond to step at, or 0 to step as fast as it can
+     */
+    SimulationDriver(Universe universe, double stepsPerSecond) {
+        if (stepsPerSecond < 0) {
+            throw new IllegalArgumentException("Steps per second can't be negative, got " + stepsPerSecond);
+        }
+        this.universe = universe;
+        this.stepsPerSecond = stepsPerSecond;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops after the step being taken, if any
+     */
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Steps taken since it was started
+     */
+    long getSteps() {
+        return steps;
+    }
+
+    private void run() {
+        long period = stepsPerSecond > 0 ? (long) (1e9 / stepsPerSecond) : 0;
+        long next = System.nanoTime();
+        try {
+            while (running) {
+                universe.updateUniverseState();
+                steps++;
+                if (period > 0) {
+                    next += period;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    } else {
+                        next = System.nanoTime();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            running = false;
+            System.out.println("Error: " + e.toString());
+        }
+    }
+
+}
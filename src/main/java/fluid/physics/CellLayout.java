@@ -0,0 +1,154 @@
+package fluid.physics;
+
+/**
+ * Where each cell of a {@link Grid} is kept in its arrays.
+ * <p>
+ * An index is the sum of an offset for the cell's x and an offset for its y, both looked up in tables, so finding a
+ * cell costs the same whatever the order.
+ * <p>
+ * https://en.wikipedia.org/wiki/Z-order_curve
+ */
+public final class CellLayout {
+
+    public enum Order {
+        /**
+         * Each column in turn, so cells above and below each other are next to each other, but cells beside each
+         * other are a column apart.
+         */
+        COLUMN_MAJOR,
+
+        /**
+         * Z-order: the bits of x and y interleaved, so that cells close to each other in any direction are mostly
+         * close in memory. Where one side of the grid needs more bits than the other, the extra bits go above the
+         * interleaved ones, so a long thin grid is a row of square Z-order blocks. Some indices are padding, for cells
+         * beyond the grid.
+         */
+        MORTON
+    }
+
+    private final Order order;
+    private final int width;
+    private final int height;
+    private final int size;
+
+    private final int[] xOffsets;
+    private final int[] yOffsets;
+
+    // Morton only. The number of bits of each of x and y that are interleaved, and which of them has any more.
+    private final int interleavedBits;
+    private final boolean xLonger;
+
+    public CellLayout(int width, int height, Order order) {
+        this.order = order;
+        this.width = width;
+        this.height = height;
+        xOffsets = new int[width];
+        yOffsets = new int[height];
+
+        if (order == Order.COLUMN_MAJOR) {
+            size = width * height;
+            interleavedBits = 0;
+            xLonger = false;
+            for (int x = 0; x < width; x++) {
+                xOffsets[x] = x * height;
+            }
+            for (int y = 0; y < height; y++) {
+                yOffsets[y] = y;
+            }
+            return;
+        }
+
+        int xBits = getBits(width);
+        int yBits = getBits(height);
+        if (xBits + yBits > 30) {
+            throw new IllegalArgumentException("A " + width + " x " + height + " grid is too large for Z-order");
+        }
+        size = 1 << (xBits + yBits);
+        interleavedBits = Math.min(xBits, yBits);
+        xLonger = xBits > yBits;
+
+        int interleavedMask = (1 << interleavedBits) - 1;
+        for (int x = 0; x < width; x++) {
+            xOffsets[x] = spread(x & interleavedMask) | (xLonger ? (x >>> interleavedBits) << (2 * interleavedBits) : 0);
+        }
+        for (int y = 0; y < height; y++) {
+            yOffsets[y] = spread(y & interleavedMask) << 1 | (xLonger ? 0 : (y >>> interleavedBits) << (2 * interleavedBits));
+        }
+    }
+
+    /**
+     * Bits needed for indices up to length - 1
+     */
+    private static int getBits(int length) {
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    /**
+     * Spaces out the low 16 bits, so that bit n moves to bit 2n.
+     */
+    static int spread(int bits) {
+        bits &= 0x0000ffff;
+        bits = (bits | (bits << 8)) & 0x00ff00ff;
+        bits = (bits | (bits << 4)) & 0x0f0f0f0f;
+        bits = (bits | (bits << 2)) & 0x33333333;
+        bits = (bits | (bits << 1)) & 0x55555555;
+        return bits;
+    }
+
+    /**
+     * Inverse of spread, packing the even bits into the low 16.
+     */
+    static int compact(int bits) {
+        bits &= 0x55555555;
+        bits = (bits | (bits >>> 1)) & 0x33333333;
+        bits = (bits | (bits >>> 2)) & 0x0f0f0f0f;
+        bits = (bits | (bits >>> 4)) & 0x00ff00ff;
+        bits = (bits | (bits >>> 8)) & 0x0000ffff;
+        return bits;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Length of the arrays holding the cells, including any padding.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int index(int x, int y) {
+        return xOffsets[x] + yOffsets[y];
+    }
+
+    public int getX(int index) {
+        if (order == Order.COLUMN_MAJOR) return index / height;
+
+        int x = compact(index & ((1 << 2 * interleavedBits) - 1));
+        return xLonger ? x | (index >>> (2 * interleavedBits)) << interleavedBits : x;
+    }
+
+    public int getY(int index) {
+        if (order == Order.COLUMN_MAJOR) return index % height;
+
+        int y = compact((index & ((1 << 2 * interleavedBits) - 1)) >>> 1);
+        return xLonger ? y : y | (index >>> (2 * interleavedBits)) << interleavedBits;
+    }
+
+    /**
+     * Whether the index is a cell of the grid, rather than padding.
+     */
+    public boolean isCell(int index) {
+        return getX(index) < width && getY(index) < height;
+    }
+
+}
@@ -0,0 +1,43 @@
+package fluid.physics;
+
+/**
+ * What kind of cell each entry of a {@link Grid} is, stored as a byte per cell.
+ * <p>
+ * Anything other than fluid is a boundary. The universe never changes a boundary cell through the usual physics,
+ * instead its boundary condition is applied by its own pass over just the boundary cells, so that the passes over
+ * every cell treat them all the same.
+ */
+public final class CellType {
+
+    public static final byte FLUID = 0;
+
+    /**
+     * Reservoir at a fixed mass and temperature. Supplies mass without losing any, and anything moving into it is
+     * lost off the edge of the universe.
+     */
+    public static final byte OPEN = 1;
+
+    /**
+     * Reservoir that takes on the mass and temperature of the fluid beside it, so that nothing is pushed or
+     * conducted across it.
+     */
+    public static final byte MATCHING = 2;
+
+    /**
+     * Reservoir that turns back fluid moving towards it.
+     */
+    public static final byte REFLECTIVE = 3;
+
+    /**
+     * Wall that turns back fluid moving towards it, and that no mass or heat passes through.
+     */
+    public static final byte SOLID = 4;
+
+    private CellType() {
+    }
+
+    public static boolean isReservoir(byte cellType) {
+        return cellType == OPEN || cellType == MATCHING || cellType == REFLECTIVE;
+    }
+
+}
@@ -0,0 +1,260 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+import fluid.entity.Ink;
+
+import java.util.stream.IntStream;
+
+/**
+ * What's drawn of each owned cell at the end of a step: its mass, temperature, velocity, ink and scalars, copied into
+ * arrays of their own, so that drawing reads them without taking the entities' locks or seeing a step half done. The
+ * positions of a sample of the tracer particles are copied along with them, for the same reason.
+ * <p>
+ * A universe fills its snapshots itself, and hands each out only once it won't change until it's handed back, see
+ * {@link Universe#getSnapshot()}. Cells are x then y indices into the owned cells, the same as the universe's
+ * entities.
+ * <p>
+ * A snapshot can also hold blocks of another's cells averaged together, for drawing grids with more cells than there
+ * are pixels to show them, see {@link #aggregate}.
+ */
+public final class DisplaySnapshot {
+
+    /**
+     * Tracer particles copied at most, spread evenly through them, as each is drawn on its own
+     */
+    public static final int MAX_TRACERS = 50000;
+
+    private final int width;
+    private final int height;
+    private final int scalarCount;
+    private int step;
+
+    // Of each cell, a column at a time
+    private final float[] masses;
+    private final float[] temperatures;
+    private final float[] velocityXs;
+    private final float[] velocityYs;
+    // Packed ARGB, see fluid.entity.Ink
+    private final int[] inks;
+    // Each field's in turn
+    private final float[] scalars;
+
+    // Positions of the sampled tracer particles, the first tracerCount of them, grown as needed
+    private float[] tracerXs = new float[0];
+    private float[] tracerYs = new float[0];
+    private int tracerCount;
+
+    public DisplaySnapshot(int width, int height, int scalarCount) {
+        this.width = width;
+        this.height = height;
+        this.scalarCount = scalarCount;
+        masses = new float[width * height];
+        temperatures = new float[width * height];
+        velocityXs = new float[width * height];
+        velocityYs = new float[width * height];
+        inks = new int[width * height];
+        scalars = new float[width * height * scalarCount];
+    }
+
+    /**
+     * @param tracers or null for none
+     */
+    void copy(FluidEntity[][] entities, TracerParticles tracers, int step, boolean parallel) {
+        this.step = step;
+        copyTracers(tracers);
+        IntStream columns = IntStream.range(0, width);
+        (parallel ? columns.parallel() : columns).forEach(x -> {
+            for (int y = 0; y < height; y++) {
+                FluidEntity entity = entities[x][y];
+                int cell = x * height + y;
+                masses[cell] = (float) entity.getMass();
+                temperatures[cell] = (float) entity.getTemperature();
+                velocityXs[cell] = (float) entity.getDeltaX();
+                velocityYs[cell] = (float) entity.getDeltaY();
+                inks[cell] = entity.getInk();
+                for (int field = 0; field < scalarCount; field++) {
+                    scalars[field * width * height + cell] = (float) entity.getScalar(field);
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies every so many of the particles, leaving out those dropped, so that no more than MAX_TRACERS are copied
+     */
+    private void copyTracers(TracerParticles tracers) {
+        tracerCount = 0;
+        if (tracers == null) return;
+        // Seeding takes the same lock, and may come from another thread
+        synchronized (tracers) {
+            int count = tracers.getCount();
+            double[] xs = tracers.getXs();
+            double[] ys = tracers.getYs();
+            // Rounded up, so no more than the most are copied
+            int stride = (count + MAX_TRACERS - 1) / MAX_TRACERS;
+            if (tracerXs.length < Math.min(count, MAX_TRACERS)) {
+                tracerXs = new float[Math.min(count, MAX_TRACERS)];
+                tracerYs = new float[Math.min(count, MAX_TRACERS)];
+            }
+            for (int i = 0; i < count; i += stride) {
+                if (Double.isNaN(xs[i])) continue;
+                tracerXs[tracerCount] = (float) xs[i];
+                tracerYs[tracerCount] = (float) ys[i];
+                tracerCount++;
+            }
+        }
+    }
+
+    /**
+     * Sets each cell of this to the average of a square block of the source's cells, the blocks starting at minX,
+     * minY in the source and laid out the same as the cells of this. Temperature, velocity, ink and scalars are
+     * weighted by mass, and mass is the mean of the block's, so a block is drawn as a cell of that mass would be.
+     * Blocks past the edge of the source average just the cells they hold. The blocks' columns are split between
+     * threads. Tracers aren't copied, so draw them from the source.
+     *
+     * @param block cells along each side of a block
+     */
+    public void aggregate(final DisplaySnapshot source, final int minX, final int minY, final int block) {
+        if (block < 1) {
+            throw new IllegalArgumentException("Blocks need at least one cell, got " + block);
+        }
+        if (source.scalarCount != scalarCount) {
+            throw new IllegalArgumentException("Expected " + scalarCount + " scalar fields, got " + source.scalarCount);
+        }
+        step = source.step;
+        IntStream.range(0, width).parallel().forEach(x -> {
+            int startX = Math.max(0, minX + x * block);
+            int endX = Math.min(source.width, minX + (x + 1) * block);
+            for (int y = 0; y < height; y++) {
+                int startY = Math.max(0, minY + y * block);
+                int endY = Math.min(source.height, minY + (y + 1) * block);
+                aggregate(source, startX, startY, endX, endY, x * height + y);
+            }
+        });
+    }
+
+    /**
+     * Sets the cell to the average of the source's cells from start, inclusive, to end, exclusive, or to nothing if
+     * there are none
+     */
+    private void aggregate(DisplaySnapshot source, int startX, int startY, int endX, int endY, int cell) {
+        double weights = 0;
+        double mass = 0;
+        double temperature = 0;
+        double velocityX = 0;
+        double velocityY = 0;
+        double red = 0;
+        double green = 0;
+        double blue = 0;
+        double alpha = 0;
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                int from = x * source.height + y;
+                // Massless cells still count for a little, so an empty block has a temperature and velocity
+                double weight = Math.max(source.masses[from], FluidEntity.FUZZ);
+                weights += weight;
+                mass += source.masses[from];
+                temperature += weight * source.temperatures[from];
+                velocityX += weight * source.velocityXs[from];
+                velocityY += weight * source.velocityYs[from];
+                // The ink's channels as bytes, only scaled once they're summed
+                int ink = source.inks[from];
+                red += weight * (ink >> 16 & 0xff);
+                green += weight * (ink >> 8 & 0xff);
+                blue += weight * (ink & 0xff);
+                alpha += weight * (ink >>> 24);
+            }
+        }
+        if (weights == 0) {
+            weights = 1;
+        }
+        int count = Math.max(1, (endX - startX) * (endY - startY));
+        masses[cell] = (float) (mass / count);
+        temperatures[cell] = (float) (temperature / weights);
+        velocityXs[cell] = (float) (velocityX / weights);
+        velocityYs[cell] = (float) (velocityY / weights);
+        inks[cell] = Ink.argb(toChannel(red / weights), toChannel(green / weights), toChannel(blue / weights), toChannel(alpha / weights));
+        for (int field = 0; field < scalarCount; field++) {
+            int fieldStart = field * source.width * source.height;
+            double scalar = 0;
+            for (int x = startX; x < endX; x++) {
+                for (int y = startY; y < endY; y++) {
+                    int from = x * source.height + y;
+                    scalar += Math.max(source.masses[from], FluidEntity.FUZZ) * source.scalars[fieldStart + from];
+                }
+            }
+            scalars[field * width * height + cell] = (float) (scalar / weights);
+        }
+    }
+
+    // Of a mean of bytes, which can come out a rounding error over 255
+    private static double toChannel(double value) {
+        return Math.min(1, value / 255);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Steps the universe had taken when this was filled
+     */
+    public int getStep() {
+        return step;
+    }
+
+    public int getScalarCount() {
+        return scalarCount;
+    }
+
+    public float getMass(int x, int y) {
+        return masses[x * height + y];
+    }
+
+    public float getTemperature(int x, int y) {
+        return temperatures[x * height + y];
+    }
+
+    public float getVelocityX(int x, int y) {
+        return velocityXs[x * height + y];
+    }
+
+    public float getVelocityY(int x, int y) {
+        return velocityYs[x * height + y];
+    }
+
+    /**
+     * @return packed ARGB, see {@link fluid.entity.Ink}
+     */
+    public int getInk(int x, int y) {
+        return inks[x * height + y];
+    }
+
+    public float getScalar(int field, int x, int y) {
+        return scalars[field * width * height + x * height + y];
+    }
+
+    /**
+     * Tracer particles sampled, at most MAX_TRACERS
+     */
+    public int getTracerCount() {
+        return tracerCount;
+    }
+
+    /**
+     * @param tracer from 0 to getTracerCount(), exclusive
+     * @return x index into the whole grid, with a fraction between cells, see {@link TracerParticles}
+     */
+    public float getTracerX(int tracer) {
+        return tracerXs[tracer];
+    }
+
+    public float getTracerY(int tracer) {
+        return tracerYs[tracer];
+    }
+
+}
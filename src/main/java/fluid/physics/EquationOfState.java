@@ -0,0 +1,20 @@
+package fluid.physics;
+
+/**
+ * How the pressure of a material follows from how much of it there is in a cell and how hot it is. Cells are all of
+ * the same volume, so the mass of a material in a cell stands for its density.
+ * <p>
+ * A cell's pressure is worked out once a step, before its neighbors read it, so these may take some work, but are
+ * called for every cell of every material in it.
+ * <p>
+ * https://en.wikipedia.org/wiki/Equation_of_state
+ */
+public interface EquationOfState {
+
+    /**
+     * @param density     mass of the material in the cell
+     * @param temperature of the cell
+     */
+    double getPressure(double density, double temperature);
+
+}
@@ -0,0 +1,42 @@
+package fluid.physics;
+
+/**
+ * How the ghost cells beyond an edge of the whole grid are filled, and what happens to mass moved into them.
+ * <p>
+ * Each ghost cell stands in for a source cell in the grid. It is given a copy of the source's state once per step,
+ * before anything interacts with it, and anything pushed into it is handed on to the source.
+ */
+public enum GhostBoundary {
+
+    /**
+     * The source is the nearest cell on the edge, so the edge sees nothing beyond it, and nothing moved past the edge
+     * is lost.
+     */
+    CLAMP,
+
+    /**
+     * The source is the cell as far in from the opposite edge, so that fluid leaving one edge comes back in the other.
+     */
+    PERIODIC,
+
+    /**
+     * The source is the cell mirrored across the edge, with its velocity across the edge reversed, so that fluid
+     * moving out through the edge is turned back.
+     */
+    REFLECTIVE;
+
+    /**
+     * The source index along an axis of the given length, for an index beyond either end of it.
+     */
+    int getSource(int index, int length) {
+        switch (this) {
+            case PERIODIC:
+                return Math.floorMod(index, length);
+            case REFLECTIVE:
+                return index < 0 ? -1 - index : 2 * length - 1 - index;
+            default:
+                return index < 0 ? 0 : length - 1;
+        }
+    }
+
+}
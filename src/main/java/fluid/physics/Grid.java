@@ -0,0 +1,141 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The cells held by a {@link Universe}, including the border around the cells it owns: an entity for each, and its
+ * {@link CellType}, kept in the order of its {@link CellLayout}. Also how the ghost cells beyond each edge of the
+ * whole grid are filled, and the {@link ScalarFields} carried by its mass.
+ */
+public class Grid {
+
+    private final CellLayout layout;
+    private final FluidEntity[] entities;
+    private final byte[] cellTypes;
+    private final ScalarFields scalarFields;
+
+    // Left and right edges
+    private final GhostBoundary xBoundary;
+    // Lower and upper edges
+    private final GhostBoundary yBoundary;
+
+    /**
+     * An empty grid, in column-major order with clamped edges, for the entities to be set on
+     */
+    public Grid(int width, int height) {
+        this(new CellLayout(width, height, CellLayout.Order.COLUMN_MAJOR), GhostBoundary.CLAMP, GhostBoundary.CLAMP);
+    }
+
+    /**
+     * An empty grid, for the entities to be set on. Every cell is fluid until set otherwise.
+     */
+    public Grid(CellLayout layout, GhostBoundary xBoundary, GhostBoundary yBoundary) {
+        this(layout, xBoundary, yBoundary, Collections.emptyList());
+    }
+
+    /**
+     * An empty grid, carrying the named scalar fields, all zero
+     */
+    public Grid(CellLayout layout, GhostBoundary xBoundary, GhostBoundary yBoundary, List<String> scalarNames) {
+        this.layout = layout;
+        this.entities = new FluidEntity[layout.getSize()];
+        this.cellTypes = new byte[layout.getSize()];
+        this.scalarFields = new ScalarFields(scalarNames, layout.getSize());
+        this.xBoundary = xBoundary;
+        this.yBoundary = yBoundary;
+    }
+
+    /**
+     * A grid of only fluid cells, the given ones surrounded by a border of new ghost cells.
+     */
+    public static Grid withBorder(FluidEntity[][] cells, int border) {
+        int width = cells.length;
+        int height = cells[0].length;
+        Grid grid = new Grid(width + 2 * border, height + 2 * border);
+
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                int cellX = x - border;
+                int cellY = y - border;
+                if (cellX >= 0 && cellX < width && cellY >= 0 && cellY < height) {
+                    grid.setEntity(x, y, cells[cellX][cellY]);
+                    continue;
+                }
+
+                // The state is filled in every step
+                FluidEntity nearest = cells[Math.max(0, Math.min(width - 1, cellX))][Math.max(0, Math.min(height - 1, cellY))];
+                FluidEntity ghost = new FluidEntity(nearest.getMass(), nearest.getTemperature());
+                ghost.setConstants(nearest.getConstants());
+                grid.setEntity(x, y, ghost);
+            }
+        }
+
+        return grid;
+    }
+
+    public CellLayout getLayout() {
+        return layout;
+    }
+
+    public int getWidth() {
+        return layout.getWidth();
+    }
+
+    public int getHeight() {
+        return layout.getHeight();
+    }
+
+    public FluidEntity getEntity(int x, int y) {
+        return entities[layout.index(x, y)];
+    }
+
+    public void setEntity(int x, int y, FluidEntity entity) {
+        setEntity(layout.index(x, y), entity);
+    }
+
+    /**
+     * @param cell index into the layout
+     */
+    public void setEntity(int cell, FluidEntity entity) {
+        entities[cell] = entity;
+        scalarFields.attach(entity, cell);
+    }
+
+    public byte getCellType(int x, int y) {
+        return cellTypes[layout.index(x, y)];
+    }
+
+    public void setCellType(int x, int y, byte cellType) {
+        cellTypes[layout.index(x, y)] = cellType;
+    }
+
+    /**
+     * The entities in layout order, null for padding
+     */
+    public FluidEntity[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * The cell types in layout order
+     */
+    public byte[] getCellTypes() {
+        return cellTypes;
+    }
+
+    public ScalarFields getScalarFields() {
+        return scalarFields;
+    }
+
+    public GhostBoundary getXBoundary() {
+        return xBoundary;
+    }
+
+    public GhostBoundary getYBoundary() {
+        return yBoundary;
+    }
+
+}
@@ -0,0 +1,53 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Where the cells of a grid are in space, worked out from their indices rather than stored with each cell. The grid
+ * lies flat at a fixed depth, centered on the origin, with cells {@link FluidEntity#SPACE} apart.
+ */
+public final class GridGeometry {
+
+    public static final double DEFAULT_Z = 5000;
+
+    private final int width;
+    private final int height;
+    private final double z;
+
+    public GridGeometry(int width, int height) {
+        this(width, height, DEFAULT_Z);
+    }
+
+    public GridGeometry(int width, int height, double z) {
+        this.width = width;
+        this.height = height;
+        this.z = z;
+    }
+
+    /**
+     * Of a cell with the given x index into the whole grid
+     */
+    public double getX(int x) {
+        return (x - width / 2) * FluidEntity.SPACE;
+    }
+
+    public double getY(int y) {
+        return (y - height / 2) * FluidEntity.SPACE;
+    }
+
+    /**
+     * Of a position between cells, such as a tracer particle's, given as a fractional x index into the whole grid
+     */
+    public double getX(double x) {
+        return (x - width / 2) * FluidEntity.SPACE;
+    }
+
+    public double getY(double y) {
+        return (y - height / 2) * FluidEntity.SPACE;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+}
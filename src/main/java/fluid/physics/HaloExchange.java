@@ -0,0 +1,56 @@
+package fluid.physics;
+
+/**
+ * Keeps the halo of a {@link Universe} that holds only a {@link Subdomain} of the grid in step with the neighboring
+ * subdomains.
+ * <p>
+ * Each round of physics makes three exchanges. The state of the cells on the edge of the subdomain is sent before
+ * the round, so that neighbor interactions across the edge see the same values as an undivided universe would.
+ * Advection then both pulls mass from halo cells, which has to be recorded by the halo cell's owner, and pushes mass
+ * into halo cells, which has to be applied by the halo cell's owner.
+ * <p>
+ * All indices passed to the exchange are indices into the universe's entity array.
+ */
+public interface HaloExchange {
+
+    /**
+     * For a universe holding the whole grid.
+     */
+    HaloExchange NONE = new HaloExchange() {
+    };
+
+    /**
+     * Starts sending the state of owned edge cells to the neighbors. Must not wait on the neighbors, as the universe
+     * carries on with the interior of the subdomain until {@link #completeStateExchange(Universe)}.
+     */
+    default void beginStateExchange(Universe universe) {
+    }
+
+    /**
+     * Waits for the neighbors' edge cells, and copies their state into the halo cells.
+     */
+    default void completeStateExchange(Universe universe) {
+    }
+
+    /**
+     * Records that the owned target cell pulls the given proportion of the halo origin cell. Called concurrently
+     * during advection.
+     */
+    default void recordHaloTransfer(int originX, int originY, int targetX, int targetY, double proportion) {
+    }
+
+    /**
+     * Sends the transfers recorded by {@link #recordHaloTransfer} to the owners of their origin cells, and records
+     * the transfers from owned cells that the neighbors have sent in return.
+     */
+    default void exchangeTransferProportions(Universe universe) {
+    }
+
+    /**
+     * Sends the mass changes recorded on halo cells to the owners of those cells, and records the mass changes that
+     * the neighbors have sent for owned cells.
+     */
+    default void exchangeMassChanges(Universe universe) {
+    }
+
+}
@@ -0,0 +1,39 @@
+package fluid.physics;
+
+/**
+ * Pressure proportional to the number of moles and the temperature, as fluid of no material has always followed.
+ * <p>
+ * https://en.wikipedia.org/wiki/Ideal_gas_law
+ * https://en.wikipedia.org/wiki/Avogadro%27s_law
+ */
+public final class IdealGas implements EquationOfState {
+
+    private final double gasConstant;
+    private final double molarWeight;
+
+    /**
+     * @param gasConstant https://en.wikipedia.org/wiki/Gas_constant
+     * @param molarWeight https://en.wikipedia.org/wiki/Molar_mass
+     */
+    public IdealGas(double gasConstant, double molarWeight) {
+        if (molarWeight <= 0) {
+            throw new IllegalArgumentException("Molar weight must be positive, got " + molarWeight);
+        }
+        this.gasConstant = gasConstant;
+        this.molarWeight = molarWeight;
+    }
+
+    public double getGasConstant() {
+        return gasConstant;
+    }
+
+    public double getMolarWeight() {
+        return molarWeight;
+    }
+
+    @Override
+    public double getPressure(double density, double temperature) {
+        return gasConstant * density * temperature / molarWeight;
+    }
+
+}
@@ -0,0 +1,156 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Heat conduction as the heat equation, solved implicitly one direction at a time: first along every row, then along
+ * every column. Along a line each cell's temperature after the pass depends only on its two neighbors' along it, so
+ * the temperatures of a line are a tridiagonal system, solved directly by the Thomas algorithm, and the lines are
+ * solved at once on different threads.
+ * <p>
+ * Each pass is backward Euler along its direction, which never overshoots, so however conductive the fluid is,
+ * temperatures stay between those around them, and heat is only moved, never made. The heat moved across the face
+ * between two cells is the mean of their mass times their conductivity, times the difference in their temperatures,
+ * shared between the four neighbors as explicit conduction does, so that both agree for poor conductors.
+ * <p>
+ * Only the owned fluid cells with mass are solved for. The others, and the border, keep the temperature they had, and
+ * so hold the ends of the lines at it, as boundary cells do for explicit conduction.
+ * <p>
+ * https://en.wikipedia.org/wiki/Heat_equation
+ * https://en.wikipedia.org/wiki/Alternating-direction_implicit_method
+ * https://en.wikipedia.org/wiki/Tridiagonal_matrix_algorithm
+ */
+final class ImplicitConduction {
+
+    private final CellLayout layout;
+    private final FluidEntity[] entities;
+    private final byte[] cellTypes;
+    // Owned cells, as indices into the grid. Max values are exclusive.
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    // Of each held cell, in layout order
+    private final double[] temperatures;
+    // Mass times conductivity, or NaN for cells that aren't solved for
+    private final double[] conductances;
+    private final double[] masses;
+    // Thomas algorithm's modified upper diagonal and right hand side. Each cell is on one line of each pass.
+    private final double[] upper;
+    private final double[] right;
+
+    ImplicitConduction(CellLayout layout, FluidEntity[] entities, byte[] cellTypes, int minX, int minY, int maxX, int maxY) {
+        this.layout = layout;
+        this.entities = entities;
+        this.cellTypes = cellTypes;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        temperatures = new double[layout.getSize()];
+        conductances = new double[layout.getSize()];
+        masses = new double[layout.getSize()];
+        upper = new double[layout.getSize()];
+        right = new double[layout.getSize()];
+    }
+
+    /**
+     * Conducts heat between the owned fluid cells for a step, setting their temperatures on the entities.
+     */
+    void apply(boolean parallel) {
+        Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+            FluidEntity entity = entities[cell];
+            if (entity == null) return;
+            temperatures[cell] = entity.getTemperature();
+            masses[cell] = entity.getMass();
+            conductances[cell] = isSolved(cell) ? entity.getMass() * entity.getConductivity() : Double.NaN;
+        });
+
+        Ranges.forEach(minY, maxY, parallel, y -> solveLine(minX, maxX, x -> layout.index(x, y)));
+        Ranges.forEach(minX, maxX, parallel, x -> solveLine(minY, maxY, y -> layout.index(x, y)));
+
+        Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+            if (!Double.isNaN(conductances[cell])) {
+                entities[cell].setTemperature(temperatures[cell]);
+            }
+        });
+    }
+
+    private boolean isSolved(int cell) {
+        int x = layout.getX(cell);
+        int y = layout.getY(cell);
+        return x >= minX && x < maxX && y >= minY && y < maxY && cellTypes[cell] == CellType.FLUID && entities[cell].getMass() > 0;
+    }
+
+    /**
+     * Solves each run of cells along the line that are solved for, with the cells either end of it held
+     */
+    private void solveLine(int start, int end, IndexOnLine index) {
+        int position = start;
+        while (position < end) {
+            if (Double.isNaN(conductances[index.at(position)])) {
+                position++;
+                continue;
+            }
+            int runStart = position;
+            while (position < end && !Double.isNaN(conductances[index.at(position)])) {
+                position++;
+            }
+            solveRun(runStart, position, index);
+        }
+    }
+
+    private void solveRun(int start, int end, IndexOnLine index) {
+        // Forward, eliminating each cell's lower neighbor
+        int previous = index.at(start - 1);
+        double previousUpper = 0;
+        double previousRight = 0;
+        for (int position = start; position < end; position++) {
+            int cell = index.at(position);
+            int next = index.at(position + 1);
+            double lowerWeight = getWeight(cell, previous);
+            double upperWeight = getWeight(cell, next);
+            double diagonal = masses[cell] + lowerWeight + upperWeight;
+            double rightSide = masses[cell] * temperatures[cell];
+            if (position == start) {
+                rightSide += lowerWeight * temperatures[previous];
+            } else {
+                diagonal -= lowerWeight * previousUpper;
+                rightSide += lowerWeight * previousRight;
+            }
+            if (position == end - 1) {
+                rightSide += upperWeight * temperatures[next];
+                upperWeight = 0;
+            }
+            upper[cell] = upperWeight / diagonal;
+            right[cell] = rightSide / diagonal;
+            previousUpper = upper[cell];
+            previousRight = right[cell];
+            previous = cell;
+        }
+
+        // Back, from the end of the run
+        double nextTemperature = 0;
+        for (int position = end - 1; position >= start; position--) {
+            int cell = index.at(position);
+            nextTemperature = right[cell] + upper[cell] * nextTemperature;
+            temperatures[cell] = nextTemperature;
+        }
+    }
+
+    /**
+     * Heat moved across the face between the cells per degree of difference. Held cells count with their own mass and
+     * conductivity, as they're worked out for the fluid cells.
+     */
+    private double getWeight(int cell, int neighbor) {
+        double neighborConductance = Double.isNaN(conductances[neighbor])
+                ? masses[neighbor] * entities[neighbor].getConductivity() : conductances[neighbor];
+        return (conductances[cell] + neighborConductance) / 2 / Universe.MAX_NEIGHBORS;
+    }
+
+    private interface IndexOnLine {
+        int at(int position);
+    }
+
+}
@@ -0,0 +1,167 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Viscosity as diffusion of velocity, solved implicitly: each fluid cell's velocity after the step is its velocity
+ * before, plus its viscosity times the difference between it and its neighbors' velocities after the step. Solving for
+ * the velocities after the step rather than moving them by those before is stable however viscous the fluid is, so it
+ * needs no smaller steps.
+ * <p>
+ * The velocities are solved for by red-black Gauss-Seidel: the cells are colored as a checkerboard, and each sweep
+ * updates all the red cells at once from their black neighbors, then the black from the red, so that each half of a
+ * sweep can be split between threads without any cell reading one that's being written.
+ * <p>
+ * The viscosity between two cells is the mean of theirs, from their mix of materials, in cells squared per step.
+ * Cells that aren't fluid keep their velocity, so walls hold the fluid beside them back. Ghost cells take their
+ * source's velocity, reversed by reflective edges, as it changes. Halo cells keep the velocity they were sent, so in a
+ * subdomain the cells along its edge see their neighbors' from the start of the step.
+ * <p>
+ * https://en.wikipedia.org/wiki/Viscosity
+ * https://en.wikipedia.org/wiki/Gauss%E2%80%93Seidel_method
+ * http://www.dgp.toronto.edu/people/stam/reality/Research/pdf/GDC03.pdf
+ */
+final class ImplicitViscosity {
+
+    private final CellLayout layout;
+    private final FluidEntity[] entities;
+    private final int iterations;
+
+    // Owned fluid cells, as indices into entities, of each color
+    private final int[] redCells;
+    private final int[] blackCells;
+    // Indices of the four neighbors of each of the red and the black cells, in turn
+    private final int[] redNeighbors;
+    private final int[] blackNeighbors;
+    // Ghost cells, their sources, and whether their velocity along each axis is the reverse of their source's
+    private final int[] ghostCells;
+    private final int[] ghostSources;
+    private final boolean[] ghostReflectX;
+    private final boolean[] ghostReflectY;
+
+    // Of each held cell, in layout order
+    private final double[] velocityX;
+    private final double[] velocityY;
+    private final double[] viscosity;
+    // Velocities at the start of the step, of the owned fluid cells
+    private final double[] startX;
+    private final double[] startY;
+
+    /**
+     * @param fluidCells   owned fluid cells, as indices into the layout
+     * @param ghostCells   as indices into the layout, with the index of each one's source and whether it's reflected
+     *                     along each axis
+     * @param iterations   sweeps each step
+     */
+    ImplicitViscosity(CellLayout layout, FluidEntity[] entities, int[] fluidCells,
+                      int[] ghostCells, int[] ghostSources, boolean[] ghostReflectX, boolean[] ghostReflectY, int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Viscosity needs at least one sweep, got " + iterations);
+        }
+        this.layout = layout;
+        this.entities = entities;
+        this.iterations = iterations;
+        this.ghostCells = ghostCells;
+        this.ghostSources = ghostSources;
+        this.ghostReflectX = ghostReflectX;
+        this.ghostReflectY = ghostReflectY;
+
+        List<Integer> red = new ArrayList<>();
+        List<Integer> black = new ArrayList<>();
+        for (int cell : fluidCells) {
+            ((layout.getX(cell) + layout.getY(cell)) % 2 == 0 ? red : black).add(cell);
+        }
+        redCells = red.stream().mapToInt(Integer::intValue).toArray();
+        blackCells = black.stream().mapToInt(Integer::intValue).toArray();
+        redNeighbors = getNeighbors(redCells);
+        blackNeighbors = getNeighbors(blackCells);
+
+        velocityX = new double[layout.getSize()];
+        velocityY = new double[layout.getSize()];
+        viscosity = new double[layout.getSize()];
+        startX = new double[layout.getSize()];
+        startY = new double[layout.getSize()];
+    }
+
+    private int[] getNeighbors(int[] cells) {
+        int[] neighbors = new int[cells.length * 4];
+        for (int i = 0; i < cells.length; i++) {
+            int x = layout.getX(cells[i]);
+            int y = layout.getY(cells[i]);
+            neighbors[4 * i] = layout.index(x - 1, y);
+            neighbors[4 * i + 1] = layout.index(x + 1, y);
+            neighbors[4 * i + 2] = layout.index(x, y - 1);
+            neighbors[4 * i + 3] = layout.index(x, y + 1);
+        }
+        return neighbors;
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Diffuses the velocities of the owned fluid cells, setting them on the entities.
+     */
+    void apply(boolean parallel) {
+        Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+            FluidEntity entity = entities[cell];
+            if (entity == null) return;
+            velocityX[cell] = startX[cell] = entity.getDeltaX();
+            velocityY[cell] = startY[cell] = entity.getDeltaY();
+            viscosity[cell] = entity.getViscosity();
+        });
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            sweep(redCells, redNeighbors, parallel);
+            fillGhosts();
+            sweep(blackCells, blackNeighbors, parallel);
+            fillGhosts();
+        }
+
+        setVelocities(redCells, parallel);
+        setVelocities(blackCells, parallel);
+    }
+
+    /**
+     * Sets each cell's velocity to solve its equation, given its neighbors' velocities
+     */
+    private void sweep(int[] cells, int[] neighbors, boolean parallel) {
+        Ranges.forEach(0, cells.length, parallel, i -> {
+            int cell = cells[i];
+            double own = viscosity[cell];
+            double weights = 0;
+            double sumX = 0;
+            double sumY = 0;
+            for (int j = 4 * i; j < 4 * i + 4; j++) {
+                int neighbor = neighbors[j];
+                double weight = (own + viscosity[neighbor]) / 2;
+                weights += weight;
+                sumX += weight * velocityX[neighbor];
+                sumY += weight * velocityY[neighbor];
+            }
+            velocityX[cell] = (startX[cell] + sumX) / (1 + weights);
+            velocityY[cell] = (startY[cell] + sumY) / (1 + weights);
+        });
+    }
+
+    private void fillGhosts() {
+        for (int i = 0; i < ghostCells.length; i++) {
+            int source = ghostSources[i];
+            velocityX[ghostCells[i]] = ghostReflectX[i] ? -velocityX[source] : velocityX[source];
+            velocityY[ghostCells[i]] = ghostReflectY[i] ? -velocityY[source] : velocityY[source];
+        }
+    }
+
+    private void setVelocities(int[] cells, boolean parallel) {
+        Ranges.forEach(0, cells.length, parallel, i -> {
+            FluidEntity entity = entities[cells[i]];
+            entity.setDeltaX(velocityX[cells[i]]);
+            entity.setDeltaY(velocityY[cells[i]]);
+        });
+    }
+
+}
@@ -0,0 +1,106 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * The input sources of a {@link Universe}, with the cells each acts on worked out when it is added.
+ * <p>
+ * Sources can be added and removed from any thread while the universe steps. Each change builds a new batch of every
+ * cell acted on, with the sources acting on it, which the next step picks up and applies in one pass. A cell is only
+ * ever in the batch once, so the pass can be split between threads without two of them touching the same cell.
+ */
+class InputRegistry {
+
+    // In the order they were added, which is the order they act on a cell in
+    private final Map<InputSource, int[]> targets = new LinkedHashMap<>();
+
+    private volatile Batch batch = new Batch(new InputSource[0], new int[0], new int[0][]);
+
+    synchronized void add(InputSource source, int[] cells) {
+        targets.remove(source);
+        targets.put(source, cells);
+        rebuild();
+    }
+
+    synchronized void remove(InputSource source) {
+        if (targets.remove(source) != null) {
+            rebuild();
+        }
+    }
+
+    synchronized List<InputSource> getSources() {
+        return new ArrayList<>(targets.keySet());
+    }
+
+    private void rebuild() {
+        InputSource[] sources = targets.keySet().toArray(new InputSource[targets.size()]);
+
+        // Sources acting on each cell, by cell so that the pass goes through memory in order
+        Map<Integer, List<Integer>> sourcesByCell = new TreeMap<>();
+        for (int source = 0; source < sources.length; source++) {
+            for (int cell : targets.get(sources[source])) {
+                sourcesByCell.computeIfAbsent(cell, key -> new ArrayList<>()).add(source);
+            }
+        }
+
+        int[] cells = new int[sourcesByCell.size()];
+        int[][] cellSources = new int[cells.length][];
+        int i = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : sourcesByCell.entrySet()) {
+            cells[i] = entry.getKey();
+            cellSources[i] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            i++;
+        }
+        batch = new Batch(sources, cells, cellSources);
+    }
+
+    /**
+     * Applies every source active in the given step to its cells.
+     *
+     * @param entities the universe's, indexed as the cells the sources were added with
+     */
+    void apply(FluidEntity[] entities, int step, boolean parallel) {
+        Batch batch = this.batch;
+
+        boolean[] active = new boolean[batch.sources.length];
+        boolean anyActive = false;
+        for (int source = 0; source < active.length; source++) {
+            active[source] = batch.sources[source].isActive(step);
+            anyActive |= active[source];
+        }
+        if (!anyActive) return;
+
+        IntStream cells = IntStream.range(0, batch.cells.length);
+        (parallel ? cells.parallel() : cells).forEach(i -> {
+            FluidEntity entity = entities[batch.cells[i]];
+            for (int source : batch.cellSources[i]) {
+                if (active[source]) {
+                    batch.sources[source].apply(entity, step);
+                }
+            }
+        });
+    }
+
+    private static class Batch {
+
+        final InputSource[] sources;
+        // Ascending
+        final int[] cells;
+        // Indices into sources, for each of cells
+        final int[][] cellSources;
+
+        Batch(InputSource[] sources, int[] cells, int[][] cellSources) {
+            this.sources = sources;
+            this.cells = cells;
+            this.cellSources = cellSources;
+        }
+    }
+
+}
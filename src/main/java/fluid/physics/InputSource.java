@@ -0,0 +1,31 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Something outside of the fluid acting on it every step, such as an emitter of mass or a heated plate. Added to a
+ * {@link Universe} with {@link Universe#addInput(InputSource)}, at any time.
+ * <p>
+ * Indices are into the whole grid, so that inputs land in the same place however the grid is split into subdomains.
+ */
+public interface InputSource {
+
+    /**
+     * The cells acted on, as x and y pairs of indices into the whole grid. Asked once, when the source is added.
+     * Cells beyond the grid are ignored.
+     */
+    int[][] getCells(int gridWidth, int gridHeight);
+
+    /**
+     * Whether the source acts in the given step, counted from the universe's first.
+     */
+    default boolean isActive(int step) {
+        return true;
+    }
+
+    /**
+     * Acts on one of the cells. Called concurrently for different cells, but never for the same cell at once.
+     */
+    void apply(FluidEntity entity, int step);
+
+}
@@ -0,0 +1,59 @@
+package fluid.physics;
+
+/**
+ * A kind of fluid, such as air or water, in the units of the simulation rather than SI ones.
+ */
+public final class Material {
+
+    private final String name;
+    private final double molarWeight;
+    private final double conductivity;
+    private final double viscosity;
+    private final double density;
+    private final EquationOfState equationOfState;
+
+    /**
+     * @param molarWeight  https://en.wikipedia.org/wiki/Molar_mass
+     * @param conductivity https://en.wikipedia.org/wiki/Thermal_conductivity
+     * @param viscosity    https://en.wikipedia.org/wiki/Viscosity
+     * @param density      at rest, https://en.wikipedia.org/wiki/Density
+     * @param equationOfState of the material's pressure
+     */
+    public Material(String name, double molarWeight, double conductivity, double viscosity, double density,
+                    EquationOfState equationOfState) {
+        if (molarWeight <= 0 || density <= 0) {
+            throw new IllegalArgumentException("Molar weight and density of " + name + " must be positive");
+        }
+        this.name = name;
+        this.molarWeight = molarWeight;
+        this.conductivity = conductivity;
+        this.viscosity = viscosity;
+        this.density = density;
+        this.equationOfState = equationOfState;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getMolarWeight() {
+        return molarWeight;
+    }
+
+    public double getConductivity() {
+        return conductivity;
+    }
+
+    public double getViscosity() {
+        return viscosity;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    public EquationOfState getEquationOfState() {
+        return equationOfState;
+    }
+
+}
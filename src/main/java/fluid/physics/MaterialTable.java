@@ -0,0 +1,232 @@
+package fluid.physics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The materials of a scenario, with the properties of each laid out in arrays by material, so that working out the
+ * properties of a mix of them is a few passes over short runs of doubles. A cell's mix is given as the fraction of its
+ * mass that's each material, in the table's order, kept as the first of its grid's {@link ScalarFields} so that they
+ * move with the mass.
+ * <p>
+ * Fractions needn't add up to 1, as mass coming in without a material, such as from an input, dilutes them all
+ * equally. Only their proportions to each other are used, and a cell with none at all is taken to be the first
+ * material.
+ * <p>
+ * The pressure of a mix is the sum of the pressures each of its materials would have alone in the cell, unless they're
+ * all ideal gases of the same gas constant, when it's that of one gas of their mean molar weight.
+ * <p>
+ * https://en.wikipedia.org/wiki/Mixture
+ * https://en.wikipedia.org/wiki/Dalton%27s_law
+ */
+public final class MaterialTable {
+
+    /**
+     * No materials, for scenarios of a single fluid following its {@link PhysicalConstants}
+     */
+    public static final MaterialTable NONE = new MaterialTable(Collections.emptyList());
+
+    private final List<Material> materials;
+    private final double[] inverseMolarWeights;
+    private final double[] conductivities;
+    private final double[] viscosities;
+    private final double[] inverseDensities;
+    private final EquationOfState[] equationsOfState;
+    // Shared by all the materials if they're ideal gases of the same one, NaN if not
+    private final double gasConstant;
+
+    private final List<PhaseTransition> transitions;
+    // Of each transition, the indices of its materials
+    private final int[] lowerMaterials;
+    private final int[] upperMaterials;
+    private final double[] transitionTemperatures;
+    private final double[] latentHeats;
+
+    public MaterialTable(List<Material> materials) {
+        this(materials, Collections.emptyList());
+    }
+
+    public MaterialTable(List<Material> materials, List<PhaseTransition> transitions) {
+        this.materials = Collections.unmodifiableList(new ArrayList<>(materials));
+        int count = materials.size();
+        inverseMolarWeights = new double[count];
+        conductivities = new double[count];
+        viscosities = new double[count];
+        inverseDensities = new double[count];
+        for (int i = 0; i < count; i++) {
+            Material material = materials.get(i);
+            inverseMolarWeights[i] = 1 / material.getMolarWeight();
+            conductivities[i] = material.getConductivity();
+            viscosities[i] = material.getViscosity();
+            inverseDensities[i] = 1 / material.getDensity();
+        }
+
+        equationsOfState = new EquationOfState[count];
+        for (int i = 0; i < count; i++) {
+            equationsOfState[i] = materials.get(i).getEquationOfState();
+        }
+        gasConstant = getSharedGasConstant(equationsOfState);
+
+        List<String> names = getNames();
+        this.transitions = Collections.unmodifiableList(new ArrayList<>(transitions));
+        lowerMaterials = new int[transitions.size()];
+        upperMaterials = new int[transitions.size()];
+        transitionTemperatures = new double[transitions.size()];
+        latentHeats = new double[transitions.size()];
+        for (int i = 0; i < transitions.size(); i++) {
+            PhaseTransition transition = transitions.get(i);
+            lowerMaterials[i] = names.indexOf(transition.getLower());
+            upperMaterials[i] = names.indexOf(transition.getUpper());
+            if (lowerMaterials[i] < 0 || upperMaterials[i] < 0) {
+                throw new IllegalArgumentException("Phase transition from " + transition.getLower() + " to "
+                        + transition.getUpper() + " is not between materials of " + names);
+            }
+            transitionTemperatures[i] = transition.getTemperature();
+            latentHeats[i] = transition.getLatentHeat();
+        }
+    }
+
+    public List<Material> getMaterials() {
+        return materials;
+    }
+
+    public int getCount() {
+        return materials.size();
+    }
+
+    private static double getSharedGasConstant(EquationOfState[] equationsOfState) {
+        double gasConstant = Double.NaN;
+        for (int i = 0; i < equationsOfState.length; i++) {
+            if (!(equationsOfState[i] instanceof IdealGas)) {
+                return Double.NaN;
+            }
+            double materialGasConstant = ((IdealGas) equationsOfState[i]).getGasConstant();
+            if (i > 0 && materialGasConstant != gasConstant) {
+                return Double.NaN;
+            }
+            gasConstant = materialGasConstant;
+        }
+        return gasConstant;
+    }
+
+    public List<PhaseTransition> getTransitions() {
+        return transitions;
+    }
+
+    public boolean hasTransitions() {
+        return !transitions.isEmpty();
+    }
+
+    /**
+     * Whether the materials are all ideal gases of the same gas constant, so that the pressure of a mix of them is
+     * that of one ideal gas of its molar weight
+     */
+    public boolean isIdealGas() {
+        return !Double.isNaN(gasConstant);
+    }
+
+    /**
+     * Of the materials, if they're ideal gases
+     */
+    public double getGasConstant() {
+        return gasConstant;
+    }
+
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        for (Material material : materials) {
+            names.add(material.getName());
+        }
+        return names;
+    }
+
+    /*
+     * Properties of the mix with the given fractions, from the offset, one for each material
+     */
+
+    /**
+     * The mean of the molar weights by number of moles, as a mix's moles are what its pressure comes from
+     */
+    public double getMolarWeight(double[] fractions, int offset) {
+        double total = getTotal(fractions, offset);
+        return total > 0 ? total / weigh(fractions, offset, inverseMolarWeights) : 1 / inverseMolarWeights[0];
+    }
+
+    public double getConductivity(double[] fractions, int offset) {
+        double total = getTotal(fractions, offset);
+        return total > 0 ? weigh(fractions, offset, conductivities) / total : conductivities[0];
+    }
+
+    public double getViscosity(double[] fractions, int offset) {
+        double total = getTotal(fractions, offset);
+        return total > 0 ? weigh(fractions, offset, viscosities) / total : viscosities[0];
+    }
+
+    /**
+     * Mass over the sum of the volumes each material would take up alone
+     */
+    public double getDensity(double[] fractions, int offset) {
+        double total = getTotal(fractions, offset);
+        return total > 0 ? total / weigh(fractions, offset, inverseDensities) : 1 / inverseDensities[0];
+    }
+
+    /**
+     * The sum of the pressures of each material, at its share of the mass
+     */
+    public double getPressure(double[] fractions, int offset, double mass, double temperature) {
+        double total = getTotal(fractions, offset);
+        if (total <= 0) {
+            return equationsOfState[0].getPressure(mass, temperature);
+        }
+        double pressure = 0;
+        for (int i = 0; i < equationsOfState.length; i++) {
+            double fraction = fractions[offset + i];
+            if (fraction > 0) {
+                pressure += equationsOfState[i].getPressure(mass * fraction / total, temperature);
+            }
+        }
+        return pressure;
+    }
+
+    /**
+     * Turns the mix's materials into each other by its phase transitions, taking or giving back their latent heat.
+     *
+     * @return the temperature of the mix afterwards
+     */
+    public double changePhase(double[] fractions, int offset, double temperature) {
+        for (int i = 0; i < lowerMaterials.length; i++) {
+            int lower = offset + lowerMaterials[i];
+            int upper = offset + upperMaterials[i];
+            // Heat per unit of mass beyond the transition, each unit of which turns 1 / latentHeat of the mass
+            double excess = temperature - transitionTemperatures[i];
+            double turned = 0;
+            if (excess > 0 && fractions[lower] > 0) {
+                turned = Math.min(fractions[lower], excess / latentHeats[i]);
+            } else if (excess < 0 && fractions[upper] > 0) {
+                turned = -Math.min(fractions[upper], -excess / latentHeats[i]);
+            }
+            fractions[lower] -= turned;
+            fractions[upper] += turned;
+            temperature -= turned * latentHeats[i];
+        }
+        return temperature;
+    }
+
+    private double getTotal(double[] fractions, int offset) {
+        double total = 0;
+        for (int i = 0; i < materials.size(); i++) {
+            total += fractions[offset + i];
+        }
+        return total;
+    }
+
+    private static double weigh(double[] fractions, int offset, double[] values) {
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += fractions[offset + i] * values[i];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,379 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The surface of a liquid, as the signed distance of each cell from it, in cells, negative inside the liquid. Distances
+ * are only kept in a narrow band around the surface, in square blocks of cells that are made as the surface comes near
+ * them and dropped once it has moved away, so that the work each step goes with the length of the surface rather than
+ * the size of the grid. Cells of blocks that aren't kept are taken to be the width of the band inside or outside.
+ * <p>
+ * Each step the distances are carried along with the fluid, and every few steps they're worked out again from where
+ * the surface crosses between cells, as carrying them along stretches them out of being distances. The curvature of
+ * the surface pulls the cells across it back towards it, which is surface tension.
+ * <p>
+ * https://en.wikipedia.org/wiki/Level-set_method
+ * https://en.wikipedia.org/wiki/Signed_distance_function
+ * http://physbam.stanford.edu/~fedkiw/papers/stanford2001-04.pdf
+ * https://en.wikipedia.org/wiki/Surface_tension
+ */
+public final class NarrowBandLevelSet {
+
+    public static final int BLOCK_SIZE = 8;
+    private static final int BLOCK_CELLS = BLOCK_SIZE * BLOCK_SIZE;
+
+    /**
+     * Steps between working out the distances again
+     */
+    public static final int REINITIALIZE_INTERVAL = 4;
+
+    // Half the width, in cells, over which the surface is spread for the force of its tension
+    private static final double SURFACE_THICKNESS = 1.5;
+
+    private final int width;
+    private final int height;
+    private final int blocksX;
+    private final int blocksY;
+    private final double bandWidth;
+    private final double tension;
+
+    // Distances of the cells of each block in the band, by x then y within the block, null for the others
+    private final double[][] blocks;
+    // Where the band's distances are written to before they're swapped in
+    private final double[][] nextBlocks;
+    // Distances to where the surface crosses between a cell and its neighbors, NaN for cells beside no crossing
+    private final double[][] crossings;
+    // What the cells of blocks outside the band are taken to be, the band width inside or outside
+    private final double[] farValues;
+    // Indices of the blocks in the band
+    private int[] bandBlocks = new int[0];
+
+    /**
+     * @param width     of the grid, including its border
+     * @param height    of the grid, including its border
+     * @param bandWidth distance from the surface, in cells, to which distances are kept
+     * @param tension   https://en.wikipedia.org/wiki/Surface_tension
+     */
+    public NarrowBandLevelSet(int width, int height, double bandWidth, double tension) {
+        if (bandWidth < 2) {
+            throw new IllegalArgumentException("The band must be at least 2 cells wide to work out curvature in, got " + bandWidth);
+        }
+        this.width = width;
+        this.height = height;
+        this.bandWidth = bandWidth;
+        this.tension = tension;
+        blocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocksY = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocks = new double[blocksX * blocksY][];
+        nextBlocks = new double[blocksX * blocksY][];
+        crossings = new double[blocksX * blocksY][];
+        farValues = new double[blocksX * blocksY];
+    }
+
+    /**
+     * Places the surface where the given field, such as the fraction of a material, crosses a half.
+     */
+    public void initialize(Grid grid, int field) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is not the size of the level set");
+        }
+        for (int block = 0; block < blocks.length; block++) {
+            int minX = block % blocksX * BLOCK_SIZE;
+            int minY = block / blocksX * BLOCK_SIZE;
+            // Half a cell at most from the surface, so that working them out again finds it between the cells
+            double[] distances = new double[BLOCK_CELLS];
+            for (int i = 0; i < BLOCK_CELLS; i++) {
+                int x = Math.min(minX + i % BLOCK_SIZE, width - 1);
+                int y = Math.min(minY + i / BLOCK_SIZE, height - 1);
+                distances[i] = .5 - Math.max(0, Math.min(1, grid.getEntity(x, y).getScalar(field)));
+            }
+            blocks[block] = distances;
+            farValues[block] = distances[0] < 0 ? -bandWidth : bandWidth;
+        }
+        // Everything starts in the band, then those away from the surface are dropped
+        for (int block = 0; block < blocks.length; block++) {
+            nextBlocks[block] = new double[BLOCK_CELLS];
+            crossings[block] = new double[BLOCK_CELLS];
+        }
+        bandBlocks = IntStream.range(0, blocks.length).toArray();
+        reinitialize(true);
+    }
+
+    public double getBandWidth() {
+        return bandWidth;
+    }
+
+    public double getTension() {
+        return tension;
+    }
+
+    /**
+     * How many of the blocks are in the band, for seeing how much of the grid is worked on
+     */
+    public int getBandBlockCount() {
+        return bandBlocks.length;
+    }
+
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Signed distance of the cell from the surface, negative inside, at most the band width
+     */
+    public double getDistance(int x, int y) {
+        x = x < 0 ? 0 : x >= width ? width - 1 : x;
+        y = y < 0 ? 0 : y >= height ? height - 1 : y;
+        int block = y / BLOCK_SIZE * blocksX + x / BLOCK_SIZE;
+        double[] distances = blocks[block];
+        return distances == null ? farValues[block] : distances[y % BLOCK_SIZE * BLOCK_SIZE + x % BLOCK_SIZE];
+    }
+
+    /**
+     * The curvature of the surface through the given cell, positive where the liquid bulges out, from the divergence
+     * of the surface's normal. Limited to that of a circle a cell across, the sharpest the grid can show.
+     * <p>
+     * https://en.wikipedia.org/wiki/Mean_curvature#Implicit_form_of_mean_curvature
+     */
+    public double getCurvature(int x, int y) {
+        double dx = (getDistance(x + 1, y) - getDistance(x - 1, y)) / 2;
+        double dy = (getDistance(x, y + 1) - getDistance(x, y - 1)) / 2;
+        double gradientSquared = dx * dx + dy * dy;
+        if (gradientSquared < FluidEntity.FUZZ) {
+            return 0;
+        }
+        double distance = getDistance(x, y);
+        double dxx = getDistance(x + 1, y) - 2 * distance + getDistance(x - 1, y);
+        double dyy = getDistance(x, y + 1) - 2 * distance + getDistance(x, y - 1);
+        double dxy = (getDistance(x + 1, y + 1) - getDistance(x + 1, y - 1) - getDistance(x - 1, y + 1) + getDistance(x - 1, y - 1)) / 4;
+        double curvature = (dxx * dy * dy - 2 * dx * dy * dxy + dyy * dx * dx) / Math.pow(gradientSquared, 1.5);
+        return Math.max(-2, Math.min(2, curvature));
+    }
+
+    /*
+     * Steps
+     */
+
+    /**
+     * Records the force of the surface's tension on the fluid cells near it, towards the inside of the surface where
+     * it bulges out and away where it curves in.
+     * <p>
+     * http://www.sciencedirect.com/science/article/pii/002199919290240Y
+     */
+    public void applySurfaceTension(Grid grid, boolean parallel) {
+        byte[] cellTypes = grid.getCellTypes();
+        CellLayout layout = grid.getLayout();
+        blockStream(parallel).forEach(block -> {
+            int minX = block % blocksX * BLOCK_SIZE;
+            int minY = block / blocksX * BLOCK_SIZE;
+            for (int i = 0; i < BLOCK_CELLS; i++) {
+                int x = minX + i % BLOCK_SIZE;
+                int y = minY + i / BLOCK_SIZE;
+                if (x < 1 || y < 1 || x >= width - 1 || y >= height - 1) continue;
+
+                double distance = blocks[block][i];
+                if (Math.abs(distance) >= SURFACE_THICKNESS || cellTypes[layout.index(x, y)] != CellType.FLUID) continue;
+
+                double dx = (getDistance(x + 1, y) - getDistance(x - 1, y)) / 2;
+                double dy = (getDistance(x, y + 1) - getDistance(x, y - 1)) / 2;
+                double gradient = Math.sqrt(dx * dx + dy * dy);
+                if (gradient < FluidEntity.FUZZ) continue;
+
+                // Spread over the cells either side of the surface, so that it moves smoothly between them
+                double delta = (1 + Math.cos(Math.PI * distance / SURFACE_THICKNESS)) / (2 * SURFACE_THICKNESS);
+                double force = -tension * getCurvature(x, y) * delta / gradient;
+                grid.getEntity(x, y).recordForceChange(force * dx, force * dy);
+            }
+        });
+    }
+
+    /**
+     * Carries the distances along with the fluid, looking back from each cell to where its fluid was a step ago.
+     * <p>
+     * https://en.wikipedia.org/wiki/Semi-Lagrangian_scheme
+     */
+    public void advect(Grid grid, boolean parallel) {
+        blockStream(parallel).forEach(block -> {
+            int minX = block % blocksX * BLOCK_SIZE;
+            int minY = block / blocksX * BLOCK_SIZE;
+            double[] next = nextBlocks[block];
+            for (int i = 0; i < BLOCK_CELLS; i++) {
+                int x = minX + i % BLOCK_SIZE;
+                int y = minY + i / BLOCK_SIZE;
+                if (x >= width || y >= height) continue;
+
+                FluidEntity entity = grid.getEntity(x, y);
+                double distance = sample(x - entity.getDeltaX() / FluidEntity.SPACE, y - entity.getDeltaY() / FluidEntity.SPACE);
+                next[i] = Math.max(-bandWidth, Math.min(bandWidth, distance));
+            }
+        });
+        swap();
+    }
+
+    /**
+     * Works the distances out again from where the surface crosses between cells, first bringing into the band the
+     * blocks around those the surface is near, and afterwards dropping those it has moved away from.
+     * <p>
+     * The distances out from the crossings are solutions of |grad d| = 1, found by updating all the cells of the band
+     * at once from their neighbors, as many times as there are cells across the band.
+     * <p>
+     * https://en.wikipedia.org/wiki/Eikonal_equation
+     * https://en.wikipedia.org/wiki/Fast_sweeping_method
+     */
+    public void reinitialize(boolean parallel) {
+        updateBand(true);
+
+        blockStream(parallel).forEach(this::findCrossings);
+        blockStream(parallel).forEach(block -> {
+            double[] next = nextBlocks[block];
+            double[] blockCrossings = crossings[block];
+            for (int i = 0; i < BLOCK_CELLS; i++) {
+                double sign = blocks[block][i] < 0 ? -1 : 1;
+                next[i] = Double.isNaN(blockCrossings[i]) ? sign * bandWidth : sign * blockCrossings[i];
+            }
+        });
+        swap();
+
+        int iterations = (int) Math.ceil(bandWidth) + 1;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            blockStream(parallel).forEach(this::solveDistances);
+            swap();
+        }
+
+        updateBand(false);
+    }
+
+    /**
+     * Distance of each cell beside the surface to it, taking it to be straight between where it crosses to the cell's
+     * neighbors along each axis.
+     */
+    private void findCrossings(int block) {
+        int minX = block % blocksX * BLOCK_SIZE;
+        int minY = block / blocksX * BLOCK_SIZE;
+        double[] blockCrossings = crossings[block];
+        for (int i = 0; i < BLOCK_CELLS; i++) {
+            int x = minX + i % BLOCK_SIZE;
+            int y = minY + i / BLOCK_SIZE;
+            double distance = getDistance(x, y);
+            // Fractions of the way to the nearer crossing along each axis
+            double crossingX = Math.min(getCrossing(distance, x - 1, y), getCrossing(distance, x + 1, y));
+            double crossingY = Math.min(getCrossing(distance, x, y - 1), getCrossing(distance, x, y + 1));
+            if (crossingX == Double.POSITIVE_INFINITY && crossingY == Double.POSITIVE_INFINITY) {
+                blockCrossings[i] = Double.NaN;
+            } else if (crossingX == 0 || crossingY == 0) {
+                blockCrossings[i] = 0;
+            } else {
+                blockCrossings[i] = 1 / Math.sqrt(1 / (crossingX * crossingX) + 1 / (crossingY * crossingY));
+            }
+        }
+    }
+
+    /**
+     * Fraction of the way to the neighbor at which the surface crosses, linearly between the two, or infinity if it
+     * doesn't
+     */
+    private double getCrossing(double distance, int neighborX, int neighborY) {
+        if (neighborX < 0 || neighborY < 0 || neighborX >= width || neighborY >= height) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double neighbor = getDistance(neighborX, neighborY);
+        if ((distance < 0) == (neighbor < 0)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(distance) / (Math.abs(distance) + Math.abs(neighbor));
+    }
+
+    private void solveDistances(int block) {
+        int minX = block % blocksX * BLOCK_SIZE;
+        int minY = block / blocksX * BLOCK_SIZE;
+        double[] distances = blocks[block];
+        double[] next = nextBlocks[block];
+        double[] blockCrossings = crossings[block];
+        for (int i = 0; i < BLOCK_CELLS; i++) {
+            double sign = distances[i] < 0 ? -1 : 1;
+            if (!Double.isNaN(blockCrossings[i])) {
+                next[i] = distances[i];
+                continue;
+            }
+            int x = minX + i % BLOCK_SIZE;
+            int y = minY + i / BLOCK_SIZE;
+            double a = Math.min(Math.abs(getDistance(x - 1, y)), Math.abs(getDistance(x + 1, y)));
+            double b = Math.min(Math.abs(getDistance(x, y - 1)), Math.abs(getDistance(x, y + 1)));
+            double solution = Math.abs(a - b) >= 1 ? Math.min(a, b) + 1 : (a + b + Math.sqrt(2 - (a - b) * (a - b))) / 2;
+            next[i] = sign * Math.min(bandWidth, Math.min(Math.abs(distances[i]), solution));
+        }
+    }
+
+    /**
+     * The band is the blocks with a cell nearer the surface than the band width, and those around them.
+     *
+     * @param grow whether to add blocks that should be in it, or drop those that shouldn't
+     */
+    private void updateBand(boolean grow) {
+        boolean[] inBand = new boolean[blocks.length];
+        for (int block : bandBlocks) {
+            if (!isNearSurface(blocks[block])) continue;
+            int blockX = block % blocksX;
+            int blockY = block / blocksX;
+            for (int y = Math.max(0, blockY - 1); y <= Math.min(blocksY - 1, blockY + 1); y++) {
+                for (int x = Math.max(0, blockX - 1); x <= Math.min(blocksX - 1, blockX + 1); x++) {
+                    inBand[y * blocksX + x] = true;
+                }
+            }
+        }
+
+        for (int block = 0; block < blocks.length; block++) {
+            if (grow && inBand[block] && blocks[block] == null) {
+                blocks[block] = new double[BLOCK_CELLS];
+                Arrays.fill(blocks[block], farValues[block]);
+                nextBlocks[block] = new double[BLOCK_CELLS];
+                crossings[block] = new double[BLOCK_CELLS];
+            } else if (!grow && !inBand[block] && blocks[block] != null) {
+                farValues[block] = blocks[block][0] < 0 ? -bandWidth : bandWidth;
+                blocks[block] = null;
+                nextBlocks[block] = null;
+                crossings[block] = null;
+            }
+        }
+        bandBlocks = IntStream.range(0, blocks.length).filter(block -> blocks[block] != null).toArray();
+    }
+
+    private boolean isNearSurface(double[] distances) {
+        for (double distance : distances) {
+            if (Math.abs(distance) < bandWidth) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bilinearly between the cells around the given point, in cells
+     */
+    private double sample(double x, double y) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        double u = x - x0;
+        double v = y - y0;
+        double lower = getDistance(x0, y0) + u * (getDistance(x0 + 1, y0) - getDistance(x0, y0));
+        double upper = getDistance(x0, y0 + 1) + u * (getDistance(x0 + 1, y0 + 1) - getDistance(x0, y0 + 1));
+        return lower + v * (upper - lower);
+    }
+
+    private void swap() {
+        for (int block : bandBlocks) {
+            double[] distances = blocks[block];
+            blocks[block] = nextBlocks[block];
+            nextBlocks[block] = distances;
+        }
+    }
+
+    private IntStream blockStream(boolean parallel) {
+        IntStream stream = IntStream.of(bandBlocks);
+        return parallel ? stream.parallel() : stream;
+    }
+
+}
@@ -0,0 +1,56 @@
+package fluid.physics;
+
+/**
+ * One material turning into another at a temperature, such as water boiling into steam, and back again below it.
+ * Turning takes latent heat, so mass of the lower material above the temperature turns until the heat it takes has
+ * brought the cell down to the temperature, or there's none of it left, and the same the other way.
+ * <p>
+ * Heat is a cell's mass times its temperature, so the latent heat is in degrees per unit of mass that turns.
+ * <p>
+ * https://en.wikipedia.org/wiki/Phase_transition
+ * https://en.wikipedia.org/wiki/Latent_heat
+ * https://en.wikipedia.org/wiki/Stefan_problem
+ */
+public final class PhaseTransition {
+
+    private final String lower;
+    private final String upper;
+    private final double temperature;
+    private final double latentHeat;
+
+    /**
+     * @param lower       name of the material below the temperature, such as water
+     * @param upper       name of the material above it, such as steam
+     * @param latentHeat  taken by each unit of mass turning from the lower material into the upper, and given back the
+     *                    other way
+     */
+    public PhaseTransition(String lower, String upper, double temperature, double latentHeat) {
+        if (lower.equals(upper)) {
+            throw new IllegalArgumentException("A phase transition is between two materials, got " + lower + " twice");
+        }
+        if (latentHeat <= 0) {
+            throw new IllegalArgumentException("Latent heat of " + lower + " into " + upper + " must be positive");
+        }
+        this.lower = lower;
+        this.upper = upper;
+        this.temperature = temperature;
+        this.latentHeat = latentHeat;
+    }
+
+    public String getLower() {
+        return lower;
+    }
+
+    public String getUpper() {
+        return upper;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getLatentHeat() {
+        return latentHeat;
+    }
+
+}
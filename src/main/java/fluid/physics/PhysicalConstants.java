@@ -0,0 +1,51 @@
+package fluid.physics;
+
+/**
+ * The constants of the physics a {@link fluid.entity.FluidEntity} follows, so that scenarios can tune them.
+ */
+public final class PhysicalConstants {
+
+    public static final PhysicalConstants DEFAULT = new PhysicalConstants(Universe.GRAVITATIONAL_CONSTANT, .02, .0001);
+
+    private final double gravity;
+    private final double gasConstant;
+    private final double conductivity;
+    private final MaterialTable materials;
+
+    /**
+     * @param gravity      acceleration downwards, per step
+     * @param gasConstant  https://en.wikipedia.org/wiki/Gas_constant
+     * @param conductivity https://en.wikipedia.org/wiki/Thermal_conductivity
+     */
+    public PhysicalConstants(double gravity, double gasConstant, double conductivity) {
+        this(gravity, gasConstant, conductivity, MaterialTable.NONE);
+    }
+
+    /**
+     * @param conductivity of fluid of no material, only used if there are none
+     * @param materials    of which the fluid is a mix
+     */
+    public PhysicalConstants(double gravity, double gasConstant, double conductivity, MaterialTable materials) {
+        this.gravity = gravity;
+        this.gasConstant = gasConstant;
+        this.conductivity = conductivity;
+        this.materials = materials;
+    }
+
+    public double getGravity() {
+        return gravity;
+    }
+
+    public double getGasConstant() {
+        return gasConstant;
+    }
+
+    public double getConductivity() {
+        return conductivity;
+    }
+
+    public MaterialTable getMaterials() {
+        return materials;
+    }
+
+}
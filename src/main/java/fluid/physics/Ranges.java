@@ -0,0 +1,24 @@
+package fluid.physics;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Loops over a range of indices, split across threads or not, for the solvers that work cell by cell or line by line
+ * and are told whether to go parallel.
+ */
+final class Ranges {
+
+    private Ranges() {
+    }
+
+    /**
+     * @param start inclusive
+     * @param end   exclusive
+     */
+    static void forEach(int start, int end, boolean parallel, IntConsumer action) {
+        IntStream range = IntStream.range(start, end);
+        (parallel ? range.parallel() : range).forEach(action);
+    }
+
+}
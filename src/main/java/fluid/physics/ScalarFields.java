@@ -0,0 +1,82 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Named passive scalars, such as dyes or tracer concentrations, carried along with the mass of each cell of a
+ * {@link Grid} without acting on it. Each is a concentration, an amount per unit of mass, so that it mixes the way
+ * temperature does.
+ * <p>
+ * All of them are kept in one array, with each cell's next to each other, in the grid's layout order. Entities are
+ * handed their slice of it when set on the grid, so however many scalars there are, moving mass moves them all in the
+ * same pass, as one run of memory per cell.
+ * <p>
+ * https://en.wikipedia.org/wiki/Passive_scalar
+ */
+public final class ScalarFields {
+
+    private final List<String> names;
+    private final int count;
+    // Concentration of each field, cell by cell
+    private final double[] values;
+    // Mass times concentration moving into each cell, summed as it's recorded
+    private final double[] incoming;
+
+    /**
+     * @param cells the size of the grid's layout
+     */
+    public ScalarFields(List<String> names, int cells) {
+        if (names.stream().distinct().count() != names.size()) {
+            throw new IllegalArgumentException("Scalar fields must have different names, got " + names);
+        }
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.count = names.size();
+        this.values = new double[cells * count];
+        this.incoming = new double[cells * count];
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * For picking a field by name, to pass to {@link FluidEntity#getScalar(int)}
+     */
+    public int indexOf(String name) {
+        int field = names.indexOf(name);
+        if (field < 0) {
+            throw new IllegalArgumentException("No scalar field " + name + ", only " + names);
+        }
+        return field;
+    }
+
+    /**
+     * @param cell index into the grid's layout
+     */
+    public double get(int cell, int field) {
+        return values[cell * count + field];
+    }
+
+    /**
+     * Gives the entity the given cell's slice of the fields.
+     */
+    public void attach(FluidEntity entity, int cell) {
+        entity.setScalarStorage(values, incoming, cell * count, count);
+    }
+
+    /**
+     * Gives an entity that isn't in the grid, such as a stand in for a cell held elsewhere, fields of its own.
+     */
+    public void attachDetached(FluidEntity entity) {
+        entity.setScalarStorage(new double[count], new double[count], 0, count);
+    }
+
+}
@@ -0,0 +1,53 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three snapshots passed between the simulation and whatever draws it without either waiting on the other: one being
+ * filled, one being read, and the last filled, waiting for the reader. Publishing swaps the filled one for the waiting
+ * one, and reading swaps the one read for the waiting one if it's newer, both in a single atomic step, so the
+ * simulation never writes the snapshot being read, however often either side goes.
+ * <p>
+ * Only one thread may publish and one read.
+ * <p>
+ * https://en.wikipedia.org/wiki/Multiple_buffering#Triple_buffering
+ */
+final class SnapshotBuffer {
+
+    // Set in the state when the waiting snapshot is newer than the reader's
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+
+    private final DisplaySnapshot[] snapshots;
+    // The index of the waiting snapshot, and whether it's fresh
+    private final AtomicInteger state = new AtomicInteger(1);
+    // Only touched by the publisher
+    private int filling = 0;
+    // Only touched by the reader
+    private int reading = 2;
+
+    SnapshotBuffer(int width, int height, int scalarCount) {
+        snapshots = new DisplaySnapshot[]{
+                new DisplaySnapshot(width, height, scalarCount),
+                new DisplaySnapshot(width, height, scalarCount),
+                new DisplaySnapshot(width, height, scalarCount)};
+    }
+
+    void publish(FluidEntity[][] entities, TracerParticles tracers, int step, boolean parallel) {
+        snapshots[filling].copy(entities, tracers, step, parallel);
+        filling = state.getAndSet(filling | FRESH) & INDEX;
+    }
+
+    /**
+     * The last published snapshot, which doesn't change until the next call
+     */
+    DisplaySnapshot latest() {
+        if ((state.get() & FRESH) != 0) {
+            reading = state.getAndSet(reading) & INDEX;
+        }
+        return snapshots[reading];
+    }
+
+}
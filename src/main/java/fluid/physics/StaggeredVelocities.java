@@ -0,0 +1,248 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+/**
+ * Velocities kept on the faces between cells, a MAC grid, rather than at their centers: the velocity along x on the
+ * faces to the left and right of each cell, and along y on those below and above it. A face's velocity is pushed by
+ * the difference in pressure of just the two cells either side of it, so every face sees the pressure of its own
+ * cells, and a checkerboard of pressures can't hide from a slope worked out across two cells.
+ * <p>
+ * The faces are the velocity of the fluid from step to step. Each step:
+ * <ol>
+ * <li>whatever the other forces, viscosity and reflection did to the velocity of each owned fluid cell is added to
+ * its faces, as the mean of the two cells' for faces between owned fluid cells</li>
+ * <li>each owned face is pushed by the pressures of its two cells, over their mean mass, and faces against solid or
+ * reflective cells are stopped</li>
+ * <li>the faces are moved along the flow, each taking the velocity from where it traces back to, interpolated between
+ * the faces of its own direction around there</li>
+ * <li>each owned fluid cell's velocity is set to the mean of its faces, which is what its mass moves by</li>
+ * </ol>
+ * Faces are indexed as the cell to their right for x, or above them for y, so that each array is in layout order.
+ * Faces outside the owned cells are worked out from the velocities of the cells either side of them each step, so
+ * ghost and halo cells stand in for them. Those along the edge of the owned cells are kept by the subdomains either
+ * side of them alike, each by what it holds, so they can drift apart a little.
+ * <p>
+ * https://en.wikipedia.org/wiki/Staggered_grid
+ * https://www.cs.ubc.ca/~rbridson/fluidsimulation/fluids_notes.pdf
+ */
+final class StaggeredVelocities {
+
+    private final CellLayout layout;
+    private final FluidEntity[] entities;
+    private final byte[] cellTypes;
+    // Owned cells, as indices into the grid. Max values are exclusive.
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    // Along x on the face to the left of each held cell, and along y on the face below it
+    private double[] facesX;
+    private double[] facesY;
+    // Where the faces are moved to, swapped with them afterwards
+    private double[] movedX;
+    private double[] movedY;
+    // Velocity of each held cell at the start of the step
+    private final double[] startX;
+    private final double[] startY;
+    private boolean started = false;
+
+    StaggeredVelocities(CellLayout layout, FluidEntity[] entities, byte[] cellTypes, int minX, int minY, int maxX, int maxY) {
+        this.layout = layout;
+        this.entities = entities;
+        this.cellTypes = cellTypes;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        facesX = new double[layout.getSize()];
+        facesY = new double[layout.getSize()];
+        movedX = new double[layout.getSize()];
+        movedY = new double[layout.getSize()];
+        startX = new double[layout.getSize()];
+        startY = new double[layout.getSize()];
+    }
+
+    /**
+     * Copies the velocities of the cells, before anything acts on them this step
+     */
+    void begin(boolean parallel) {
+        Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+            FluidEntity entity = entities[cell];
+            if (entity == null) return;
+            startX[cell] = entity.getDeltaX();
+            startY[cell] = entity.getDeltaY();
+        });
+        if (!started) {
+            Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+                int x = layout.getX(cell);
+                int y = layout.getY(cell);
+                facesX[cell] = x == 0 ? startX[cell] : (startX[layout.index(x - 1, y)] + startX[cell]) / 2;
+                facesY[cell] = y == 0 ? startY[cell] : (startY[layout.index(x, y - 1)] + startY[cell]) / 2;
+            });
+            started = true;
+        }
+    }
+
+    /**
+     * Carries the changes to the owned cells' velocities since {@link #begin(boolean)} onto the faces, pushes and
+     * moves the faces, then sets the owned fluid cells' velocities from them.
+     */
+    void apply(boolean parallel) {
+        Ranges.forEach(minX, maxX + 1, parallel, x -> {
+            for (int y = minY; y < maxY; y++) {
+                updateFaceX(x, y);
+            }
+        });
+        Ranges.forEach(minX, maxX, parallel, x -> {
+            for (int y = minY; y <= maxY; y++) {
+                updateFaceY(x, y);
+            }
+        });
+        fillBorderFaces(parallel);
+
+        Ranges.forEach(minX, maxX + 1, parallel, x -> {
+            for (int y = minY; y < maxY; y++) {
+                moveFaceX(x, y);
+            }
+        });
+        Ranges.forEach(minX, maxX, parallel, x -> {
+            for (int y = minY; y <= maxY; y++) {
+                moveFaceY(x, y);
+            }
+        });
+        double[] swap = facesX;
+        facesX = movedX;
+        movedX = swap;
+        swap = facesY;
+        facesY = movedY;
+        movedY = swap;
+
+        Ranges.forEach(minX, maxX, parallel, x -> {
+            for (int y = minY; y < maxY; y++) {
+                int cell = layout.index(x, y);
+                FluidEntity entity = entities[cell];
+                if (cellTypes[cell] != CellType.FLUID || entity.getMass() <= 0) continue;
+                entity.setDeltaX((facesX[cell] + facesX[layout.index(x + 1, y)]) / 2);
+                entity.setDeltaY((facesY[cell] + facesY[layout.index(x, y + 1)]) / 2);
+            }
+        });
+    }
+
+    private void updateFaceX(int x, int y) {
+        int right = layout.index(x, y);
+        int left = layout.index(x - 1, y);
+        facesX[right] = updateFace(facesX[right], left, right,
+                changeX(left, x - 1 >= minX), changeX(right, x < maxX));
+    }
+
+    private void updateFaceY(int x, int y) {
+        int upper = layout.index(x, y);
+        int lower = layout.index(x, y - 1);
+        facesY[upper] = updateFace(facesY[upper], lower, upper,
+                changeY(lower, y - 1 >= minY), changeY(upper, y < maxY));
+    }
+
+    /**
+     * The face between the lower and upper cells along its axis, after the changes to their velocities and the push
+     * of their pressures. The changes are NaN for cells that aren't owned fluid, leaving the face the other's.
+     */
+    private double updateFace(double face, int lower, int upper, double lowerChange, double upperChange) {
+        byte lowerType = cellTypes[lower];
+        byte upperType = cellTypes[upper];
+        if (lowerType != CellType.FLUID && upperType != CellType.FLUID) {
+            return face;
+        }
+        if (isWall(lowerType) || isWall(upperType)) {
+            return 0;
+        }
+        if (Double.isNaN(lowerChange)) {
+            face += Double.isNaN(upperChange) ? 0 : upperChange;
+        } else {
+            face += Double.isNaN(upperChange) ? lowerChange : (lowerChange + upperChange) / 2;
+        }
+        FluidEntity lowerEntity = entities[lower];
+        FluidEntity upperEntity = entities[upper];
+        double mass = (lowerEntity.getMass() + upperEntity.getMass()) / 2;
+        if (mass > FluidEntity.FUZZ) {
+            face += (lowerEntity.getUpdatedPressure() - upperEntity.getUpdatedPressure()) / mass;
+        }
+        return face;
+    }
+
+    private double changeX(int cell, boolean owned) {
+        return owned && cellTypes[cell] == CellType.FLUID ? entities[cell].getDeltaX() - startX[cell] : Double.NaN;
+    }
+
+    private double changeY(int cell, boolean owned) {
+        return owned && cellTypes[cell] == CellType.FLUID ? entities[cell].getDeltaY() - startY[cell] : Double.NaN;
+    }
+
+    private static boolean isWall(byte cellType) {
+        return cellType == CellType.REFLECTIVE || cellType == CellType.SOLID;
+    }
+
+    /**
+     * Sets every face that isn't updated from the mean of the cells either side of it, as they are now
+     */
+    private void fillBorderFaces(boolean parallel) {
+        Ranges.forEach(0, layout.getSize(), parallel, cell -> {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+            if (x < minX || x > maxX || y < minY || y >= maxY) {
+                facesX[cell] = x == 0 ? getDeltaX(cell) : (getDeltaX(layout.index(x - 1, y)) + getDeltaX(cell)) / 2;
+            }
+            if (x < minX || x >= maxX || y < minY || y > maxY) {
+                facesY[cell] = y == 0 ? getDeltaY(cell) : (getDeltaY(layout.index(x, y - 1)) + getDeltaY(cell)) / 2;
+            }
+            movedX[cell] = facesX[cell];
+            movedY[cell] = facesY[cell];
+        });
+    }
+
+    private double getDeltaX(int cell) {
+        return entities[cell] == null ? 0 : entities[cell].getDeltaX();
+    }
+
+    private double getDeltaY(int cell) {
+        return entities[cell] == null ? 0 : entities[cell].getDeltaY();
+    }
+
+    /**
+     * Moves the face to the left of the cell, which is at x - 1/2, taking the velocity along y there as the mean of
+     * the four faces around it
+     */
+    private void moveFaceX(int x, int y) {
+        int cell = layout.index(x, y);
+        double velocityX = facesX[cell];
+        double velocityY = (facesY[layout.index(x - 1, y)] + facesY[layout.index(x - 1, y + 1)]
+                + facesY[cell] + facesY[layout.index(x, y + 1)]) / 4;
+        // In units of the faces' indices, the face to the left of cell i being at i
+        movedX[cell] = interpolate(facesX, x - velocityX / FluidEntity.SPACE, y - velocityY / FluidEntity.SPACE);
+    }
+
+    private void moveFaceY(int x, int y) {
+        int cell = layout.index(x, y);
+        double velocityX = (facesX[layout.index(x, y - 1)] + facesX[layout.index(x + 1, y - 1)]
+                + facesX[cell] + facesX[layout.index(x + 1, y)]) / 4;
+        double velocityY = facesY[cell];
+        movedY[cell] = interpolate(facesY, x - velocityX / FluidEntity.SPACE, y - velocityY / FluidEntity.SPACE);
+    }
+
+    /**
+     * https://en.wikipedia.org/wiki/Bilinear_interpolation
+     */
+    private double interpolate(double[] faces, double x, double y) {
+        x = Math.max(0, Math.min(layout.getWidth() - 1, x));
+        y = Math.max(0, Math.min(layout.getHeight() - 1, y));
+        int i = Math.min((int) x, layout.getWidth() - 2);
+        int j = Math.min((int) y, layout.getHeight() - 2);
+        double u = x - i;
+        double v = y - j;
+        double lower = faces[layout.index(i, j)] + u * (faces[layout.index(i + 1, j)] - faces[layout.index(i, j)]);
+        double upper = faces[layout.index(i, j + 1)] + u * (faces[layout.index(i + 1, j + 1)] - faces[layout.index(i, j + 1)]);
+        return lower + v * (upper - lower);
+    }
+
+}
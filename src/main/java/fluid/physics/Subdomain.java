@@ -0,0 +1,157 @@
+package fluid.physics;
+
+/**
+ * The rectangle of the simulation grid that a {@link Universe} is responsible for, when the grid is split between
+ * several universes.
+ * <p>
+ * The universe's {@link Grid} holds the owned cells plus a border of the same width on every side. Where the side is
+ * inside the whole grid, the border is a halo of copies of the cells owned by neighboring subdomains. Where it is the
+ * edge of the whole grid, the border is ghost cells, filled as the grid's {@link GhostBoundary} says. Either way,
+ * stencils reaching up to the border's width beyond an owned cell never need to check where they are.
+ */
+public class Subdomain {
+
+    /**
+     * Wide enough for advection to move mass up to two cells per step without limiting it
+     */
+    public static final int DEFAULT_BORDER = 2;
+
+    private final int gridWidth;
+    private final int gridHeight;
+
+    // Owned cells, as indices into the whole grid. Max values are exclusive.
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    private final int border;
+
+    public Subdomain(int gridWidth, int gridHeight, int minX, int minY, int maxX, int maxY) {
+        this(gridWidth, gridHeight, minX, minY, maxX, maxY, DEFAULT_BORDER);
+    }
+
+    public Subdomain(int gridWidth, int gridHeight, int minX, int minY, int maxX, int maxY, int border) {
+        if (minX < 0 || minY < 0 || maxX > gridWidth || maxY > gridHeight || minX >= maxX || minY >= maxY) {
+            throw new IllegalArgumentException("Subdomain [" + minX + ", " + maxX + ") x [" + minY + ", " + maxY
+                    + ") does not fit in a " + gridWidth + " x " + gridHeight + " grid");
+        }
+        // Ghost and halo cells must come from the owned cells within the border
+        if (border < 1 || maxX - minX < border || maxY - minY < border) {
+            throw new IllegalArgumentException("Subdomain [" + minX + ", " + maxX + ") x [" + minY + ", " + maxY
+                    + ") is too small for a border of " + border);
+        }
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.border = border;
+    }
+
+    /**
+     * A subdomain covering the whole grid, so with only ghost cells around it.
+     */
+    public static Subdomain whole(int gridWidth, int gridHeight) {
+        return whole(gridWidth, gridHeight, DEFAULT_BORDER);
+    }
+
+    public static Subdomain whole(int gridWidth, int gridHeight, int border) {
+        return new Subdomain(gridWidth, gridHeight, 0, 0, gridWidth, gridHeight, border);
+    }
+
+    public int getGridWidth() {
+        return gridWidth;
+    }
+
+    public int getGridHeight() {
+        return gridHeight;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getWidth() {
+        return maxX - minX;
+    }
+
+    public int getHeight() {
+        return maxY - minY;
+    }
+
+    /**
+     * Whether it owns every cell of the grid, so has no neighbors to exchange its border with
+     */
+    public boolean isWhole() {
+        return getWidth() == gridWidth && getHeight() == gridHeight;
+    }
+
+
+    /**
+     * Border
+     */
+
+    public int getBorder() {
+        return border;
+    }
+
+    public boolean owns(int x, int y) {
+        return x >= minX && x < maxX && y >= minY && y < maxY;
+    }
+
+    /**
+     * Whether the cell at the given grid indices is either owned or in the border. Ghost cells have indices beyond
+     * the edge of the grid.
+     */
+    public boolean holds(int x, int y) {
+        return x >= minX - border && x < maxX + border && y >= minY - border && y < maxY + border;
+    }
+
+    public boolean isInGrid(int x, int y) {
+        return x >= 0 && x < gridWidth && y >= 0 && y < gridHeight;
+    }
+
+
+    /**
+     * Conversions between whole grid indices and indices into the universe's entity array
+     */
+
+    public int getLocalWidth() {
+        return getWidth() + 2 * border;
+    }
+
+    public int getLocalHeight() {
+        return getHeight() + 2 * border;
+    }
+
+    public int toLocalX(int x) {
+        return x - minX + border;
+    }
+
+    public int toLocalY(int y) {
+        return y - minY + border;
+    }
+
+    public int toGridX(int localX) {
+        return localX + minX - border;
+    }
+
+    public int toGridY(int localY) {
+        return localY + minY - border;
+    }
+
+}
@@ -0,0 +1,87 @@
+package fluid.physics;
+
+/**
+ * Pressures given at evenly spaced densities and temperatures, such as from measurements of a real material,
+ * interpolated bilinearly between them. Densities and temperatures beyond the table are taken to be at its edge.
+ * <p>
+ * https://en.wikipedia.org/wiki/Bilinear_interpolation
+ * https://en.wikipedia.org/wiki/Steam_tables
+ */
+public final class TabulatedEquationOfState implements EquationOfState {
+
+    private final double minDensity;
+    private final double minTemperature;
+    // Table entries per unit of density and temperature
+    private final double densityScale;
+    private final double temperatureScale;
+    private final int densities;
+    private final int temperatures;
+    // By density, then temperature
+    private final double[] pressures;
+
+    /**
+     * @param pressures at each density, from the least to the most, then at each temperature, from the least to the
+     *                  most. At least two of each.
+     */
+    public TabulatedEquationOfState(double minDensity, double maxDensity, double minTemperature, double maxTemperature,
+                                    double[][] pressures) {
+        if (pressures.length < 2 || pressures[0].length < 2) {
+            throw new IllegalArgumentException("Tables need at least two densities and two temperatures");
+        }
+        if (maxDensity <= minDensity || maxTemperature <= minTemperature) {
+            throw new IllegalArgumentException("Tables must span some densities and temperatures, got densities "
+                    + minDensity + " to " + maxDensity + " and temperatures " + minTemperature + " to " + maxTemperature);
+        }
+        this.densities = pressures.length;
+        this.temperatures = pressures[0].length;
+        this.minDensity = minDensity;
+        this.minTemperature = minTemperature;
+        this.densityScale = (densities - 1) / (maxDensity - minDensity);
+        this.temperatureScale = (temperatures - 1) / (maxTemperature - minTemperature);
+        this.pressures = new double[densities * temperatures];
+        for (int i = 0; i < densities; i++) {
+            if (pressures[i].length != temperatures) {
+                throw new IllegalArgumentException("Every density needs a pressure at each of the " + temperatures + " temperatures");
+            }
+            System.arraycopy(pressures[i], 0, this.pressures, i * temperatures, temperatures);
+        }
+    }
+
+    /**
+     * A table of another equation of state, sampled at the given number of densities and temperatures, for one that's
+     * too slow to work out for every cell each step.
+     */
+    public static TabulatedEquationOfState sample(EquationOfState equation, double minDensity, double maxDensity, int densities,
+                                                  double minTemperature, double maxTemperature, int temperatures) {
+        double[][] pressures = new double[densities][temperatures];
+        for (int i = 0; i < densities; i++) {
+            double density = minDensity + i * (maxDensity - minDensity) / (densities - 1);
+            for (int j = 0; j < temperatures; j++) {
+                double temperature = minTemperature + j * (maxTemperature - minTemperature) / (temperatures - 1);
+                pressures[i][j] = equation.getPressure(density, temperature);
+            }
+        }
+        return new TabulatedEquationOfState(minDensity, maxDensity, minTemperature, maxTemperature, pressures);
+    }
+
+    @Override
+    public double getPressure(double density, double temperature) {
+        double densityPosition = clamp((density - minDensity) * densityScale, densities - 1);
+        double temperaturePosition = clamp((temperature - minTemperature) * temperatureScale, temperatures - 1);
+        // The lower corner of the square the point is in, kept off the last row and column so that it has one after
+        int i = Math.min((int) densityPosition, densities - 2);
+        int j = Math.min((int) temperaturePosition, temperatures - 2);
+        double u = densityPosition - i;
+        double v = temperaturePosition - j;
+
+        int corner = i * temperatures + j;
+        double lower = pressures[corner] + v * (pressures[corner + 1] - pressures[corner]);
+        double upper = pressures[corner + temperatures] + v * (pressures[corner + temperatures + 1] - pressures[corner + temperatures]);
+        return lower + u * (upper - lower);
+    }
+
+    private static double clamp(double position, int max) {
+        return position < 0 ? 0 : position > max ? max : position;
+    }
+
+}
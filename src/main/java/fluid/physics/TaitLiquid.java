@@ -0,0 +1,80 @@
+package fluid.physics;
+
+/**
+ * A liquid, which barely compresses: its pressure climbs steeply with density past its rest density, and doesn't
+ * depend on its temperature.
+ * <p>
+ * The power of the density is looked up in a table worked out when the liquid is made, interpolating linearly between
+ * its entries, rather than calling Math.pow for every cell each step. Densities beyond the table fall back to Math.pow.
+ * <p>
+ * https://en.wikipedia.org/wiki/Tait_equation
+ * https://en.wikipedia.org/wiki/Smoothed-particle_hydrodynamics#Fluid_dynamics
+ */
+public final class TaitLiquid implements EquationOfState {
+
+    // Entries of the table, which covers densities up to this many times the rest density
+    private static final int TABLE_SIZE = 4096;
+    private static final double MAX_RATIO = 4;
+
+    private final double restDensity;
+    private final double restPressure;
+    private final double bulkModulus;
+    private final double exponent;
+    // (density / restDensity)^exponent, at even steps of the ratio from 0 to MAX_RATIO
+    private final double[] powers = new double[TABLE_SIZE + 1];
+
+    /**
+     * @param restDensity  mass in a cell at which the liquid is at rest
+     * @param restPressure of the liquid at rest, such as that of the air over it
+     * @param bulkModulus  https://en.wikipedia.org/wiki/Bulk_modulus
+     * @param exponent     how steeply the pressure climbs, 7 for water
+     */
+    public TaitLiquid(double restDensity, double restPressure, double bulkModulus, double exponent) {
+        if (restDensity <= 0 || exponent < 1) {
+            throw new IllegalArgumentException("Rest density must be positive and the exponent at least 1, got "
+                    + restDensity + " and " + exponent);
+        }
+        this.restDensity = restDensity;
+        this.restPressure = restPressure;
+        this.bulkModulus = bulkModulus;
+        this.exponent = exponent;
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            powers[i] = Math.pow(i * MAX_RATIO / TABLE_SIZE, exponent);
+        }
+    }
+
+    public double getRestDensity() {
+        return restDensity;
+    }
+
+    public double getRestPressure() {
+        return restPressure;
+    }
+
+    public double getBulkModulus() {
+        return bulkModulus;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+
+    /**
+     * Below the rest pressure at densities below the rest density, as the liquid pulls together
+     */
+    @Override
+    public double getPressure(double density, double temperature) {
+        return restPressure + bulkModulus / exponent * (power(density / restDensity) - 1);
+    }
+
+    private double power(double ratio) {
+        double position = ratio * (TABLE_SIZE / MAX_RATIO);
+        if (position >= TABLE_SIZE) {
+            return Math.pow(ratio, exponent);
+        }
+        int index = (int) position;
+        double weight = position - index;
+        return powers[index] + weight * (powers[index + 1] - powers[index]);
+    }
+
+}
@@ -0,0 +1,318 @@
+package fluid.physics;
+
+import fluid.entity.FluidEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Massless particles carried along by the fluid, for seeing how it moves, such as smoke from a candle. They don't act
+ * on the fluid at all.
+ * <p>
+ * The particles are only their positions, kept in an array for each coordinate rather than as an object each, so that
+ * millions can be moved each step. Each step the velocity of every cell is copied into arrays of their own, once, then
+ * the particles are moved in batches split between threads, each by the velocity at its position, interpolated
+ * between the four cells around it. Every few steps the particles are sorted by the cell they're in, so that those
+ * near each other in the grid are near each other in memory, and the velocities they read are mostly in the cache.
+ * <p>
+ * Positions are x and y indices into the whole grid, with fractions between cells. A universe only moves the particles
+ * in the cells it owns, and drops those that leave them, so particles don't pass between subdomains.
+ * <p>
+ * https://en.wikipedia.org/wiki/Flow_tracer
+ * https://en.wikipedia.org/wiki/AoS_and_SoA
+ * https://en.wikipedia.org/wiki/Midpoint_method
+ * https://en.wikipedia.org/wiki/Counting_sort
+ */
+public final class TracerParticles {
+
+    /**
+     * Steps between sorting the particles by cell
+     */
+    public static final int SORT_INTERVAL = 32;
+
+    // Particles moved by each thread at a time
+    private static final int BATCH_SIZE = 4096;
+
+    private final CellLayout layout;
+    // Added to a position to get its indices into the universe's grid
+    private final int offsetX;
+    private final int offsetY;
+    // Edges of the owned cells, as positions. Particles past them are dropped.
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    // Velocity of each cell, in cells per step, in layout order
+    private final double[] velocityX;
+    private final double[] velocityY;
+
+    // Positions, of count particles. Dropped ones are NaN until the next compaction.
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private volatile int count;
+
+    // Where the particles are sorted to, swapped with the positions afterwards
+    private double[] sortedXs = new double[0];
+    private double[] sortedYs = new double[0];
+    // Particles in each cell, then where the cell's start in the sorted order
+    private final int[] cellCounts;
+    // Whether any particle of each batch was dropped in the last step
+    private boolean[] dropped = new boolean[0];
+
+    private final List<Emitter> emitters = new ArrayList<>();
+    // Seeded, so that runs of a scenario are the same
+    private final Random random = new Random(0);
+    private int steps = 0;
+
+    /**
+     * @param layout of the universe's grid, which holds the subdomain and its border
+     */
+    public TracerParticles(Subdomain subdomain, CellLayout layout) {
+        this.layout = layout;
+        offsetX = subdomain.toLocalX(0);
+        offsetY = subdomain.toLocalY(0);
+        minX = subdomain.getMinX() - .5;
+        minY = subdomain.getMinY() - .5;
+        maxX = subdomain.getMaxX() - .5;
+        maxY = subdomain.getMaxY() - .5;
+        velocityX = new double[layout.getSize()];
+        velocityY = new double[layout.getSize()];
+        cellCounts = new int[layout.getSize() + 1];
+    }
+
+    /**
+     * Particles at the start of the positions, which are NaN for those dropped since they were last compacted
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * X positions of the particles, the first getCount() of them. Don't hold on to it, as it's swapped for another
+     * whenever the particles are sorted.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Adds the given number of particles, spread at random over the given rectangle of grid positions, where it
+     * overlaps the owned cells. Max values are exclusive.
+     */
+    public synchronized void seed(double minX, double minY, double maxX, double maxY, int particles) {
+        double fromX = Math.max(minX, this.minX);
+        double fromY = Math.max(minY, this.minY);
+        double toX = Math.min(maxX, this.maxX);
+        double toY = Math.min(maxY, this.maxY);
+        if (toX <= fromX || toY <= fromY) return;
+
+        // Only the share of the particles that land in the owned cells
+        int seeded = (int) Math.round(particles * (toX - fromX) * (toY - fromY) / ((maxX - minX) * (maxY - minY)));
+        ensureCapacity(count + seeded);
+        for (int i = 0; i < seeded; i++) {
+            xs[count] = fromX + random.nextDouble() * (toX - fromX);
+            ys[count] = fromY + random.nextDouble() * (toY - fromY);
+            count++;
+        }
+    }
+
+    /**
+     * Releases particles from each of the source's cells in the steps it's active in, the given number per cell per
+     * step, each at a random place in the cell. Fractions of a particle are carried over to the next step.
+     *
+     * @param cells as x and y pairs of indices into the whole grid, all owned
+     */
+    public synchronized void addEmitter(InputSource source, int[][] cells, double perCell) {
+        if (perCell <= 0) {
+            throw new IllegalArgumentException("Particles released per cell must be positive, got " + perCell);
+        }
+        if (cells.length > 0) {
+            emitters.add(new Emitter(source, cells, perCell));
+        }
+    }
+
+    /**
+     * Releases the emitters' particles, then moves every particle by the velocity of the cells around it.
+     *
+     * @param entities of the universe's grid, in layout order
+     * @param step     counted from the universe's first, for the emitters
+     */
+    public synchronized void step(FluidEntity[] entities, int step, boolean parallel) {
+        for (Emitter emitter : emitters) {
+            emit(emitter, step);
+        }
+        if (count == 0) return;
+
+        IntStream cells = IntStream.range(0, layout.getSize());
+        (parallel ? cells.parallel() : cells).forEach(cell -> {
+            FluidEntity entity = entities[cell];
+            if (entity == null) return;
+            velocityX[cell] = entity.getDeltaX() / FluidEntity.SPACE;
+            velocityY[cell] = entity.getDeltaY() / FluidEntity.SPACE;
+        });
+
+        int batches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+        if (dropped.length < batches) {
+            dropped = new boolean[batches * 2];
+        }
+        IntStream range = IntStream.range(0, batches);
+        (parallel ? range.parallel() : range).forEach(this::advect);
+
+        boolean anyDropped = false;
+        for (int batch = 0; batch < batches; batch++) {
+            anyDropped |= dropped[batch];
+        }
+        if (++steps % SORT_INTERVAL == 0) {
+            sort();
+        } else if (anyDropped) {
+            compact();
+        }
+    }
+
+    /**
+     * Moves a batch of particles by the velocity halfway along their path, which follows curves much better than the
+     * velocity where they start.
+     */
+    private void advect(int batch) {
+        int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+        boolean anyDropped = false;
+        for (int i = batch * BATCH_SIZE; i < end; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (Double.isNaN(x)) continue;
+
+            double midX = x + .5 * sample(velocityX, x, y);
+            double midY = y + .5 * sample(velocityY, x, y);
+            x += sample(velocityX, midX, midY);
+            y += sample(velocityY, midX, midY);
+
+            if (x < minX || x >= maxX || y < minY || y >= maxY) {
+                x = Double.NaN;
+                y = Double.NaN;
+                anyDropped = true;
+            }
+            xs[i] = x;
+            ys[i] = y;
+        }
+        dropped[batch] = anyDropped;
+    }
+
+    /**
+     * The velocity at the given position, interpolated between the cells around it. Positions are kept within the
+     * grid, which holds a cell beyond each edge of the owned cells at least.
+     * <p>
+     * https://en.wikipedia.org/wiki/Bilinear_interpolation
+     */
+    private double sample(double[] velocities, double x, double y) {
+        double localX = Math.max(0, Math.min(layout.getWidth() - 1, x + offsetX));
+        double localY = Math.max(0, Math.min(layout.getHeight() - 1, y + offsetY));
+        int i = Math.min((int) localX, layout.getWidth() - 2);
+        int j = Math.min((int) localY, layout.getHeight() - 2);
+        double u = localX - i;
+        double v = localY - j;
+
+        double lower = velocities[layout.index(i, j)] + u * (velocities[layout.index(i + 1, j)] - velocities[layout.index(i, j)]);
+        double upper = velocities[layout.index(i, j + 1)] + u * (velocities[layout.index(i + 1, j + 1)] - velocities[layout.index(i, j + 1)]);
+        return lower + v * (upper - lower);
+    }
+
+    private void emit(Emitter emitter, int step) {
+        if (!emitter.source.isActive(step)) return;
+
+        emitter.owed += emitter.perCell;
+        int perCell = (int) emitter.owed;
+        emitter.owed -= perCell;
+        ensureCapacity(count + perCell * emitter.cells.length);
+        for (int[] cell : emitter.cells) {
+            for (int i = 0; i < perCell; i++) {
+                xs[count] = cell[0] - .5 + random.nextDouble();
+                ys[count] = cell[1] - .5 + random.nextDouble();
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Sorts the particles by the layout index of the cell they're in, dropping those that have left, by counting
+     * those in each cell and then placing each after those of the cells before it.
+     */
+    private void sort() {
+        if (sortedXs.length < xs.length) {
+            sortedXs = new double[xs.length];
+            sortedYs = new double[xs.length];
+        }
+        Arrays.fill(cellCounts, 0);
+        for (int i = 0; i < count; i++) {
+            if (!Double.isNaN(xs[i])) {
+                cellCounts[cellOf(i) + 1]++;
+            }
+        }
+        for (int cell = 1; cell < cellCounts.length; cell++) {
+            cellCounts[cell] += cellCounts[cell - 1];
+        }
+        int sorted = cellCounts[cellCounts.length - 1];
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(xs[i])) continue;
+            int position = cellCounts[cellOf(i)]++;
+            sortedXs[position] = xs[i];
+            sortedYs[position] = ys[i];
+        }
+
+        double[] swap = xs;
+        xs = sortedXs;
+        sortedXs = swap;
+        swap = ys;
+        ys = sortedYs;
+        sortedYs = swap;
+        count = sorted;
+    }
+
+    private int cellOf(int particle) {
+        return layout.index((int) Math.round(xs[particle]) + offsetX, (int) Math.round(ys[particle]) + offsetY);
+    }
+
+    /**
+     * Moves the particles down over those that have been dropped, keeping their order
+     */
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(xs[i])) continue;
+            xs[kept] = xs[i];
+            ys[kept] = ys[i];
+            kept++;
+        }
+        count = kept;
+    }
+
+    private void ensureCapacity(int particles) {
+        if (particles <= xs.length) return;
+        int capacity = Math.max(particles, Math.max(1024, xs.length * 2));
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+
+    private static class Emitter {
+
+        final InputSource source;
+        final int[][] cells;
+        final double perCell;
+        // Fraction of a particle per cell still to be released
+        double owed;
+
+        Emitter(InputSource source, int[][] cells, double perCell) {
+            this.source = source;
+            this.cells = cells;
+            this.perCell = perCell;
+        }
+    }
+
+}
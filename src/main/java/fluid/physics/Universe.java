@@ -2,6 +2,9 @@ package fluid.physics;
 
 import fluid.entity.FluidEntity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.IntStream;
 
 /**
@@ -16,91 +19,888 @@ public class Universe {
      */
     public static final int MAX_NEIGHBORS = 4;
 
+    /**
+     * How heat is conducted between cells
+     */
+    public enum Conduction {
+        /**
+         * Each pair of neighbors passes heat from the hotter to the colder by the temperature difference at the start
+         * of the step. Conductivities above a quarter overshoot.
+         */
+        EXPLICIT,
+
+        /**
+         * The heat equation, solved implicitly along the rows and then the columns, which is stable for any
+         * conductivity, see {@link ImplicitConduction}
+         */
+        ADI
+    }
+
+    /**
+     * How ink is moved
+     */
+    public enum InkAdvection {
+        /**
+         * Mixed along with the mass it's in, which smears it a little more each step
+         */
+        CARRIED,
+
+        /**
+         * Traced along the velocities by itself, and corrected back to second order, see {@link MacCormackInk}
+         */
+        MACCORMACK
+    }
+
+    /**
+     * Where the velocities of the fluid are kept
+     */
+    public enum VelocityGrid {
+        /**
+         * At the center of each cell, each pair of neighbors pushing the one with the lower pressure away
+         */
+        COLLOCATED,
+
+        /**
+         * On the faces between the cells, each pushed by the pressures either side of it, see
+         * {@link StaggeredVelocities}
+         */
+        STAGGERED
+    }
+
     private int step = 0;
 
-    private final FluidEntity[][] entities;
+    private final Grid grid;
+    private final CellLayout layout;
+    // The grid's, including the border, in layout order
+    private final FluidEntity[] entities;
+    private final byte[] cellTypes;
+    // Just the owned cells
+    private final FluidEntity[][] ownedEntities;
+
+    private final Subdomain subdomain;
+    private final GridGeometry geometry;
+    private final HaloExchange haloExchange;
+
+    /**
+     * Whether passes are split between the threads of the common pool. Not wanted when each subdomain of the grid
+     * already has a thread of its own.
+     */
+    private final boolean parallel;
+
+    // Owned cells, as x and y indices into the grid. Max values are exclusive. Everything outside of this is border.
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    /**
+     * Indices into entities of the owned cells, in layout order, for the passes that work on each cell alone.
+     */
+    private final int[] ownedCells;
+    // And the rest, which the owned cells read across the edge of the subdomain
+    private final int[] borderCells;
+
+    /*
+     * The cell each border cell is filled from along each axis, as x and y indices into the grid. Identity except for
+     * ghost cells, which both copy their source and hand on whatever is moved into them to it, so that stencils can
+     * reach into them without checking where they are.
+     */
+    private final int[] sourceX;
+    private final int[] sourceY;
+    // Whether a ghost cell's velocity along each axis is the reverse of its source's
+    private final boolean[] reflectX;
+    private final boolean[] reflectY;
+    // Indices into entities
+    private final int[] ghostCells;
+
+    /*
+     * Boundary cells, as indices into entities, grouped by the kernels applying their boundary conditions. Matching
+     * cells are split by whether any of the fluid they match is in the border, as those have to wait for it. The edge
+     * ones and the reflecting cells include those in the border beside owned cells.
+     */
+    private final int[] interiorMatchingCells;
+    private final int[] edgeMatchingCells;
+    private final int[] reflectingCells;
+    // Owned only
+    private final int[] reservoirCells;
+    private final int[] boundaryCells;
+
+    /**
+     * Whether some owned matching cell matches fluid in the border, and so none of the interactions can be worked on
+     * while waiting for the halo.
+     */
+    private final boolean interactionsWaitForHalo;
+
+    private final InputRegistry inputs = new InputRegistry();
+
+    // The surface of a liquid, pulled on by its tension, if there is one
+    private NarrowBandLevelSet surface;
 
+    private final TracerParticles tracers;
+
+    // How strongly small vortices are spun back up each step, none if 0
+    private volatile double vorticityConfinement;
+    // Curl of the velocity at each held cell, in layout order, only while there's confinement
+    private double[] curl;
+
+    // Spreads velocity between cells by their viscosity, if it's on
+    private ImplicitViscosity viscosity;
+
+    private volatile Conduction conduction = Conduction.EXPLICIT;
+    // Only for ADI conduction
+    private ImplicitConduction implicitConduction;
+
+    // Moves the ink by itself, if it isn't carried by the mass
+    private volatile MacCormackInk macCormackInk;
+
+    // The velocities on the faces between cells, if they're kept there
+    private StaggeredVelocities staggeredVelocities;
+
+    // What's drawn of the owned cells after each step, if it's being published
+    private volatile SnapshotBuffer snapshots;
+
+    /**
+     * A universe of only fluid cells, with clamped edges
+     */
     public Universe(FluidEntity[][] entities) {
-        this.entities = entities;
+        this(Grid.withBorder(entities, Subdomain.DEFAULT_BORDER));
+    }
+
+    /**
+     * A universe of the whole grid, with the grid holding a border of ghost cells of the default width around it.
+     */
+    public Universe(Grid grid) {
+        this(grid, Subdomain.whole(grid.getWidth() - 2 * Subdomain.DEFAULT_BORDER, grid.getHeight() - 2 * Subdomain.DEFAULT_BORDER),
+                HaloExchange.NONE);
+    }
+
+    /**
+     * A universe holding only part of the simulation grid, with the grid holding both the subdomain's cells and its
+     * border.
+     */
+    public Universe(Grid grid, Subdomain subdomain, HaloExchange haloExchange) {
+        this(grid, subdomain, haloExchange, true);
+    }
+
+    public Universe(Grid grid, Subdomain subdomain, HaloExchange haloExchange, boolean parallel) {
+        if (grid.getWidth() != subdomain.getLocalWidth() || grid.getHeight() != subdomain.getLocalHeight()) {
+            throw new IllegalArgumentException("Grid does not match the size of the subdomain and its border");
+        }
+        this.grid = grid;
+        this.layout = grid.getLayout();
+        this.entities = grid.getEntities();
+        this.cellTypes = grid.getCellTypes();
+        this.subdomain = subdomain;
+        this.geometry = new GridGeometry(subdomain.getGridWidth(), subdomain.getGridHeight());
+        this.haloExchange = haloExchange;
+        this.parallel = parallel;
+
+        minX = subdomain.getBorder();
+        minY = subdomain.getBorder();
+        maxX = minX + subdomain.getWidth();
+        maxY = minY + subdomain.getHeight();
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        ownedEntities = new FluidEntity[subdomain.getWidth()][subdomain.getHeight()];
+        List<Integer> ownedIndices = new ArrayList<>();
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                ownedEntities[x - minX][y - minY] = getEntity(x, y);
+                ownedIndices.add(layout.index(x, y));
+            }
+        }
+        ownedCells = toArray(ownedIndices);
+        Arrays.sort(ownedCells);
+        List<Integer> borderIndices = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (!isOwned(x, y)) {
+                    borderIndices.add(layout.index(x, y));
+                }
+            }
+        }
+        borderCells = toArray(borderIndices);
+
+        sourceX = new int[width];
+        reflectX = new boolean[width];
+        for (int x = 0; x < width; x++) {
+            int gridX = subdomain.toGridX(x);
+            boolean ghost = gridX < 0 || gridX >= subdomain.getGridWidth();
+            sourceX[x] = ghost ? subdomain.toLocalX(grid.getXBoundary().getSource(gridX, subdomain.getGridWidth())) : x;
+            reflectX[x] = ghost && grid.getXBoundary() == GhostBoundary.REFLECTIVE;
+        }
+        sourceY = new int[height];
+        reflectY = new boolean[height];
+        for (int y = 0; y < height; y++) {
+            int gridY = subdomain.toGridY(y);
+            boolean ghost = gridY < 0 || gridY >= subdomain.getGridHeight();
+            sourceY[y] = ghost ? subdomain.toLocalY(grid.getYBoundary().getSource(gridY, subdomain.getGridHeight())) : y;
+            reflectY[y] = ghost && grid.getYBoundary() == GhostBoundary.REFLECTIVE;
+        }
+
+        // Ghost cells are whatever type their source is
+        List<Integer> ghosts = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (sourceX[x] == x && sourceY[y] == y) continue;
+                if (sourceX[x] < 0 || sourceX[x] >= width || sourceY[y] < 0 || sourceY[y] >= height) {
+                    throw new IllegalArgumentException("Ghost cell " + subdomain.toGridX(x) + ", " + subdomain.toGridY(y)
+                            + " is filled from a cell the subdomain does not hold. Periodic edges need the subdomain to"
+                            + " span the grid between them.");
+                }
+                grid.setCellType(x, y, grid.getCellType(sourceX[x], sourceY[y]));
+                ghosts.add(layout.index(x, y));
+            }
+        }
+        ghostCells = toArray(ghosts);
+
+        List<Integer> interiorMatching = new ArrayList<>();
+        List<Integer> edgeMatching = new ArrayList<>();
+        List<Integer> reflecting = new ArrayList<>();
+        boolean ownedEdgeMatching = false;
+        List<Integer> reservoir = new ArrayList<>();
+        List<Integer> boundary = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                byte cellType = grid.getCellType(x, y);
+                if (cellType == CellType.FLUID) continue;
+
+                int cell = layout.index(x, y);
+                boolean owned = isOwned(x, y);
+                if (owned) {
+                    boundary.add(cell);
+                    if (CellType.isReservoir(cellType)) {
+                        reservoir.add(cell);
+                    }
+                }
+
+                // Border boundary cells only matter to the owned cells beside them
+                if (!owned && !(isOwned(x - 1, y) || isOwned(x + 1, y) || isOwned(x, y - 1) || isOwned(x, y + 1))) {
+                    continue;
+                }
+                if (cellType == CellType.MATCHING || cellType == CellType.SOLID) {
+                    boolean borderFluid = isBorderFluid(x - 1, y) || isBorderFluid(x + 1, y) || isBorderFluid(x, y - 1) || isBorderFluid(x, y + 1);
+                    if (owned && !borderFluid) {
+                        interiorMatching.add(cell);
+                    } else {
+                        edgeMatching.add(cell);
+                        ownedEdgeMatching |= owned;
+                    }
+                }
+                if (cellType == CellType.REFLECTIVE || cellType == CellType.SOLID) {
+                    reflecting.add(cell);
+                }
+            }
+        }
+        interiorMatchingCells = toArray(interiorMatching);
+        edgeMatchingCells = toArray(edgeMatching);
+        reflectingCells = toArray(reflecting);
+        interactionsWaitForHalo = ownedEdgeMatching;
+        reservoirCells = toArray(reservoir);
+        boundaryCells = toArray(boundary);
+
+        tracers = new TracerParticles(subdomain, layout);
+    }
+
+    private static int[] toArray(List<Integer> cells) {
+        return cells.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Whether the given indices into the grid are an owned cell. Cells beyond the edge of the grid are not.
+     */
+    private boolean isOwned(int x, int y) {
+        return x >= minX && x < maxX && y >= minY && y < maxY;
+    }
+
+    private boolean isBorderFluid(int x, int y) {
+        return isFluid(x, y) && !isOwned(x, y);
+    }
+
+    private FluidEntity getEntity(int x, int y) {
+        return entities[layout.index(x, y)];
     }
 
     /**
      * Run round of physics
      */
     public synchronized void updateUniverseState() {
-        ExternalInput.applyInput(entities, step);
+        inputs.apply(entities, step, parallel);
         incrementFluid();
         step++;
+        if (snapshots != null) {
+            snapshots.publish(ownedEntities, tracers, step, parallel);
+        }
     }
 
+    /**
+     * The owned cells, indexed from the subdomain's lowest corner.
+     */
     public FluidEntity[][] getEntities() {
-        return entities;
+        return ownedEntities;
+    }
+
+    /**
+     * All the held cells, including the border.
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public Subdomain getSubdomain() {
+        return subdomain;
+    }
+
+    /**
+     * The passive scalars carried by the mass, for picking one out by name
+     */
+    public ScalarFields getScalarFields() {
+        return grid.getScalarFields();
+    }
+
+    /**
+     * Where the cells of the whole grid are, for those of getEntities() offset by the subdomain's corner
+     */
+    public GridGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Adds the source, to act from the next step on. Adding it again moves it after the others.
+     */
+    public void addInput(InputSource source) {
+        int[][] cells = source.getCells(subdomain.getGridWidth(), subdomain.getGridHeight());
+        inputs.add(source, Arrays.stream(cells)
+                .filter(cell -> subdomain.owns(cell[0], cell[1]))
+                .mapToInt(cell -> layout.index(subdomain.toLocalX(cell[0]), subdomain.toLocalY(cell[1])))
+                .distinct()
+                .toArray());
+    }
+
+    public void removeInput(InputSource source) {
+        inputs.remove(source);
+    }
+
+    /**
+     * In the order they act on a cell
+     */
+    public List<InputSource> getInputs() {
+        return inputs.getSources();
+    }
+
+    /**
+     * Tracks the surface of a liquid and applies its tension from the next step on. Only for a universe of the whole
+     * grid, as the surface isn't exchanged between subdomains.
+     */
+    public void setSurface(NarrowBandLevelSet surface) {
+        if (!subdomain.isWhole()) {
+            throw new IllegalStateException("Surfaces can only be tracked across the whole grid");
+        }
+        this.surface = surface;
+    }
+
+    public NarrowBandLevelSet getSurface() {
+        return surface;
+    }
+
+    /**
+     * Sets how strongly vortices are spun back up each step, which the numerical diffusion of advection otherwise
+     * smears away, most of all on coarse grids. 0, the default, turns it off.
+     */
+    public synchronized void setVorticityConfinement(double strength) {
+        if (strength < 0) {
+            throw new IllegalArgumentException("Vorticity confinement can't be negative, got " + strength);
+        }
+        if (strength > 0 && curl == null) {
+            curl = new double[layout.getSize()];
+        }
+        vorticityConfinement = strength;
+    }
+
+    public double getVorticityConfinement() {
+        return vorticityConfinement;
+    }
+
+    /**
+     * Turns on viscosity, solved implicitly with the given number of sweeps each step, so that it's stable however
+     * viscous the fluid is. More sweeps spread velocity further at high viscosities. 0, the default, turns it off.
+     */
+    public synchronized void setViscositySweeps(int sweeps) {
+        if (sweeps < 0) {
+            throw new IllegalArgumentException("Sweeps can't be negative, got " + sweeps);
+        }
+        if (sweeps == 0) {
+            viscosity = null;
+            return;
+        }
+        int[] fluidCells = Arrays.stream(ownedCells).filter(cell -> cellTypes[cell] == CellType.FLUID).toArray();
+        int[] ghostSources = new int[ghostCells.length];
+        boolean[] ghostReflectX = new boolean[ghostCells.length];
+        boolean[] ghostReflectY = new boolean[ghostCells.length];
+        for (int i = 0; i < ghostCells.length; i++) {
+            int x = layout.getX(ghostCells[i]);
+            int y = layout.getY(ghostCells[i]);
+            ghostSources[i] = layout.index(sourceX[x], sourceY[y]);
+            ghostReflectX[i] = reflectX[x];
+            ghostReflectY[i] = reflectY[y];
+        }
+        viscosity = new ImplicitViscosity(layout, entities, fluidCells, ghostCells, ghostSources, ghostReflectX, ghostReflectY, sweeps);
+    }
+
+    public int getViscositySweeps() {
+        return viscosity == null ? 0 : viscosity.getIterations();
+    }
+
+    public synchronized void setConduction(Conduction conduction) {
+        if (conduction == Conduction.ADI && implicitConduction == null) {
+            implicitConduction = new ImplicitConduction(layout, entities, cellTypes, minX, minY, maxX, maxY);
+        }
+        this.conduction = conduction;
+    }
+
+    public Conduction getConduction() {
+        return conduction;
+    }
+
+    public synchronized void setInkAdvection(InkAdvection inkAdvection) {
+        macCormackInk = inkAdvection == InkAdvection.MACCORMACK ? new MacCormackInk(layout, entities,
+                Arrays.stream(ownedCells).filter(cell -> cellTypes[cell] == CellType.FLUID).toArray()) : null;
+    }
+
+    public InkAdvection getInkAdvection() {
+        return macCormackInk == null ? InkAdvection.CARRIED : InkAdvection.MACCORMACK;
+    }
+
+    /**
+     * Switching to staggered velocities starts the faces from the velocities of the cells either side of them. The
+     * faces aren't exchanged with neighboring subdomains, so they can only be used across the whole grid.
+     */
+    public synchronized void setVelocityGrid(VelocityGrid velocityGrid) {
+        if (velocityGrid == VelocityGrid.STAGGERED && !subdomain.isWhole()) {
+            throw new IllegalStateException("Staggered velocities can only be used across the whole grid");
+        }
+        staggeredVelocities = velocityGrid == VelocityGrid.STAGGERED
+                ? new StaggeredVelocities(layout, entities, cellTypes, minX, minY, maxX, maxY) : null;
+    }
+
+    public VelocityGrid getVelocityGrid() {
+        return staggeredVelocities == null ? VelocityGrid.COLLOCATED : VelocityGrid.STAGGERED;
+    }
+
+    /**
+     * Turns on copying what's drawn of the owned cells and tracers into a snapshot at the end of each step, starting
+     * with one of them as they are now, see {@link #getSnapshot()}
+     */
+    public synchronized void setPublishingSnapshots(boolean publishing) {
+        if (!publishing) {
+            snapshots = null;
+        } else if (snapshots == null) {
+            SnapshotBuffer snapshots = new SnapshotBuffer(ownedEntities.length, ownedEntities.length == 0 ? 0 : ownedEntities[0].length,
+                    grid.getScalarFields().getCount());
+            snapshots.publish(ownedEntities, tracers, step, parallel);
+            this.snapshots = snapshots;
+        }
+    }
+
+    /**
+     * The owned cells as they were at the end of the last step, or null if snapshots aren't being published. It can
+     * be read while the universe steps, without locking, and doesn't change until the next call. Only to be called
+     * from one thread, such as the one drawing.
+     */
+    public DisplaySnapshot getSnapshot() {
+        SnapshotBuffer snapshots = this.snapshots;
+        return snapshots == null ? null : snapshots.latest();
+    }
+
+    /**
+     * The particles carried along by the fluid of the owned cells, none until they're seeded or released
+     */
+    public TracerParticles getTracers() {
+        return tracers;
+    }
+
+    /**
+     * Releases tracer particles from the owned cells of the source, the given number per cell each step it's active,
+     * from the next step on. The source doesn't have to be one of the inputs.
+     */
+    public void addTracerSource(InputSource source, double perCell) {
+        int[][] cells = source.getCells(subdomain.getGridWidth(), subdomain.getGridHeight());
+        tracers.addEmitter(source, Arrays.stream(cells)
+                .filter(cell -> subdomain.owns(cell[0], cell[1]))
+                .toArray(int[][]::new), perCell);
     }
 
     public static final double GRAVITATIONAL_CONSTANT = .0001;
 
     private void incrementFluid() {
+        // The border is only needed for interactions across the edge of the subdomain, so the interior is worked on
+        // while waiting for the halo. Boundary cells matching fluid in the border have to wait, so reflection, which
+        // only has to come before the forces are applied, waits with them.
+        // Phase changes come first, so that the halo is sent what the cells are for the rest of the step.
+        updateStates();
+        haloExchange.beginStateExchange(this);
+        if (staggeredVelocities != null) {
+            staggeredVelocities.begin(parallel);
+        }
+
         // force applications
         applySoloEffects();
-        applyNeighborInteractions();
+        matchNeighbors(interiorMatchingCells);
+        if (interactionsWaitForHalo) {
+            haloExchange.completeStateExchange(this);
+            fillGhosts();
+            updatePressures(borderCells);
+            matchNeighbors(edgeMatchingCells);
+            applyNeighborInteractions();
+        } else {
+            applyNeighborInteractions();
+            haloExchange.completeStateExchange(this);
+            fillGhosts();
+            updatePressures(borderCells);
+            matchNeighbors(edgeMatchingCells);
+        }
+        reflectNeighbors(reflectingCells);
+        applyBorderNeighborInteractions();
+        if (vorticityConfinement > 0) {
+            confineVorticity();
+        }
+        if (surface != null) {
+            surface.applySurfaceTension(grid, parallel);
+        }
 
-        IntStream.range(0, entities.length).forEach(x -> IntStream.range(0, entities[x].length).forEach(y -> entities[x][y].changeHeat()));
-        IntStream.range(0, entities.length).forEach(x -> IntStream.range(0, entities[x].length).forEach(y -> entities[x][y].changeForce()));
+        holdBoundaries();
+        for (int cell : ownedCells) {
+            entities[cell].changeHeat();
+        }
+        if (conduction == Conduction.ADI) {
+            implicitConduction.apply(parallel);
+        }
+        for (int cell : ownedCells) {
+            entities[cell].changeForce();
+        }
+        if (viscosity != null) {
+            viscosity.apply(parallel);
+        }
+        if (staggeredVelocities != null) {
+            staggeredVelocities.apply(parallel);
+        }
 
+        MacCormackInk inkAdvection = macCormackInk;
+        if (inkAdvection != null) {
+            inkAdvection.advect(parallel);
+        }
         advection();
+        if (surface != null) {
+            surface.advect(grid, parallel);
+            if ((step + 1) % NarrowBandLevelSet.REINITIALIZE_INTERVAL == 0) {
+                surface.reinitialize(parallel);
+            }
+        }
+        tracers.step(entities, step, parallel);
+        haloExchange.exchangeTransferProportions(this);
 
         // transfer application
-        IntStream.range(0, entities.length).forEach(x -> IntStream.range(0, entities[x].length).forEach(y -> entities[x][y].convertMassTransferToAbsoluteChange()));
-        IntStream.range(0, entities.length).parallel().forEach(x -> IntStream.range(0, entities[x].length).forEach(y -> entities[x][y].changeMass()));
+        for (int cell : reservoirCells) {
+            entities[cell].convertMassTransferFromReservoir();
+        }
+        for (int cell : ownedCells) {
+            entities[cell].convertMassTransferToAbsoluteChange();
+        }
+        // Before the exchange, as a ghost's source may be in the halo
+        drainGhosts();
+        haloExchange.exchangeMassChanges(this);
+        holdBoundaries();
+        owned().forEach(cell -> entities[cell].changeMass());
+        if (inkAdvection != null) {
+            inkAdvection.setInk(parallel);
+        }
+    }
+
+    /**
+     * Turns the materials of the owned fluid cells into each other by their phase transitions, then works out the
+     * pressure of every owned cell, once for all of its neighbors.
+     */
+    private void updateStates() {
+        owned().forEach(cell -> {
+            FluidEntity entity = entities[cell];
+            if (cellTypes[cell] == CellType.FLUID) {
+                entity.changePhase();
+            }
+            entity.updatePressure();
+        });
+    }
+
+    private void updatePressures(int[] cells) {
+        for (int cell : cells) {
+            entities[cell].updatePressure();
+        }
     }
 
     void applySoloEffects() {
-        IntStream.range(0, entities.length).parallel().forEach(i -> IntStream.range(0, entities[i].length).forEach(j -> entities[i][j].applySoloEffects()));
+        owned().forEach(cell -> entities[cell].applySoloEffects());
     }
 
+    /**
+     * Interactions between neighboring owned entities
+     */
     void applyNeighborInteractions() {
 
         // Left entity
-        IntStream.range(1, entities.length).parallel().forEach(i -> IntStream.range(0, entities[i].length).forEach(j -> {
-            FluidEntity entity = entities[i][j];
-            entity.applyNeighborInteractions(entities[i - 1][j]);
+        range(minX + 1, maxX).forEach(i -> IntStream.range(minY, maxY).forEach(j -> {
+            FluidEntity entity = getEntity(i, j);
+            applyNeighborInteractions(entity, getEntity(i - 1, j), -1, 0);
         }));
 
         // Right entity
-        IntStream.range(0, entities.length - 1).parallel().forEach(i -> IntStream.range(0, entities[i].length).forEach(j -> {
-            FluidEntity entity = entities[i][j];
-            entity.applyNeighborInteractions(entities[i + 1][j]);
+        range(minX, maxX - 1).forEach(i -> IntStream.range(minY, maxY).forEach(j -> {
+            FluidEntity entity = getEntity(i, j);
+            applyNeighborInteractions(entity, getEntity(i + 1, j), 1, 0);
         }));
 
         // Lower entity
-        IntStream.range(0, entities.length).parallel().forEach(i -> IntStream.range(1, entities[i].length).forEach(j -> {
-            FluidEntity entity = entities[i][j];
-            entity.applyNeighborInteractions(entities[i][j - 1]);
+        range(minX, maxX).forEach(i -> IntStream.range(minY + 1, maxY).forEach(j -> {
+            FluidEntity entity = getEntity(i, j);
+            applyNeighborInteractions(entity, getEntity(i, j - 1), 0, -1);
         }));
 
         // Upper entity
-        IntStream.range(0, entities.length).parallel().forEach(i -> IntStream.range(0, entities[i].length - 1).forEach(j -> {
-            FluidEntity entity = entities[i][j];
-            entity.applyNeighborInteractions(entities[i][j + 1]);
+        range(minX, maxX).forEach(i -> IntStream.range(minY, maxY - 1).forEach(j -> {
+            FluidEntity entity = getEntity(i, j);
+            applyNeighborInteractions(entity, getEntity(i, j + 1), 0, 1);
         }));
     }
 
+    /**
+     * Leaves conduction out of the entities' interactions when it's solved for every cell at once, and pressure when
+     * it pushes the faces between them
+     */
+    private void applyNeighborInteractions(FluidEntity entity, FluidEntity other, int offsetX, int offsetY) {
+        entity.applyNeighborInteractions(other, offsetX, offsetY, conduction == Conduction.EXPLICIT, staggeredVelocities == null);
+    }
+
+    /**
+     * Interactions between the owned entities on the edge of the subdomain and the border entities beyond them.
+     * <p>
+     * Both directions of each pair are applied here, so that the owned entity receives everything it would in an
+     * undivided universe. Whatever is recorded on the border entity is discarded, as the owner of a halo cell applies
+     * the same pair, and a ghost cell's source applies the pair it stands in for.
+     */
+    private void applyBorderNeighborInteractions() {
+        // Left
+        range(minY, maxY).forEach(j -> applyPairInteractions(getEntity(minX, j), getEntity(minX - 1, j), -1, 0));
+
+        // Right
+        range(minY, maxY).forEach(j -> applyPairInteractions(getEntity(maxX - 1, j), getEntity(maxX, j), 1, 0));
+
+        // Lower
+        range(minX, maxX).forEach(i -> applyPairInteractions(getEntity(i, minY), getEntity(i, minY - 1), 0, -1));
+
+        // Upper
+        range(minX, maxX).forEach(i -> applyPairInteractions(getEntity(i, maxY - 1), getEntity(i, maxY), 0, 1));
+    }
+
+    private void applyPairInteractions(FluidEntity owned, FluidEntity border, int offsetX, int offsetY) {
+        applyNeighborInteractions(owned, border, offsetX, offsetY);
+        applyNeighborInteractions(border, owned, -offsetX, -offsetY);
+    }
+
+    /**
+     * Works out the curl of the velocity at every held cell, then pushes each owned fluid cell at right angles to the
+     * slope of the curl's size, in the direction of its spin, which tightens the vortices around the peaks of the curl.
+     * Stencils past the edge of the grid take the cell at the edge, which only happens with a border of a single cell.
+     * <p>
+     * http://physbam.stanford.edu/~fedkiw/papers/stanford2001-01.pdf
+     * https://en.wikipedia.org/wiki/Vorticity_confinement
+     */
+    private void confineVorticity() {
+        double[] curl = this.curl;
+        double strength = vorticityConfinement;
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        range(0, width).forEach(x -> {
+            int left = Math.max(0, x - 1);
+            int right = Math.min(width - 1, x + 1);
+            for (int y = 0; y < height; y++) {
+                int below = Math.max(0, y - 1);
+                int above = Math.min(height - 1, y + 1);
+                curl[layout.index(x, y)] = (getEntity(right, y).getDeltaY() - getEntity(left, y).getDeltaY()
+                        - getEntity(x, above).getDeltaX() + getEntity(x, below).getDeltaX()) / 2;
+            }
+        });
+
+        owned().forEach(cell -> {
+            if (cellTypes[cell] != CellType.FLUID) return;
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+            double slopeX = (Math.abs(curl[layout.index(x + 1, y)]) - Math.abs(curl[layout.index(x - 1, y)])) / 2;
+            double slopeY = (Math.abs(curl[layout.index(x, y + 1)]) - Math.abs(curl[layout.index(x, y - 1)])) / 2;
+            double slope = Math.sqrt(slopeX * slopeX + slopeY * slopeY);
+            if (slope < FluidEntity.FUZZ) return;
+
+            FluidEntity entity = entities[cell];
+            double force = strength * entity.getMass() * curl[cell] / slope;
+            entity.recordForceChange(force * slopeY, -force * slopeX);
+        });
+    }
+
+    /*
+     * Ghost kernels
+     */
+
+    /**
+     * Copies each ghost cell's source into it, reversing the velocity of reflected ones, and forgets anything recorded
+     * on it since the last step.
+     */
+    private void fillGhosts() {
+        for (int cell : ghostCells) {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+            FluidEntity ghost = entities[cell];
+            FluidEntity source = getEntity(sourceX[x], sourceY[y]);
+
+            ghost.clearPendingChanges();
+            ghost.setMass(source.getMass());
+            ghost.setTemperature(source.getTemperature());
+            ghost.setDeltaX(reflectX[x] ? -source.getDeltaX() : source.getDeltaX());
+            ghost.setDeltaY(reflectY[y] ? -source.getDeltaY() : source.getDeltaY());
+            ghost.setInk(source.getInkRed(), source.getInkGreen(), source.getInkBlue(), source.getInkAlpha());
+            ghost.setScalars(source);
+        }
+    }
+
+    /**
+     * Hands the mass moved into each ghost cell on to its source, turning back what was moving through a reflective
+     * edge.
+     */
+    private void drainGhosts() {
+        for (int cell : ghostCells) {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+            FluidEntity source = getEntity(sourceX[x], sourceY[y]);
+            boolean reflect = reflectX[x] || reflectY[y];
+
+            entities[cell].drainMassChanges(record -> source.recordMassChange(!reflect ? record : new FluidEntity.MassChangeRecord(
+                    record.getMassChange(), record.getMassTemperature(),
+                    reflectX[x] ? -record.getVelocityX() : record.getVelocityX(),
+                    reflectY[y] ? -record.getVelocityY() : record.getVelocityY(),
+                    record.getInkRed(), record.getInkGreen(), record.getInkBlue(), record.getInkAlpha(), record.getScalars())));
+        }
+    }
+
+    /*
+     * Boundary kernels
+     *
+     * Every pass over the grid treats boundary cells the same as fluid, these run before or after them over just the
+     * boundary cells, to turn what those passes did to them into their boundary conditions.
+     */
+
+    /**
+     * Matching and solid cells take on the mean mass and temperature of the fluid beside them, so that the
+     * interactions with it that follow come to nothing.
+     */
+    private void matchNeighbors(int[] cells) {
+        for (int cell : cells) {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+
+            int fluidNeighbors = 0;
+            double mass = 0;
+            double temperature = 0;
+            for (int i = 0; i < MAX_NEIGHBORS; i++) {
+                int neighborX = x + NEIGHBOR_X[i];
+                int neighborY = y + NEIGHBOR_Y[i];
+                if (isFluid(neighborX, neighborY)) {
+                    FluidEntity neighbor = getEntity(neighborX, neighborY);
+                    mass += neighbor.getMass();
+                    temperature += neighbor.getTemperature();
+                    fluidNeighbors++;
+                }
+            }
+
+            if (fluidNeighbors > 0) {
+                FluidEntity entity = entities[cell];
+                entity.setMass(mass / fluidNeighbors);
+                entity.setTemperature(temperature / fluidNeighbors);
+                entity.updatePressure();
+            }
+        }
+    }
+
+    /**
+     * Reflective and solid cells turn back the fluid beside them that is moving towards them.
+     */
+    private void reflectNeighbors(int[] cells) {
+        for (int cell : cells) {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+
+            if (isFluid(x - 1, y) && getEntity(x - 1, y).getDeltaX() > 0) {
+                getEntity(x - 1, y).setDeltaX(-getEntity(x - 1, y).getDeltaX());
+            }
+            if (isFluid(x + 1, y) && getEntity(x + 1, y).getDeltaX() < 0) {
+                getEntity(x + 1, y).setDeltaX(-getEntity(x + 1, y).getDeltaX());
+            }
+            if (isFluid(x, y - 1) && getEntity(x, y - 1).getDeltaY() > 0) {
+                getEntity(x, y - 1).setDeltaY(-getEntity(x, y - 1).getDeltaY());
+            }
+            if (isFluid(x, y + 1) && getEntity(x, y + 1).getDeltaY() < 0) {
+                getEntity(x, y + 1).setDeltaY(-getEntity(x, y + 1).getDeltaY());
+            }
+        }
+    }
+
+    /**
+     * Discards whatever has been recorded on the owned boundary cells, which keep their state apart from what their
+     * boundary conditions set.
+     */
+    private void holdBoundaries() {
+        for (int cell : boundaryCells) {
+            entities[cell].clearPendingChanges();
+        }
+    }
+
+    private static final int[] NEIGHBOR_X = {-1, 1, 0, 0};
+    private static final int[] NEIGHBOR_Y = {0, 0, -1, 1};
+
+    private boolean isFluid(int x, int y) {
+        return x >= 0 && x < grid.getWidth() && y >= 0 && y < grid.getHeight() && cellTypes[layout.index(x, y)] == CellType.FLUID;
+    }
+
+    private IntStream range(int startInclusive, int endExclusive) {
+        IntStream range = IntStream.range(startInclusive, endExclusive);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * Indices into entities of the owned cells, in layout order
+     */
+    private IntStream owned() {
+        IntStream owned = Arrays.stream(ownedCells);
+        return parallel ? owned.parallel() : owned;
+    }
+
     /**
      * Advection moves the quantities from point to its connections/neighbors. Quantities include velocity/mass/heat/etc.
      * The amount moved from one point to another is based on the given point's velocity.
+     * <p>
+     * Targets beyond the held cells, which only a cell near the edge moving faster than the border is wide reaches, are
+     * limited to the outermost held cells. Everywhere else a cell moves as far as its velocity takes it.
      */
     private void advection() {
-        IntStream.range(0, entities.length).parallel().forEach(i -> IntStream.range(0, entities[i].length).forEach(j -> {
-            forwardAdvectionCellTransfer(i, j);
-            reverseAdvectionCellTransfer(i, j);
-        }));
+        owned().forEach(cell -> {
+            int x = layout.getX(cell);
+            int y = layout.getY(cell);
+            forwardAdvectionCellTransfer(x, y);
+            reverseAdvectionCellTransfer(x, y);
+        });
     }
 
     /**
      * https://en.wikipedia.org/wiki/Bilinear_interpolation
      */
     private void forwardAdvectionCellTransfer(int xIndex, int yIndex) {
-        FluidEntity entity = entities[xIndex][yIndex];
+        FluidEntity entity = getEntity(xIndex, yIndex);
         double deltaX = entity.getDeltaX();
         double deltaY = entity.getDeltaY();
 
@@ -148,7 +948,7 @@ public class Universe {
      * https://en.wikipedia.org/wiki/Bilinear_interpolation
      */
     private void reverseAdvectionCellTransfer(int xIndex, int yIndex) {
-        FluidEntity entity = entities[xIndex][yIndex];
+        FluidEntity entity = getEntity(xIndex, yIndex);
         double negativeDeltaX = -entity.getDeltaX();
         double negativeDeltaY = -entity.getDeltaY();
 
@@ -195,35 +995,44 @@ public class Universe {
             System.out.println("Math problem!");
         }
 
-        transferFrom(entity, t1x, t1y, bottomLeftRatio);
-        transferFrom(entity, t2x, t1y, bottomRightRatio);
-        transferFrom(entity, t1x, t2y, topLeftRatio);
-        transferFrom(entity, t2x, t2y, topRightRatio);
+        transferFrom(entity, xIndex, yIndex, t1x, t1y, bottomLeftRatio);
+        transferFrom(entity, xIndex, yIndex, t2x, t1y, bottomRightRatio);
+        transferFrom(entity, xIndex, yIndex, t1x, t2y, topLeftRatio);
+        transferFrom(entity, xIndex, yIndex, t2x, t2y, topRightRatio);
     }
 
+    /*
+     * Nothing moves into or out of solid cells, the share of a transfer that would have is left where it is.
+     */
+
     private void transferTo(FluidEntity originEntity, int targetXIndex, int targetYIndex, double ratio) {
-        FluidEntity targetEntity = getEntity(targetXIndex, targetYIndex);
-        originEntity.recordMassTransferTo(targetEntity, ratio);
-    }
+        int target = layout.index(limitToHeld(targetXIndex, sourceX.length), limitToHeld(targetYIndex, sourceY.length));
+        if (cellTypes[target] == CellType.SOLID) return;
 
-    private void transferFrom(FluidEntity targetEntity, int originXIndex, int originYIndex, double ratio) {
-        FluidEntity originEntity = getEntity(originXIndex, originYIndex);
-        originEntity.recordMassTransferTo(targetEntity, ratio);
+        originEntity.recordMassTransferTo(entities[target], ratio);
     }
 
-    private FluidEntity getEntity(int xIndex, int yIndex) {
-        // Handle if outside of universe
-        if (xIndex < 0) {
-            xIndex = 0;
-        } else if (xIndex >= entities.length) {
-            xIndex = entities.length - 1;
-        }
-        if (yIndex < 0) {
-            yIndex = 0;
-        } else if (yIndex >= entities[xIndex].length) {
-            yIndex = entities[xIndex].length - 1;
+    private void transferFrom(FluidEntity targetEntity, int targetXIndex, int targetYIndex, int originXIndex, int originYIndex, double ratio) {
+        int originX = limitToHeld(originXIndex, sourceX.length);
+        int originY = limitToHeld(originYIndex, sourceY.length);
+        if (cellTypes[layout.index(originX, originY)] == CellType.SOLID) return;
+
+        // A ghost origin's mass is its source's
+        int xIndex = sourceX[originX];
+        int yIndex = sourceY[originY];
+        if (xIndex < minX || xIndex >= maxX || yIndex < minY || yIndex >= maxY) {
+            // The halo origin's transfers are recorded by its owner
+            haloExchange.recordHaloTransfer(xIndex, yIndex, targetXIndex, targetYIndex, ratio);
+            return;
         }
-        return entities[xIndex][yIndex];
+        getEntity(xIndex, yIndex).recordMassTransferTo(targetEntity, ratio);
+    }
+
+    /**
+     * Limits a transfer's target to the held cells, see {@link #advection()}
+     */
+    private static int limitToHeld(int index, int held) {
+        return Math.max(0, Math.min(held - 1, index));
     }
 
     private int getLesserTargetIndex(int sourceIndex, int indexOffset, boolean directionPositive) {
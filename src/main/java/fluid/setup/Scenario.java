@@ -0,0 +1,659 @@
+package fluid.setup;
+
+import fluid.entity.FluidEntity;
+import fluid.entity.Ink;
+import fluid.input.Explosion;
+import fluid.input.HeatPlate;
+import fluid.input.MassEmitter;
+import fluid.input.RegionInput;
+import fluid.input.VelocityInlet;
+import fluid.physics.CellLayout;
+import fluid.physics.CellType;
+import fluid.physics.EquationOfState;
+import fluid.physics.GhostBoundary;
+import fluid.physics.IdealGas;
+import fluid.physics.InputSource;
+import fluid.physics.Material;
+import fluid.physics.MaterialTable;
+import fluid.physics.PhaseTransition;
+import fluid.physics.PhysicalConstants;
+import fluid.physics.TabulatedEquationOfState;
+import fluid.physics.TaitLiquid;
+import fluid.physics.Universe;
+import javafx.scene.paint.Color;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A universe to simulate, read from a properties file: the size of the grid, the fields it starts with, its boundary
+ * cells, its inputs and its physical constants. For example
+ * <pre>
+ * width = 220
+ * height = 175
+ * mass = 10
+ * temperature = 10
+ * gravity = .0001
+ * scalars = dye,salt
+ * materials = air,water
+ * material.water = molarWeight=4 conductivity=.0006 viscosity=1 density=4 eos=tait restDensity=40 restPressure=2 bulkModulus=2
+ * material.steam = molarWeight=4 eos=table densities=0,40 temperatures=0,100 pressures=0,0;1,5
+ * phase.1 = water steam temperature=50 latentHeat=20
+ * surface = water tension=.05 band=3
+ * vorticity = .1
+ * viscosity = implicit sweeps=10
+ * conduction = ADI
+ * inkAdvection = MACCORMACK
+ * velocityGrid = STAGGERED
+ *
+ * # Regions of cells, later ones over earlier ones. Corners are minX,minY,maxX,maxY with the max exclusive.
+ * cells.1 = 0,0,width,1 type=REFLECTIVE color=BEIGE
+ * cells.2 = 0,height/2,width,height mass=40 material=water scalar.salt=.5
+ *
+ * # Inputs, in the order they act
+ * input.1 = emitter width/2,1,width/2+1,2 mass=2.5 temperature=40 color=RED scalar.dye=1 start=101
+ * input.2 = plate 0,0,width,1 temperature=20
+ * input.3 = inlet 0,100,1,102 deltaX=3 color=WHITE
+ * input.4 = explosion width/2,height/3 radius=2 mass=100 temperature=100 color=RED start=0 steps=3
+ * input.5 = emitter 10,1,11,2 mass=1 tracers=2
+ *
+ * # Tracer particles carried by the fluid, spread over regions of cells
+ * tracers.1 = 0,0,width,height/2 count=10000
+ * </pre>
+ * Cell indices may be sums and products of whole numbers, width and height, so that a scenario can be run at any
+ * size. Scalars are passive fields carried by the mass, given as concentrations of it by cell regions and emitters.
+ * Materials are kinds of fluid, each cell a mix of them, set by cell regions and emitters. Properties not given for a
+ * material are those of fluid without any. A material's eos is ideal, the default, tait for a liquid, or table for
+ * pressures at evenly spaced densities then temperatures, each density's separated by semicolons. Phases turn the
+ * first material into the second above their temperature, and back below it. A surface is tracked where a material
+ * is half of the mass, and pulled on by its tension. Vorticity is how strongly small vortices are spun back up, none
+ * by default. Viscosity spreads velocity between cells by the viscosity of their materials, solved implicitly with
+ * the given number of sweeps a step, and is off by default. Conduction is EXPLICIT, the default, or ADI for the heat
+ * equation solved implicitly, for conductivities too high for explicit conduction. Ink advection is CARRIED with the
+ * mass, the default, or MACCORMACK for ink traced along the flow by itself, which stays sharper. The velocity grid is
+ * COLLOCATED, the default, with velocities at the centers of the cells, or STAGGERED, on the faces between them.
+ * Inputs with tracers= release that many tracer particles from each of their cells every step they're active.
+ * Properties a scenario doesn't give are taken from the scenario named by its base property, if any. Scenarios
+ * are looked up as files, then as the resources in /scenarios.
+ */
+public class Scenario {
+
+    public static final String DEFAULT = "candle";
+
+    private static final String RESOURCE_DIRECTORY = "/scenarios/";
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final CellLayout.Order layout;
+    private final GhostBoundary xBoundary;
+    private final GhostBoundary yBoundary;
+    private final PhysicalConstants constants;
+    private final double mass;
+    private final double temperature;
+    private final List<String> scalarNames;
+    // The materials' fractions, then the scalars
+    private final List<String> fieldNames;
+    private final List<CellRegion> cellRegions;
+    private final List<String[]> inputs;
+    private final List<String[]> tracerRegions;
+    // The material whose surface is tracked, or null
+    private final String surfaceMaterial;
+    private final double surfaceTension;
+    private final double surfaceBand;
+    private final double vorticityConfinement;
+    // 0 for no viscosity
+    private final int viscositySweeps;
+    private final Universe.Conduction conduction;
+    private final Universe.InkAdvection inkAdvection;
+    private final Universe.VelocityGrid velocityGrid;
+
+    private Scenario(String name, Properties properties) {
+        this.name = name;
+        width = Integer.parseInt(getRequired(properties, "width"));
+        height = Integer.parseInt(getRequired(properties, "height"));
+        layout = CellLayout.Order.valueOf(properties.getProperty("layout", CellLayout.Order.COLUMN_MAJOR.name()).trim());
+        xBoundary = GhostBoundary.valueOf(properties.getProperty("ghosts.x", GhostBoundary.CLAMP.name()).trim());
+        yBoundary = GhostBoundary.valueOf(properties.getProperty("ghosts.y", GhostBoundary.CLAMP.name()).trim());
+        double conductivity = getDouble(properties, "conductivity", PhysicalConstants.DEFAULT.getConductivity());
+        double gasConstant = getDouble(properties, "gasConstant", PhysicalConstants.DEFAULT.getGasConstant());
+        List<Material> materials = new ArrayList<>();
+        for (String material : getNames(properties, "materials")) {
+            String given = properties.getProperty("material." + material);
+            Map<String, String> values = given == null ? Collections.emptyMap() : parseValues(given.trim().split("\\s+"), 0);
+            double molarWeight = getDouble(values, "molarWeight", 1);
+            double density = getDouble(values, "density", 1);
+            materials.add(new Material(material, molarWeight, getDouble(values, "conductivity", conductivity),
+                    getDouble(values, "viscosity", .1), density, createEquationOfState(values, gasConstant, molarWeight, density)));
+        }
+        List<PhaseTransition> transitions = new ArrayList<>();
+        for (String[] tokens : getEntries(properties, "phase.")) {
+            if (tokens.length < 2) {
+                throw new IllegalArgumentException("Expected the lower and upper materials of " + Arrays.toString(tokens));
+            }
+            Map<String, String> values = parseValues(tokens, 2);
+            transitions.add(new PhaseTransition(tokens[0], tokens[1], getDouble(values, "temperature", 0), getDouble(values, "latentHeat", 0)));
+        }
+        constants = new PhysicalConstants(
+                getDouble(properties, "gravity", PhysicalConstants.DEFAULT.getGravity()),
+                gasConstant,
+                conductivity,
+                materials.isEmpty() ? MaterialTable.NONE : new MaterialTable(materials, transitions));
+        mass = getDouble(properties, "mass", FluidEntity.DEFAULT_MASS);
+        temperature = getDouble(properties, "temperature", FluidEntity.DEFAULT_TEMPERATURE);
+        scalarNames = getNames(properties, "scalars");
+        List<String> fields = new ArrayList<>(constants.getMaterials().getNames());
+        fields.addAll(scalarNames);
+        fieldNames = Collections.unmodifiableList(fields);
+
+        cellRegions = new ArrayList<>();
+        for (String[] tokens : getEntries(properties, "cells.")) {
+            cellRegions.add(new CellRegion(tokens, fieldNames, constants.getMaterials().getCount()));
+        }
+        inputs = getEntries(properties, "input.");
+        tracerRegions = getEntries(properties, "tracers.");
+
+        vorticityConfinement = getDouble(properties, "vorticity", 0);
+        conduction = Universe.Conduction.valueOf(properties.getProperty("conduction", Universe.Conduction.EXPLICIT.name()).trim());
+        inkAdvection = Universe.InkAdvection.valueOf(properties.getProperty("inkAdvection", Universe.InkAdvection.CARRIED.name()).trim());
+        velocityGrid = Universe.VelocityGrid.valueOf(properties.getProperty("velocityGrid", Universe.VelocityGrid.COLLOCATED.name()).trim());
+        String viscosity = properties.getProperty("viscosity", "").trim();
+        if (viscosity.isEmpty()) {
+            viscositySweeps = 0;
+        } else {
+            String[] tokens = viscosity.split("\\s+");
+            if (!tokens[0].equals("implicit")) {
+                throw new IllegalArgumentException("Unknown viscosity " + tokens[0] + ", expected implicit");
+            }
+            viscositySweeps = (int) getDouble(parseValues(tokens, 1), "sweeps", 10);
+        }
+
+        String surface = properties.getProperty("surface", "").trim();
+        if (surface.isEmpty()) {
+            surfaceMaterial = null;
+            surfaceTension = 0;
+            surfaceBand = 0;
+        } else {
+            String[] tokens = surface.split("\\s+");
+            if (!constants.getMaterials().getNames().contains(tokens[0])) {
+                throw new IllegalArgumentException("No material " + tokens[0] + " for the surface, only " + constants.getMaterials().getNames());
+            }
+            Map<String, String> values = parseValues(tokens, 1);
+            surfaceMaterial = tokens[0];
+            surfaceTension = getDouble(values, "tension", 0);
+            surfaceBand = getDouble(values, "band", 3);
+        }
+    }
+
+    /**
+     * Reads the scenario from the file at the given path, or if there is none, the resource of the given name.
+     */
+    public static Scenario load(String name) throws IOException {
+        return new Scenario(name, loadProperties(name));
+    }
+
+    private static Properties loadProperties(String name) throws IOException {
+        Properties own = new Properties();
+        try (Reader reader = open(name)) {
+            own.load(reader);
+        }
+
+        String base = own.getProperty("base");
+        if (base == null) {
+            return own;
+        }
+        Properties properties = new Properties(loadProperties(base.trim()));
+        properties.putAll(own);
+        return properties;
+    }
+
+    private static Reader open(String name) throws IOException {
+        Path path = Paths.get(name);
+        if (Files.isRegularFile(path)) {
+            return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        }
+        InputStream resource = Scenario.class.getResourceAsStream(RESOURCE_DIRECTORY + name + ".properties");
+        if (resource == null) {
+            throw new IOException("No scenario file or resource named " + name);
+        }
+        return new InputStreamReader(resource, StandardCharsets.UTF_8);
+    }
+
+    private static EquationOfState createEquationOfState(Map<String, String> values, double gasConstant, double molarWeight, double density) {
+        String eos = values.getOrDefault("eos", "ideal");
+        switch (eos) {
+            case "ideal":
+                return new IdealGas(gasConstant, molarWeight);
+            case "tait":
+                return new TaitLiquid(getDouble(values, "restDensity", density), getDouble(values, "restPressure", 0),
+                        getDouble(values, "bulkModulus", 1), getDouble(values, "exponent", 7));
+            case "table":
+                double[] densities = parseDoubles(getRequired(values, "densities"));
+                double[] temperatures = parseDoubles(getRequired(values, "temperatures"));
+                if (densities.length != 2 || temperatures.length != 2) {
+                    throw new IllegalArgumentException("Expected the least and most of the table's densities and temperatures");
+                }
+                String[] rows = getRequired(values, "pressures").split(";");
+                double[][] pressures = new double[rows.length][];
+                for (int i = 0; i < rows.length; i++) {
+                    pressures[i] = parseDoubles(rows[i]);
+                }
+                return new TabulatedEquationOfState(densities[0], densities[1], temperatures[0], temperatures[1], pressures);
+            default:
+                throw new IllegalArgumentException("Unknown equation of state " + eos + ", expected ideal, tait or table");
+        }
+    }
+
+    private static String getRequired(Map<String, String> values, String key) {
+        String value = values.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Expected " + key + "=");
+        }
+        return value;
+    }
+
+    private static double[] parseDoubles(String values) {
+        return Arrays.stream(values.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    private static String getRequired(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Scenario has no " + key);
+        }
+        return value.trim();
+    }
+
+    private static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private static List<String> getNames(Properties properties, String key) {
+        String names = properties.getProperty(key, "").trim();
+        return names.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(names.split("\\s*,\\s*")));
+    }
+
+    /**
+     * The values of the keys with the given prefix, split into tokens, in the order of the numbers after the prefix.
+     */
+    private static List<String[]> getEntries(Properties properties, String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        keys.sort(Comparator.comparingInt(key -> Integer.parseInt(key.substring(prefix.length()))));
+
+        List<String[]> entries = new ArrayList<>();
+        for (String key : keys) {
+            entries.add(properties.getProperty(key).trim().split("\\s+"));
+        }
+        return entries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The size the scenario is meant to be run at
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public CellLayout.Order getLayout() {
+        return layout;
+    }
+
+    public GhostBoundary getXBoundary() {
+        return xBoundary;
+    }
+
+    public GhostBoundary getYBoundary() {
+        return yBoundary;
+    }
+
+    public PhysicalConstants getConstants() {
+        return constants;
+    }
+
+    public double getMass() {
+        return mass;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * The passive scalar fields carried by the mass, in the order their concentrations are given in
+     */
+    public List<String> getScalarNames() {
+        return scalarNames;
+    }
+
+    /**
+     * The scalar fields of the scenario's grids: the fraction of each material, then the scalars
+     */
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * The material whose surface is tracked, or null if there's none
+     */
+    public String getSurfaceMaterial() {
+        return surfaceMaterial;
+    }
+
+    public double getSurfaceTension() {
+        return surfaceTension;
+    }
+
+    /**
+     * Distance from the surface, in cells, to which it's tracked
+     */
+    public double getSurfaceBand() {
+        return surfaceBand;
+    }
+
+    /**
+     * How strongly small vortices are spun back up each step, see {@link fluid.physics.Universe#setVorticityConfinement}
+     */
+    public double getVorticityConfinement() {
+        return vorticityConfinement;
+    }
+
+    /**
+     * Sweeps of the implicit viscosity solve each step, 0 if there's no viscosity
+     */
+    public int getViscositySweeps() {
+        return viscositySweeps;
+    }
+
+    public Universe.Conduction getConduction() {
+        return conduction;
+    }
+
+    public Universe.InkAdvection getInkAdvection() {
+        return inkAdvection;
+    }
+
+    public Universe.VelocityGrid getVelocityGrid() {
+        return velocityGrid;
+    }
+
+    /**
+     * In the order they're laid over each other
+     */
+    List<CellRegion> getCellRegions() {
+        return Collections.unmodifiableList(cellRegions);
+    }
+
+    public List<InputSource> createInputs(int width, int height) {
+        List<InputSource> sources = new ArrayList<>();
+        for (String[] tokens : inputs) {
+            sources.add(createInput(tokens, width, height));
+        }
+        return Collections.unmodifiableList(sources);
+    }
+
+    /**
+     * Tracer particles released from each cell of each of the inputs, per step, in the order of createInputs
+     */
+    List<Double> getTracerRates() {
+        List<Double> rates = new ArrayList<>();
+        for (String[] tokens : inputs) {
+            rates.add(getDouble(parseValues(tokens, 2), "tracers", 0));
+        }
+        return rates;
+    }
+
+    /**
+     * The regions tracer particles are spread over, as minX, minY, maxX and maxY for a grid of the given size, then
+     * the number of particles
+     */
+    List<int[]> getTracerRegions(int width, int height) {
+        List<int[]> regions = new ArrayList<>();
+        for (String[] tokens : tracerRegions) {
+            int[] corners = parseIndices(tokens[0], width, height);
+            checkCorners(corners, tokens);
+            int[] region = Arrays.copyOf(corners, 5);
+            region[4] = (int) getDouble(parseValues(tokens, 1), "count", 0);
+            regions.add(region);
+        }
+        return regions;
+    }
+
+    private InputSource createInput(String[] tokens, int width, int height) {
+        if (tokens.length < 2) {
+            throw new IllegalArgumentException("Expected an input kind and its cells, got " + Arrays.toString(tokens));
+        }
+        int[] cells = parseIndices(tokens[1], width, height);
+        Map<String, String> values = parseValues(tokens, 2);
+
+        switch (tokens[0]) {
+            case "emitter":
+                checkCorners(cells, tokens);
+                return timed(new MassEmitter(cells[0], cells[1], cells[2], cells[3],
+                        getDouble(values, "mass", 0), getDouble(values, "temperature", FluidEntity.DEFAULT_TEMPERATURE),
+                        getDouble(values, "deltaX", 0), getDouble(values, "deltaY", 0), getInk(values),
+                        getFields(values, fieldNames, constants.getMaterials().getCount(), 0)), values);
+            case "plate":
+                checkCorners(cells, tokens);
+                return timed(new HeatPlate(cells[0], cells[1], cells[2], cells[3],
+                        getDouble(values, "temperature", FluidEntity.DEFAULT_TEMPERATURE)), values);
+            case "inlet":
+                checkCorners(cells, tokens);
+                return timed(new VelocityInlet(cells[0], cells[1], cells[2], cells[3],
+                        getDouble(values, "deltaX", 0), getDouble(values, "deltaY", 0), getInk(values)), values);
+            case "explosion":
+                if (cells.length != 2) {
+                    throw new IllegalArgumentException("Expected the x,y of the center of " + Arrays.toString(tokens));
+                }
+                return new Explosion(cells[0], cells[1], (int) getDouble(values, "radius", 0),
+                        getDouble(values, "mass", 0), getDouble(values, "temperature", FluidEntity.DEFAULT_TEMPERATURE),
+                        getInk(values), (int) getDouble(values, "start", 0), (int) getDouble(values, "steps", 1));
+            default:
+                throw new IllegalArgumentException("Unknown input " + tokens[0]);
+        }
+    }
+
+    private static InputSource timed(RegionInput input, Map<String, String> values) {
+        if (values.containsKey("start")) {
+            input.startingAt(Integer.parseInt(values.get("start")));
+        }
+        if (values.containsKey("end")) {
+            input.endingAt(Integer.parseInt(values.get("end")));
+        }
+        return input;
+    }
+
+    private static void checkCorners(int[] cells, String[] tokens) {
+        if (cells.length != 4) {
+            throw new IllegalArgumentException("Expected minX,minY,maxX,maxY of " + Arrays.toString(tokens));
+        }
+    }
+
+    private static Map<String, String> parseValues(String[] tokens, int start) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = start; i < tokens.length; i++) {
+            int split = tokens[i].indexOf('=');
+            if (split < 1) {
+                throw new IllegalArgumentException("Expected name=value, got " + tokens[i]);
+            }
+            values.put(tokens[i].substring(0, split), tokens[i].substring(split + 1));
+        }
+        return values;
+    }
+
+    private static double getDouble(Map<String, String> values, String key, double defaultValue) {
+        return values.containsKey(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+    }
+
+    /**
+     * The values of the grid's fields given by material=name and scalar.name=value, in the order of the fields, or null
+     * if none are. A material is all of the mass.
+     */
+    private static double[] getFields(Map<String, String> values, List<String> fieldNames, int materialCount, double defaultValue) {
+        List<String> scalarNames = fieldNames.subList(materialCount, fieldNames.size());
+        boolean given = false;
+        for (String key : values.keySet()) {
+            if (!key.startsWith("scalar.")) continue;
+            String name = key.substring("scalar.".length());
+            if (!scalarNames.contains(name)) {
+                throw new IllegalArgumentException("No scalar field " + name + ", only " + scalarNames);
+            }
+            given = true;
+        }
+        String material = values.get("material");
+        if (material != null && !fieldNames.subList(0, materialCount).contains(material)) {
+            throw new IllegalArgumentException("No material " + material + ", only " + fieldNames.subList(0, materialCount));
+        }
+        if (!given && material == null) {
+            return null;
+        }
+
+        double[] fields = new double[fieldNames.size()];
+        for (int i = 0; i < materialCount; i++) {
+            fields[i] = material == null ? defaultValue : fieldNames.get(i).equals(material) ? 1 : 0;
+        }
+        for (int i = materialCount; i < fields.length; i++) {
+            fields[i] = getDouble(values, "scalar." + fieldNames.get(i), defaultValue);
+        }
+        return fields;
+    }
+
+    /**
+     * Colors are anything JavaFX can read, such as a name or #rrggbb, turned into packed ink.
+     */
+    private static Integer getInk(Map<String, String> values) {
+        if (!values.containsKey("color")) {
+            return null;
+        }
+        Color color = Color.web(values.get("color"));
+        return Ink.argb(color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity());
+    }
+
+    private static int[] parseIndices(String indices, int width, int height) {
+        return Arrays.stream(indices.split(",")).mapToInt(index -> evaluate(index, width, height)).toArray();
+    }
+
+    /**
+     * Sums and differences of products and quotients of whole numbers, width and height, without brackets. Quotients
+     * are rounded down, as in Java.
+     */
+    static int evaluate(String expression, int width, int height) {
+        int sum = 0;
+        int sign = 1;
+        int term = 0;
+        for (String part : expression.split("(?=[+-])|(?<=[+-])")) {
+            if (part.equals("+") || part.equals("-")) {
+                sum += sign * term;
+                sign = part.equals("+") ? 1 : -1;
+                term = 0;
+                continue;
+            }
+            String[] factors = part.split("(?=[*/])|(?<=[*/])");
+            term = evaluateFactor(factors[0], width, height, expression);
+            for (int i = 1; i + 1 < factors.length; i += 2) {
+                int factor = evaluateFactor(factors[i + 1], width, height, expression);
+                term = factors[i].equals("*") ? term * factor : term / factor;
+            }
+        }
+        return sum + sign * term;
+    }
+
+    private static int evaluateFactor(String factor, int width, int height, String expression) {
+        switch (factor) {
+            case "width":
+                return width;
+            case "height":
+                return height;
+            default:
+                try {
+                    return Integer.parseInt(factor);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Can't work out " + expression, e);
+                }
+        }
+    }
+
+    /**
+     * A rectangle of cells given a type or initial field values, over those of earlier regions. Values not given are
+     * null or NaN.
+     */
+    static class CellRegion {
+
+        private final String[] corners;
+        final Byte cellType;
+        final double mass;
+        final double temperature;
+        final double deltaX;
+        final double deltaY;
+        final Integer ink;
+        // In the order of the scenario's fields, or null if none are given
+        final double[] scalars;
+
+        CellRegion(String[] tokens, List<String> fieldNames, int materialCount) {
+            corners = tokens[0].split(",");
+            if (corners.length != 4) {
+                throw new IllegalArgumentException("Expected minX,minY,maxX,maxY of " + Arrays.toString(tokens));
+            }
+            Map<String, String> values = parseValues(tokens, 1);
+            cellType = values.containsKey("type") ? getCellType(values.get("type")) : null;
+            mass = getDouble(values, "mass", Double.NaN);
+            temperature = getDouble(values, "temperature", Double.NaN);
+            deltaX = getDouble(values, "deltaX", Double.NaN);
+            deltaY = getDouble(values, "deltaY", Double.NaN);
+            ink = getInk(values);
+            scalars = getFields(values, fieldNames, materialCount, Double.NaN);
+        }
+
+        /**
+         * minX, minY, maxX and maxY, for a grid of the given size
+         */
+        int[] getCorners(int width, int height) {
+            return Arrays.stream(corners).mapToInt(corner -> evaluate(corner, width, height)).toArray();
+        }
+
+        private static Byte getCellType(String name) {
+            switch (name) {
+                case "FLUID":
+                    return CellType.FLUID;
+                case "OPEN":
+                    return CellType.OPEN;
+                case "MATCHING":
+                    return CellType.MATCHING;
+                case "REFLECTIVE":
+                    return CellType.REFLECTIVE;
+                case "SOLID":
+                    return CellType.SOLID;
+                default:
+                    throw new IllegalArgumentException("Unknown cell type " + name);
+            }
+        }
+    }
+
+}
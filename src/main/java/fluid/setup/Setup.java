@@ -1,12 +1,18 @@
 package fluid.setup;
 
 import fluid.entity.FluidEntity;
-import fluid.entity.MatchingMockFluidEntity;
-import fluid.entity.OpenMockFluidEntity;
-import fluid.entity.ReflectiveMockFluidEntity;
+import fluid.entity.Ink;
+import fluid.physics.CellLayout;
+import fluid.physics.CellType;
+import fluid.physics.Grid;
+import fluid.physics.InputSource;
+import fluid.physics.NarrowBandLevelSet;
+import fluid.physics.Subdomain;
 import fluid.physics.Universe;
-import javafx.scene.paint.Color;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.stream.IntStream;
 
 /**
@@ -14,62 +20,169 @@ import java.util.stream.IntStream;
  */
 public class Setup {
 
-    private static final double Z_DISTANCE = 5000;
+    private static Scenario defaultScenario;
 
     public static Universe create() {
-        /**
-         * NOTE: Because of the possibly effect of gravity, causing pressure to increase downwards, and since all of
-         * these are starting with same mass and pressure everyhere, it will take a while to come to an equilibrium.
-         *
-         * Of course, the mock fluid entities we're using at the moment all have default mass, so the borders will also
-         * provide an instability until we tweak that.
-         */
+        return create(getDefaultScenario());
+        //return rectangle(300, 50);
+        //return rayleighTaylor(SIZE);
+    }
 
-        FluidEntity[][] entities = rectangle(220, 175);
+    public static Universe create(Scenario scenario) {
+        Universe universe = new Universe(createGrid(scenario, Subdomain.whole(scenario.getWidth(), scenario.getHeight())));
+        configure(universe, scenario);
+        return universe;
+    }
 
-        // Set boundary conditions of the universe
-        FluidEntity otherEntity;
-        // Right border
-        for (int y = 0; y < entities[0].length; y++) {
-            otherEntity = entities[entities.length - 1][y];
-            entities[entities.length - 1][y] = new OpenMockFluidEntity(otherEntity.getX(), otherEntity.getY(), otherEntity.getZ());
+    /**
+     * Sets the scenario's options, inputs, tracers and surface on a universe of its grid, or of a subdomain of it,
+     * sized as the universe's grid rather than the scenario says. Options a subdomain can't have, such as a surface,
+     * are refused by the universe rather than left out.
+     */
+    public static void configure(Universe universe, Scenario scenario) {
+        int width = universe.getSubdomain().getGridWidth();
+        int height = universe.getSubdomain().getGridHeight();
+        universe.setVorticityConfinement(scenario.getVorticityConfinement());
+        universe.setViscositySweeps(scenario.getViscositySweeps());
+        universe.setConduction(scenario.getConduction());
+        universe.setInkAdvection(scenario.getInkAdvection());
+        universe.setVelocityGrid(scenario.getVelocityGrid());
+        List<InputSource> inputs = scenario.createInputs(width, height);
+        List<Double> tracerRates = scenario.getTracerRates();
+        for (int i = 0; i < inputs.size(); i++) {
+            universe.addInput(inputs.get(i));
+            if (tracerRates.get(i) > 0) {
+                universe.addTracerSource(inputs.get(i), tracerRates.get(i));
+            }
         }
-        // Left border
-        for (int y = 0; y < entities[0].length; y++) {
-            otherEntity = entities[0][y];
-            entities[0][y] = new OpenMockFluidEntity(otherEntity.getX(), otherEntity.getY(), otherEntity.getZ());
+        for (int[] region : scenario.getTracerRegions(width, height)) {
+            universe.getTracers().seed(region[0] - .5, region[1] - .5, region[2] - .5, region[3] - .5, region[4]);
         }
-        // Top border
-        for (int x = 0; x < entities.length; x++) {
-            otherEntity = entities[x][entities[x].length - 1];
-            entities[x][entities[x].length - 1] = new MatchingMockFluidEntity(otherEntity.getX(), otherEntity.getY(), otherEntity.getZ());
+        if (scenario.getSurfaceMaterial() != null) {
+            universe.setSurface(createSurface(scenario, universe.getGrid()));
         }
-        // Bottom border
-        for (int x = 0; x < entities.length; x++) {
-            otherEntity = entities[x][0];
-            entities[x][0] = new ReflectiveMockFluidEntity(otherEntity.getX(), otherEntity.getY(), otherEntity.getZ());
+    }
+
+    /**
+     * The surface of the scenario's liquid, where it's half of the mass of the grid's cells
+     */
+    public static NarrowBandLevelSet createSurface(Scenario scenario, Grid grid) {
+        NarrowBandLevelSet surface = new NarrowBandLevelSet(grid.getWidth(), grid.getHeight(), scenario.getSurfaceBand(),
+                scenario.getSurfaceTension());
+        surface.initialize(grid, grid.getScalarFields().indexOf(scenario.getSurfaceMaterial()));
+        return surface;
+    }
+
+    /**
+     * Read the first time it's asked for
+     */
+    public static synchronized Scenario getDefaultScenario() {
+        if (defaultScenario == null) {
+            try {
+                defaultScenario = Scenario.load(Scenario.DEFAULT);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't read the default scenario", e);
+            }
         }
+        return defaultScenario;
+    }
 
-        return new Universe(entities);
-        //return rectangle(300, 50);
-        //return rayleighTaylor(SIZE);
+    /**
+     * The cells of the default universe held by the given subdomain, including its halo.
+     */
+    public static Grid createGrid(Subdomain subdomain) {
+        return createGrid(getDefaultScenario(), subdomain);
     }
 
-    public static FluidEntity[][] rectangle(int width, int height) {
-        FluidEntity[][] entities = new FluidEntity[width][height];
+    public static Grid createGrid(Scenario scenario, Subdomain subdomain) {
+        return createGrid(scenario, subdomain, scenario.getLayout());
+    }
 
-        IntStream.range(0, width).forEach(i -> {
+    /**
+     * The cells of the scenario held by the given subdomain, including its halo, with the scenario's regions laid out
+     * over the size of the subdomain's grid.
+     */
+    public static Grid createGrid(Scenario scenario, Subdomain subdomain, CellLayout.Order order) {
+        /**
+         * NOTE: Because of the possibly effect of gravity, causing pressure to increase downwards, and since all of
+         * these are starting with same mass and pressure everyhere, it will take a while to come to an equilibrium.
+         *
+         * Of course, the boundary cells we're using at the moment all have default mass, so the borders will also
+         * provide an instability until we tweak that.
+         */
 
-            double x = (i - width / 2) * FluidEntity.SPACE;
+        int width = subdomain.getGridWidth();
+        int height = subdomain.getGridHeight();
+        CellLayout layout = new CellLayout(subdomain.getLocalWidth(), subdomain.getLocalHeight(), order);
+        Grid grid = new Grid(layout, scenario.getXBoundary(), scenario.getYBoundary(), scenario.getFieldNames());
+        byte[] cellTypes = grid.getCellTypes();
+        int scalarCount = scenario.getFieldNames().size();
+
+        List<Scenario.CellRegion> regions = scenario.getCellRegions();
+        int[][] corners = regions.stream().map(region -> region.getCorners(width, height)).toArray(int[][]::new);
+
+        // Straight into the grid's storage, in parallel. Each thread takes runs of indices, so cells next to each
+        // other in the layout still tend to be next to each other on the heap.
+        IntStream.range(0, layout.getSize()).parallel().filter(layout::isCell).forEach(index -> {
+            int gridX = subdomain.toGridX(layout.getX(index));
+            int gridY = subdomain.toGridY(layout.getY(index));
+
+            double mass = scenario.getMass();
+            double temperature = scenario.getTemperature();
+            double deltaX = 0;
+            double deltaY = 0;
+            Integer ink = null;
+            double[] scalars = null;
+            byte cellType = CellType.FLUID;
+            for (int i = 0; i < corners.length; i++) {
+                if (gridX < corners[i][0] || gridY < corners[i][1] || gridX >= corners[i][2] || gridY >= corners[i][3]) {
+                    continue;
+                }
+                Scenario.CellRegion region = regions.get(i);
+                if (region.cellType != null) cellType = region.cellType;
+                if (!Double.isNaN(region.mass)) mass = region.mass;
+                if (!Double.isNaN(region.temperature)) temperature = region.temperature;
+                if (!Double.isNaN(region.deltaX)) deltaX = region.deltaX;
+                if (!Double.isNaN(region.deltaY)) deltaY = region.deltaY;
+                if (region.ink != null) ink = region.ink;
+                for (int field = 0; region.scalars != null && field < scalarCount; field++) {
+                    if (Double.isNaN(region.scalars[field])) continue;
+                    if (scalars == null) scalars = new double[scalarCount];
+                    scalars[field] = region.scalars[field];
+                }
+            }
 
-            IntStream.range(0, height).forEach(j -> {
-                double y = (j - height / 2) * FluidEntity.SPACE;
+            FluidEntity entity = new FluidEntity(mass, temperature);
+            entity.setDeltaX(deltaX);
+            entity.setDeltaY(deltaY);
+            if (ink != null) {
+                entity.setInk(ink);
+            }
+            entity.setConstants(scenario.getConstants());
 
-                FluidEntity entity = new FluidEntity(x, y, Z_DISTANCE, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
-                entities[i][j] = entity;
-            });
+            grid.setEntity(index, entity);
+            for (int field = 0; scalars != null && field < scalarCount; field++) {
+                entity.setScalar(field, scalars[field]);
+            }
+            cellTypes[index] = cellType;
         });
 
+        return grid;
+    }
+
+    /**
+     * The inputs of the default universe, for a grid of the given size
+     */
+    public static List<InputSource> createInputs(int width, int height) {
+        return getDefaultScenario().createInputs(width, height);
+    }
+
+    public static FluidEntity[][] rectangle(int width, int height) {
+        FluidEntity[][] entities = new FluidEntity[width][height];
+
+        IntStream.range(0, width).parallel().forEach(i -> IntStream.range(0, height).forEach(j ->
+                entities[i][j] = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE)));
+
         return entities;
     }
 
@@ -82,23 +195,18 @@ public class Setup {
 
         IntStream.range(0, numEntitiesOnSide).forEach(i -> {
 
-            double x = (i - numEntitiesOnSide / 2) * FluidEntity.SPACE;
-
             for (int j = numEntitiesOnSide - 1; j >= 0; j--) {
 
-                double y = (j - numEntitiesOnSide / 2) * FluidEntity.SPACE;
-                double z = Z_DISTANCE;
-
                 FluidEntity entity;
                 if (j > numEntitiesOnSide / 2) {
-                    entity = new FluidEntity(x, y, z, FluidEntity.DEFAULT_MASS * 4, FluidEntity.DEFAULT_TEMPERATURE);
-                    entity.setColor(Color.BLUE);
+                    entity = new FluidEntity(FluidEntity.DEFAULT_MASS * 4, FluidEntity.DEFAULT_TEMPERATURE);
+                    entity.setInk(Ink.argb(0, 0, 1, 1));
                     if (Math.random() < .01) {
-                        entity.addMass(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_MASS, Color.BLACK);
+                        entity.addMass(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_MASS, Ink.argb(0, 0, 0, 1));
                     }
                 } else {
-                    entity = new FluidEntity(x, y, z, FluidEntity.DEFAULT_MASS / 4, FluidEntity.DEFAULT_TEMPERATURE);
-                    entity.setColor(Color.RED);
+                    entity = new FluidEntity(FluidEntity.DEFAULT_MASS / 4, FluidEntity.DEFAULT_TEMPERATURE);
+                    entity.setInk(Ink.argb(1, 0, 0, 1));
                 }
                 entities[i][j] = entity;
             }
@@ -0,0 +1,120 @@
+package fluid.camera;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CameraTest {
+
+    private static final double EYE_DISTANCE = 5000;
+    private static final double CENTER_X = 700;
+    private static final double CENTER_Y = 450;
+
+    @Test
+    public void testProjectMatchesMatrices() {
+        double[] xs = {0, 100, -300, 55, 1234.5};
+        double[] ys = {0, -40, 200, 600, -987.25};
+
+        assertProjectedAsMatrices(createCamera(0, 0, 0, 0, 0, 0), xs, ys, 5000);
+        assertProjectedAsMatrices(createCamera(30, -20, 100, 10, -7, 25), xs, ys, 5000);
+        assertProjectedAsMatrices(createCamera(-500, 250, -1000, -45, 30, 200), xs, ys, 2000);
+        assertProjectedAsMatrices(createCamera(10, 10, 0, 170, 95, -60), xs, ys, 3000);
+    }
+
+    @Test
+    public void testProjectAfterMoving() {
+        Camera camera = createCamera(30, -20, 100, 10, -7, 25);
+        double[] xs = {0, 100, -300};
+        double[] ys = {0, -40, 200};
+        assertProjectedAsMatrices(camera, xs, ys, 5000);
+
+        // The cached transform is worked out again
+        camera.setDeltaX(15);
+        camera.setDeltaZ(-40);
+        camera.move();
+        camera.incrementRelativeXAngle(5);
+        assertProjectedAsMatrices(camera, xs, ys, 5000);
+    }
+
+    @Test
+    public void testPointsBehindCameraAreNaN() {
+        Camera camera = createCamera(0, 0, 100, 0, 0, 0);
+        double[] xs = {0, 50};
+        double[] ys = {0, -50};
+        double[] screenXs = new double[2];
+        double[] screenYs = new double[2];
+
+        // Either side of the camera, so exactly one side is in front
+        camera.project(xs, ys, 5000, 2, EYE_DISTANCE, CENTER_X, CENTER_Y, screenXs, screenYs);
+        boolean inFront = !Double.isNaN(screenXs[0]);
+        camera.project(xs, ys, -5000, 2, EYE_DISTANCE, CENTER_X, CENTER_Y, screenXs, screenYs);
+        assertEquals(inFront, Double.isNaN(screenXs[0]));
+        assertEquals(inFront, Double.isNaN(screenYs[1]));
+
+        assertProjectedAsMatrices(camera, xs, ys, 5000);
+        assertProjectedAsMatrices(camera, xs, ys, -5000);
+        // On the camera's plane
+        assertProjectedAsMatrices(camera, xs, ys, 100);
+    }
+
+    @Test
+    public void testProjectSplitIntoBatches() {
+        // Several batches, the last one partly full, split between threads
+        int count = 3 * 4096 + 123;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            xs[i] = random.nextDouble() * 4000 - 2000;
+            ys[i] = random.nextDouble() * 4000 - 2000;
+        }
+        assertProjectedAsMatrices(createCamera(30, -20, 100, 10, -7, 25), xs, ys, 5000);
+    }
+
+    private static Camera createCamera(double x, double y, double z, double xAngle, double yAngle, double zAngle) {
+        Camera camera = new Camera(x, y, z);
+        // The constructor only sets the position, not the translation
+        camera.setX(x);
+        camera.setY(y);
+        camera.setZ(z);
+        camera.incrementRelativeZAngle(zAngle);
+        camera.incrementRelativeXAngle(xAngle);
+        camera.incrementRelativeYAngle(yAngle);
+        return camera;
+    }
+
+    /**
+     * Projects the points one at a time as the canvas used to, translating then rotating each as a matrix, and checks
+     * project gives the same, or NaN for those at or behind the camera
+     */
+    private static void assertProjectedAsMatrices(Camera camera, double[] xs, double[] ys, double z) {
+        int count = xs.length;
+        double[] screenXs = new double[count];
+        double[] screenYs = new double[count];
+        camera.project(xs, ys, z, count, EYE_DISTANCE, CENTER_X, CENTER_Y, screenXs, screenYs);
+
+        for (int i = 0; i < count; i++) {
+            Array2DRowRealMatrix matrix = camera.translate(new Array2DRowRealMatrix(new double[]{xs[i], ys[i], z, 1}));
+            matrix = camera.performXRotation(matrix);
+            matrix = camera.performYRotation(matrix);
+            matrix = camera.performZRotation(matrix);
+            double depth = matrix.getEntry(2, 0);
+            String point = "Point " + i + " at " + xs[i] + ", " + ys[i] + ", " + z;
+            if (depth <= 0) {
+                assertTrue(point, Double.isNaN(screenXs[i]));
+                assertTrue(point, Double.isNaN(screenYs[i]));
+                continue;
+            }
+            double distanceRatio = EYE_DISTANCE / depth;
+            double expectedX = matrix.getEntry(0, 0) * distanceRatio + CENTER_X;
+            double expectedY = matrix.getEntry(1, 0) * distanceRatio + CENTER_Y;
+            double tolerance = 1e-9 * (1 + Math.abs(expectedX) + Math.abs(expectedY));
+            assertEquals(point, expectedX, screenXs[i], tolerance);
+            assertEquals(point, expectedY, screenYs[i], tolerance);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package fluid.display;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColorMapTest {
+
+    @Test
+    public void testEndsOfRange() {
+        ColorMap map = new ColorMap(ColorMap.Palette.HEAT, 100, 300);
+        assertEquals(0xff0000ff, map.getArgb(100));
+        assertEquals(0xffff0000, map.getArgb(300));
+        assertArgbEquals(0xff000000, map.getArgb(200));
+
+        // Halfway between the blue and black stops
+        assertArgbEquals(0xff000080, map.getArgb(150));
+    }
+
+    @Test
+    public void testClampedOutsideRange() {
+        ColorMap map = new ColorMap(ColorMap.Palette.VIRIDIS, -1, 1);
+        assertEquals(map.getArgb(-1), map.getArgb(-1.001));
+        assertEquals(map.getArgb(-1), map.getArgb(-1e9));
+        assertEquals(map.getArgb(-1), map.getArgb(Double.NEGATIVE_INFINITY));
+        assertEquals(map.getArgb(1), map.getArgb(1.001));
+        assertEquals(map.getArgb(1), map.getArgb(1e9));
+        assertEquals(map.getArgb(1), map.getArgb(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testPaletteStops() {
+        assertEquals(0x00000000, ColorMap.Palette.BLACK.getArgb(0));
+        assertEquals(0xff000000, ColorMap.Palette.BLACK.getArgb(1));
+        assertEquals(0x80000000, ColorMap.Palette.BLACK.getArgb(.5) & 0xff000000);
+
+        assertEquals(0xff440154, ColorMap.Palette.VIRIDIS.getArgb(0));
+        assertEquals(0xff21908d, ColorMap.Palette.VIRIDIS.getArgb(.5));
+        assertEquals(0xfffde725, ColorMap.Palette.VIRIDIS.getArgb(1));
+
+        assertEquals(0xff3b4cc0, ColorMap.Palette.COOLWARM.getArgb(0));
+        assertEquals(0xff8db0fe, ColorMap.Palette.COOLWARM.getArgb(.25));
+        assertEquals(0xffdddcdc, ColorMap.Palette.COOLWARM.getArgb(.5));
+        assertEquals(0xfff49a7b, ColorMap.Palette.COOLWARM.getArgb(.75));
+        assertEquals(0xffb40426, ColorMap.Palette.COOLWARM.getArgb(1));
+
+        // Every palette's ends are the ends of its map
+        for (ColorMap.Palette palette : ColorMap.Palette.values()) {
+            ColorMap map = new ColorMap(palette, 0, 10);
+            assertEquals(palette.name(), palette.getArgb(0), map.getArgb(0));
+            assertEquals(palette.name(), palette.getArgb(1), map.getArgb(10));
+        }
+    }
+
+    @Test
+    public void testParse() {
+        ColorMap defaults = new ColorMap(ColorMap.Palette.HEAT, 0, 40);
+
+        ColorMap map = ColorMap.parse("VIRIDIS:0:600", defaults);
+        assertEquals(ColorMap.Palette.VIRIDIS, map.getPalette());
+        assertEquals(0, map.getMin(), 0);
+        assertEquals(600, map.getMax(), 0);
+
+        map = ColorMap.parse("GRAY", defaults);
+        assertEquals(ColorMap.Palette.GRAY, map.getPalette());
+        assertEquals(0, map.getMin(), 0);
+        assertEquals(40, map.getMax(), 0);
+
+        map = ColorMap.parse(":-5:5", defaults);
+        assertEquals(ColorMap.Palette.HEAT, map.getPalette());
+        assertEquals(-5, map.getMin(), 0);
+        assertEquals(5, map.getMax(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithoutMax() {
+        ColorMap.parse("VIRIDIS:0", new ColorMap(ColorMap.Palette.HEAT, 0, 40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknownPalette() {
+        ColorMap.parse("RAINBOW", new ColorMap(ColorMap.Palette.HEAT, 0, 40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyRange() {
+        new ColorMap(ColorMap.Palette.GRAY, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReversedRange() {
+        new ColorMap(ColorMap.Palette.GRAY, 1, 0);
+    }
+
+    /**
+     * Each channel within a unit, as the table's entries fall a little either side of the values asked for
+     */
+    private static void assertArgbEquals(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            assertEquals(String.format("%08x and %08x", expected, actual), expected >>> shift & 0xff, actual >>> shift & 0xff, 1);
+        }
+    }
+
+}
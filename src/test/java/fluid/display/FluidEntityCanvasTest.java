@@ -0,0 +1,52 @@
+package fluid.display;
+
+import fluid.entity.Ink;
+import javafx.scene.paint.Color;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FluidEntityCanvasTest {
+
+    @Test
+    public void testAdjustInkMatchesColorChain() {
+        int[] inks = {0xff000000, 0xffffffff, 0xff808080, 0xffff0000, 0xff00ff00, 0xff0000ff, 0xffffff00, 0xff102030,
+                0x80c08040, 0x01fefdfc, 0xff010000, 0x00000001};
+        for (int ink : inks) {
+            assertAdjustedAsColor(ink);
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            int ink = random.nextInt();
+            if (ink != Ink.TRANSPARENT) {
+                assertAdjustedAsColor(ink);
+            }
+        }
+    }
+
+    @Test
+    public void testAdjustInkKeepsTransparent() {
+        assertEquals(Ink.TRANSPARENT, FluidEntityCanvas.adjustInk(Ink.TRANSPARENT));
+    }
+
+    /**
+     * Checks the ink adjusted is the same as the color it was drawn as before, within a unit in each channel
+     */
+    private static void assertAdjustedAsColor(int ink) {
+        Color color = new Color(Ink.red(ink), Ink.green(ink), Ink.blue(ink), Ink.alpha(ink))
+                .saturate().saturate().darker().darker().saturate();
+        int adjusted = FluidEntityCanvas.adjustInk(ink);
+        String message = String.format("%08x adjusted to %08x, expected %s", ink, adjusted, color);
+        assertEquals(message, toByte(color.getOpacity()), adjusted >>> 24);
+        assertEquals(message, toByte(color.getRed()), adjusted >> 16 & 0xff, 1);
+        assertEquals(message, toByte(color.getGreen()), adjusted >> 8 & 0xff, 1);
+        assertEquals(message, toByte(color.getBlue()), adjusted & 0xff, 1);
+    }
+
+    private static int toByte(double channel) {
+        return (int) Math.round(channel * 255);
+    }
+
+}
@@ -0,0 +1,109 @@
+package fluid.distributed;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import fluid.setup.Setup;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class DistributedUniverseTest {
+
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 20;
+    // Long enough for the candle input to start
+    private static final int STEPS = 110;
+
+    private static final double TOLERANCE = .000001;
+
+    private static Universe createUniverse() {
+        Universe universe = new Universe(Setup.createGrid(Subdomain.whole(WIDTH, HEIGHT)));
+        Setup.createInputs(WIDTH, HEIGHT).forEach(universe::addInput);
+        return universe;
+    }
+
+    @Test
+    public void testOwnerMatchesSubdomains() {
+        DomainDecomposition decomposition = new DomainDecomposition(31, 17, 3, 4);
+        for (int rank = 0; rank < decomposition.getRanks(); rank++) {
+            Subdomain subdomain = decomposition.getSubdomain(rank);
+            for (int x = subdomain.getMinX(); x < subdomain.getMaxX(); x++) {
+                for (int y = subdomain.getMinY(); y < subdomain.getMaxY(); y++) {
+                    Assert.assertEquals(rank, decomposition.getOwner(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionsMatchSingleUniverse() {
+        Universe universe = createUniverse();
+        DomainDecomposition decomposition = new DomainDecomposition(WIDTH, HEIGHT, 3, 2);
+        try (PartitionedUniverse partitioned = new PartitionedUniverse(decomposition, Setup::createGrid)) {
+            Setup.createInputs(WIDTH, HEIGHT).forEach(partitioned::addInput);
+            for (int step = 0; step < STEPS; step++) {
+                universe.updateUniverseState();
+                partitioned.updateUniverseState();
+            }
+
+            for (int x = 0; x < WIDTH; x++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    FluidEntity expected = universe.getEntities()[x][y];
+                    FluidEntity actual = partitioned.getEntities()[x][y];
+                    Assert.assertEquals(expected.getMass(), actual.getMass(), TOLERANCE);
+                    Assert.assertEquals(expected.getTemperature(), actual.getTemperature(), TOLERANCE);
+                    Assert.assertEquals(expected.getDeltaX(), actual.getDeltaX(), TOLERANCE);
+                    Assert.assertEquals(expected.getDeltaY(), actual.getDeltaY(), TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWorkerProcessesMatchSingleUniverse() throws IOException, InterruptedException {
+        Universe universe = createUniverse();
+        for (int step = 0; step < STEPS; step++) {
+            universe.updateUniverseState();
+        }
+
+        File output = Files.createTempDirectory("subdomains").toFile();
+        int port = 20000 + new Random().nextInt(20000);
+        int exitCode = DistributedLauncher.launch(
+                "--columns", "2", "--rows", "2",
+                "--width", String.valueOf(WIDTH), "--height", String.valueOf(HEIGHT),
+                "--steps", String.valueOf(STEPS),
+                "--port", String.valueOf(port),
+                "--output", output.getPath());
+        Assert.assertEquals(0, exitCode);
+
+        FluidEntity[][] entities = universe.getEntities();
+        int cells = 0;
+        for (int rank = 0; rank < 4; rank++) {
+            File file = new File(output, SubdomainWorker.getOutputFileName(rank));
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    FluidEntity entity = entities[in.readInt()][in.readInt()];
+                    Assert.assertEquals(entity.getMass(), in.readDouble(), TOLERANCE);
+                    Assert.assertEquals(entity.getTemperature(), in.readDouble(), TOLERANCE);
+                    Assert.assertEquals(entity.getDeltaX(), in.readDouble(), TOLERANCE);
+                    Assert.assertEquals(entity.getDeltaY(), in.readDouble(), TOLERANCE);
+                }
+                cells += count;
+            }
+            file.delete();
+        }
+        output.delete();
+
+        Assert.assertEquals(WIDTH * HEIGHT, cells);
+    }
+
+}
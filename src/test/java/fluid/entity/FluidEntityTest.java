@@ -10,8 +10,8 @@ public class FluidEntityTest {
 
     @Test
     public void testConductionNoTemperatureDifference() {
-        FluidEntity a = new FluidEntity(0, 0, 0, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
-        FluidEntity b = new FluidEntity(1, 0, 0, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+        FluidEntity a = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+        FluidEntity b = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
 
         a.applyHeatConduction(b);
         b.applyHeatConduction(a);
@@ -26,8 +26,8 @@ public class FluidEntityTest {
     public void testConductionTemperatureDifference() {
         double startingTempA = 10;
         double startingTempB = 20;
-        FluidEntity a = new FluidEntity(0, 0, 0, FluidEntity.DEFAULT_MASS, startingTempA);
-        FluidEntity b = new FluidEntity(1, 0, 0, FluidEntity.DEFAULT_MASS, startingTempB);
+        FluidEntity a = new FluidEntity(FluidEntity.DEFAULT_MASS, startingTempA);
+        FluidEntity b = new FluidEntity(FluidEntity.DEFAULT_MASS, startingTempB);
 
         double originalTotalEnergy = a.getMass() * a.getTemperature() + b.getMass() * b.getTemperature();
 
@@ -44,4 +44,20 @@ public class FluidEntityTest {
         Assert.assertEquals(originalTotalEnergy, newTotalEnergy, FluidEntity.FUZZ);
     }
 
+    @Test
+    public void testInkMixesByMass() {
+        FluidEntity a = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+        a.setInk(Ink.argb(1, 0, 0, 1));
+
+        a.addMass(FluidEntity.DEFAULT_MASS * 3, FluidEntity.DEFAULT_TEMPERATURE, Ink.argb(0, 0, 1, 1));
+        Assert.assertEquals(.25, a.getInkRed(), FluidEntity.FUZZ);
+        Assert.assertEquals(.75, a.getInkBlue(), FluidEntity.FUZZ);
+        Assert.assertEquals(1, a.getInkAlpha(), FluidEntity.FUZZ);
+
+        // Mass without ink leaves it as it is
+        a.addMass(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE, 0, 0);
+        Assert.assertEquals(.25, a.getInkRed(), FluidEntity.FUZZ);
+        Assert.assertEquals(Ink.argb(.25, 0, .75, 1), a.getInk());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package fluid.main;
+
+import fluid.physics.Universe;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SimulationDriverTest {
+
+    @Test
+    public void testOneStepAtATime() throws InterruptedException {
+        Universe universe = Mockito.mock(Universe.class);
+        AtomicInteger stepping = new AtomicInteger();
+        AtomicInteger overlapping = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (stepping.incrementAndGet() > 1) {
+                overlapping.incrementAndGet();
+            }
+            Thread.sleep(2);
+            stepping.decrementAndGet();
+            return null;
+        }).when(universe).updateUniverseState();
+
+        SimulationDriver driver = new SimulationDriver(universe, 0);
+        driver.start();
+        Thread.sleep(200);
+        driver.stop();
+        Thread.sleep(20);
+        long steps = driver.getSteps();
+
+        assertTrue(steps > 10);
+        assertEquals(0, overlapping.get());
+        Mockito.verify(universe, Mockito.times((int) steps)).updateUniverseState();
+
+        // None after the one being taken when it was stopped
+        Thread.sleep(50);
+        assertEquals(steps, driver.getSteps());
+    }
+
+    @Test
+    public void testPacedToStepsPerSecond() throws InterruptedException {
+        Universe universe = Mockito.mock(Universe.class);
+        SimulationDriver driver = new SimulationDriver(universe, 50);
+        driver.start();
+        Thread.sleep(500);
+        driver.stop();
+
+        // 25 at the rate, give or take the scheduler
+        long steps = driver.getSteps();
+        assertTrue("Took " + steps + " steps", steps >= 15 && steps <= 30);
+    }
+
+    @Test
+    public void testNoBurstAfterSlowStep() throws InterruptedException {
+        Universe universe = Mockito.mock(Universe.class);
+        List<Long> starts = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            starts.add(System.nanoTime());
+            // The first step takes as long as 30 at the rate
+            if (starts.size() == 1) {
+                Thread.sleep(300);
+            }
+            return null;
+        }).when(universe).updateUniverseState();
+
+        SimulationDriver driver = new SimulationDriver(universe, 100);
+        driver.start();
+        Thread.sleep(600);
+        driver.stop();
+
+        // About 30 steps in the 300 ms after the slow one, rather than 60 as it catches up
+        long slowEnd = starts.get(0) + 300_000_000L;
+        long after = starts.stream().filter(start -> start >= slowEnd && start < slowEnd + 300_000_000L).count();
+        assertTrue("Took " + after + " steps", after >= 15 && after <= 40);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRate() {
+        new SimulationDriver(Mockito.mock(Universe.class), -1);
+    }
+
+}
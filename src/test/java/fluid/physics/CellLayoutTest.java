@@ -0,0 +1,67 @@
+package fluid.physics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CellLayoutTest {
+
+    // Square and not, powers of two and not, and longer either way
+    private static final int[][] SIZES = {{1, 1}, {1, 7}, {7, 1}, {2, 2}, {3, 5}, {8, 8}, {13, 6}, {6, 13}, {64, 3}, {33, 100}};
+
+    @Test
+    public void testIndicesRoundTrip() {
+        for (CellLayout.Order order : CellLayout.Order.values()) {
+            for (int[] size : SIZES) {
+                CellLayout layout = new CellLayout(size[0], size[1], order);
+                boolean[] used = new boolean[layout.getSize()];
+                for (int x = 0; x < size[0]; x++) {
+                    for (int y = 0; y < size[1]; y++) {
+                        String cell = order + " " + size[0] + " x " + size[1] + " at " + x + ", " + y;
+                        int index = layout.index(x, y);
+                        assertTrue(cell, index >= 0 && index < layout.getSize());
+                        assertFalse(cell + " shares its index", used[index]);
+                        used[index] = true;
+                        assertEquals(cell, x, layout.getX(index));
+                        assertEquals(cell, y, layout.getY(index));
+                        assertTrue(cell, layout.isCell(index));
+                    }
+                }
+
+                // Every other index is padding
+                for (int index = 0; index < layout.getSize(); index++) {
+                    assertEquals(order + " " + size[0] + " x " + size[1] + " index " + index, used[index], layout.isCell(index));
+                    if (used[index]) {
+                        assertEquals(index, layout.index(layout.getX(index), layout.getY(index)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testColumnMajorHasNoPadding() {
+        assertEquals(13 * 6, new CellLayout(13, 6, CellLayout.Order.COLUMN_MAJOR).getSize());
+    }
+
+    @Test
+    public void testMortonInterleavesBits() {
+        CellLayout layout = new CellLayout(4, 4, CellLayout.Order.MORTON);
+        assertEquals(0, layout.index(0, 0));
+        assertEquals(1, layout.index(1, 0));
+        assertEquals(2, layout.index(0, 1));
+        assertEquals(3, layout.index(1, 1));
+        assertEquals(4, layout.index(2, 0));
+        assertEquals(15, layout.index(3, 3));
+    }
+
+    @Test
+    public void testSpreadAndCompactInvert() {
+        for (int bits = 0; bits <= 0xffff; bits++) {
+            int spread = CellLayout.spread(bits);
+            assertEquals(0, spread & 0xaaaaaaaa);
+            assertEquals(bits, CellLayout.compact(spread));
+        }
+    }
+
+}
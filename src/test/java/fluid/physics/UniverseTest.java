@@ -1,11 +1,15 @@
 package fluid.physics;
 
 import fluid.entity.FluidEntity;
+import fluid.entity.Ink;
+import fluid.input.MassEmitter;
 import fluid.setup.Setup;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
@@ -18,32 +22,41 @@ public class UniverseTest {
     @Test
     public void assertNeighborsApplied() {
         FluidEntity[][] entities = new FluidEntity[2][2];
-        entities[0][0] = Mockito.mock(FluidEntity.class);
-        entities[1][0] = Mockito.mock(FluidEntity.class);
-        entities[0][1] = Mockito.mock(FluidEntity.class);
-        entities[1][1] = Mockito.mock(FluidEntity.class);
+        entities[0][0] = mockEntity();
+        entities[1][0] = mockEntity();
+        entities[0][1] = mockEntity();
+        entities[1][1] = mockEntity();
         Universe universe = new Universe(entities);
         universe.applyNeighborInteractions();
 
-        Mockito.verify(entities[0][0]).applyNeighborInteractions(entities[1][0]);
-        Mockito.verify(entities[0][0]).applyNeighborInteractions(entities[0][1]);
-        Mockito.verify(entities[0][0], Mockito.never()).applyNeighborInteractions(entities[1][1]);
-        Mockito.verify(entities[0][0], Mockito.never()).applyNeighborInteractions(entities[0][0]);
+        Mockito.verify(entities[0][0]).applyNeighborInteractions(Mockito.eq(entities[1][0]), Mockito.eq(1), Mockito.eq(0), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][0]).applyNeighborInteractions(Mockito.eq(entities[0][1]), Mockito.eq(0), Mockito.eq(1), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][0], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[1][1]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][0], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[0][0]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
 
-        Mockito.verify(entities[0][1]).applyNeighborInteractions(entities[0][0]);
-        Mockito.verify(entities[0][1]).applyNeighborInteractions(entities[1][1]);
-        Mockito.verify(entities[0][1], Mockito.never()).applyNeighborInteractions(entities[1][0]);
-        Mockito.verify(entities[0][1], Mockito.never()).applyNeighborInteractions(entities[0][1]);
+        Mockito.verify(entities[0][1]).applyNeighborInteractions(Mockito.eq(entities[0][0]), Mockito.eq(0), Mockito.eq(-1), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][1]).applyNeighborInteractions(Mockito.eq(entities[1][1]), Mockito.eq(1), Mockito.eq(0), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][1], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[1][0]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[0][1], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[0][1]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
 
-        Mockito.verify(entities[1][0]).applyNeighborInteractions(entities[0][0]);
-        Mockito.verify(entities[1][0]).applyNeighborInteractions(entities[1][1]);
-        Mockito.verify(entities[1][0], Mockito.never()).applyNeighborInteractions(entities[1][0]);
-        Mockito.verify(entities[1][0], Mockito.never()).applyNeighborInteractions(entities[0][1]);
+        Mockito.verify(entities[1][0]).applyNeighborInteractions(Mockito.eq(entities[0][0]), Mockito.eq(-1), Mockito.eq(0), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][0]).applyNeighborInteractions(Mockito.eq(entities[1][1]), Mockito.eq(0), Mockito.eq(1), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][0], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[1][0]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][0], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[0][1]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
 
-        Mockito.verify(entities[1][1]).applyNeighborInteractions(entities[1][0]);
-        Mockito.verify(entities[1][1]).applyNeighborInteractions(entities[0][1]);
-        Mockito.verify(entities[1][1], Mockito.never()).applyNeighborInteractions(entities[0][0]);
-        Mockito.verify(entities[1][1], Mockito.never()).applyNeighborInteractions(entities[1][1]);
+        Mockito.verify(entities[1][1]).applyNeighborInteractions(Mockito.eq(entities[1][0]), Mockito.eq(0), Mockito.eq(-1), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][1]).applyNeighborInteractions(Mockito.eq(entities[0][1]), Mockito.eq(-1), Mockito.eq(0), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][1], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[0][0]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
+        Mockito.verify(entities[1][1], Mockito.never()).applyNeighborInteractions(Mockito.eq(entities[1][1]), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyBoolean(), Mockito.anyBoolean());
+    }
+
+    /**
+     * A mock entity with the constants that the ghost cells beyond it copy from it
+     */
+    private static FluidEntity mockEntity() {
+        FluidEntity entity = Mockito.mock(FluidEntity.class);
+        Mockito.when(entity.getConstants()).thenReturn(PhysicalConstants.DEFAULT);
+        return entity;
     }
 
     @Test
@@ -108,4 +121,553 @@ public class UniverseTest {
         Assert.assertEquals(entity22DeltaX, entities[2][2].getDeltaY(), FluidEntity.FUZZ);
         Assert.assertEquals(entity20DeltaY, entities[2][0].getDeltaY(), FluidEntity.FUZZ);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInputsAddedAndRemovedWhileRunning() {
+        FluidEntity[][] entities = Setup.rectangle(5, 5);
+        Universe universe = new Universe(entities);
+        MassEmitter emitter = new MassEmitter(2, 2, 1, FluidEntity.DEFAULT_TEMPERATURE, Ink.argb(1, 0, 0, 1));
+
+        double mass = getTotalMass(entities);
+        universe.addInput(emitter);
+        universe.updateUniverseState();
+        Assert.assertEquals(mass + 1, getTotalMass(entities), FluidEntity.FUZZ);
+
+        universe.removeInput(emitter);
+        universe.updateUniverseState();
+        Assert.assertEquals(mass + 1, getTotalMass(entities), FluidEntity.FUZZ);
+        Assert.assertTrue(universe.getInputs().isEmpty());
+    }
+
+    @Test
+    public void testTracersCarriedByFlow() {
+        FluidEntity[][] entities = Setup.rectangle(16, 16);
+        for (FluidEntity[] column : entities) {
+            for (FluidEntity entity : column) {
+                entity.setDeltaX(FluidEntity.SPACE / 2.);
+            }
+        }
+        Universe universe = new Universe(entities);
+        TracerParticles tracers = universe.getTracers();
+        tracers.seed(4, 8, 4.001, 8.001, 1);
+        tracers.seed(-.5, -.5, 15.5, 15.5, 1000);
+        assertEquals(1001, tracers.getCount());
+
+        // Half a cell a step to the right
+        universe.updateUniverseState();
+        assertEquals(4.5, tracers.getXs()[0], .01);
+        assertEquals(8, tracers.getYs()[0], .01);
+
+        // Sorted by cell, and dropped once they've left the grid
+        for (int i = 1; i < TracerParticles.SORT_INTERVAL; i++) {
+            universe.updateUniverseState();
+        }
+        int count = tracers.getCount();
+        assertTrue(count > 0 && count < 1001);
+        CellLayout layout = universe.getGrid().getLayout();
+        int border = Subdomain.DEFAULT_BORDER;
+        for (int i = 0; i < count; i++) {
+            double x = tracers.getXs()[i];
+            assertTrue(x >= -.5 && x < 15.5);
+            if (i > 0) {
+                assertTrue(layout.index((int) Math.round(tracers.getXs()[i - 1]) + border, (int) Math.round(tracers.getYs()[i - 1]) + border)
+                        <= layout.index((int) Math.round(x) + border, (int) Math.round(tracers.getYs()[i]) + border));
+            }
+        }
+    }
+
+    @Test
+    public void testVorticityConfinementSpinsUpVortex() {
+        assertTrue(getCurlAfterSteps(.2, 10) > getCurlAfterSteps(0, 10) * 2);
+    }
+
+    /**
+     * Of the center of a small vortex, after steps with the given strength of vorticity confinement
+     */
+    private static double getCurlAfterSteps(double confinement, int steps) {
+        FluidEntity[][] entities = Setup.rectangle(15, 15);
+        for (int x = 0; x < 15; x++) {
+            for (int y = 0; y < 15; y++) {
+                double spin = Math.exp(-((x - 7) * (x - 7) + (y - 7) * (y - 7)) / 4.);
+                entities[x][y].setDeltaX(-(y - 7) * spin);
+                entities[x][y].setDeltaY((x - 7) * spin);
+            }
+        }
+        Universe universe = new Universe(entities);
+        universe.setVorticityConfinement(confinement);
+        for (int step = 0; step < steps; step++) {
+            universe.updateUniverseState();
+        }
+        return (entities[8][7].getDeltaY() - entities[6][7].getDeltaY() - entities[7][8].getDeltaX() + entities[7][6].getDeltaX()) / 2;
+    }
+
+    @Test
+    public void testImplicitViscosityOfMaterials() {
+        PhysicalConstants constants = new PhysicalConstants(0, .02, .0001, new MaterialTable(Arrays.asList(
+                new Material("air", 1, .0001, .1, 1, new IdealGas(.02, 1)),
+                new Material("honey", 1, .0001, 1000, 1, new IdealGas(.02, 1)))));
+        int side = 12;
+        int border = Subdomain.DEFAULT_BORDER;
+        Grid grid = new Grid(new CellLayout(side + 2 * border, side + 2 * border, CellLayout.Order.COLUMN_MAJOR),
+                GhostBoundary.CLAMP, GhostBoundary.CLAMP, Arrays.asList("air", "honey"));
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                FluidEntity entity = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+                entity.setConstants(constants);
+                grid.setEntity(x, y, entity);
+                // Honey on the left, and rows moving up and down in turn
+                entity.setScalar(x < grid.getWidth() / 2 ? 1 : 0, 1);
+                entity.setDeltaY(y % 2 == 0 ? 1 : -1);
+            }
+        }
+        Universe universe = new Universe(grid);
+        universe.setViscositySweeps(10);
+        universe.updateUniverseState();
+
+        // However viscous, no velocity grows, and the honey's rows are pulled together far more than the air's
+        FluidEntity[][] entities = universe.getEntities();
+        double[] honey = {Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] air = {Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                double deltaY = entities[x][y].getDeltaY();
+                assertTrue(Math.abs(deltaY) <= 1);
+                double[] range = x < side / 2 - 1 ? honey : x > side / 2 ? air : null;
+                if (range != null) {
+                    range[0] = Math.min(range[0], deltaY);
+                    range[1] = Math.max(range[1], deltaY);
+                }
+            }
+        }
+        assertTrue(honey[1] - honey[0] < (air[1] - air[0]) / 2);
+    }
+
+    @Test
+    public void testAdiConductionOfGoodConductor() {
+        FluidEntity[][] entities = Setup.rectangle(15, 15);
+        PhysicalConstants constants = new PhysicalConstants(0, .02, 5);
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                entity.setConstants(constants);
+            }
+        }
+        entities[7][7].setTemperature(40);
+        double heat = getTotalHeat(entities);
+
+        // Far beyond what explicit conduction can take in a step
+        Universe universe = new Universe(entities);
+        universe.setConduction(Universe.Conduction.ADI);
+        universe.updateUniverseState();
+
+        // Only the edges leak the little heat that reaches the ghost cells
+        Assert.assertEquals(heat, getTotalHeat(entities), heat * 1e-4);
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                assertTrue(entity.getTemperature() >= FluidEntity.DEFAULT_TEMPERATURE - FluidEntity.FUZZ);
+                assertTrue(entity.getTemperature() < 20);
+            }
+        }
+    }
+
+    @Test
+    public void testScalarsCarriedWithMass() {
+        int border = Subdomain.DEFAULT_BORDER;
+        Grid grid = new Grid(new CellLayout(6 + 2 * border, 6 + 2 * border, CellLayout.Order.MORTON),
+                GhostBoundary.CLAMP, GhostBoundary.CLAMP, Arrays.asList("dye", "salt"));
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                FluidEntity entity = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+                entity.setDeltaX(x < grid.getWidth() / 2 ? 2 : -1);
+                entity.setDeltaY(1);
+                grid.setEntity(x, y, entity);
+                if (x < grid.getWidth() / 2) {
+                    entity.setScalar(grid.getScalarFields().indexOf("dye"), 1);
+                }
+            }
+        }
+        Universe universe = new Universe(grid);
+        FluidEntity[][] entities = universe.getEntities();
+
+        double dye = getTotalScalar(entities, 0);
+        for (int i = 0; i < 20; i++) {
+            universe.updateUniverseState();
+        }
+
+        Assert.assertEquals(dye, getTotalScalar(entities, 0), FluidEntity.FUZZ);
+        Assert.assertEquals(0, getTotalScalar(entities, 1), FluidEntity.FUZZ);
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                Assert.assertTrue(entity.getScalar(0) >= 0 && entity.getScalar(0) <= 1 + FluidEntity.FUZZ);
+            }
+        }
+    }
+
+    @Test
+    public void testStaggeredVelocitiesPushedByPressure() {
+        FluidEntity[][] entities = Setup.rectangle(15, 15);
+        entities[7][7].setMass(20);
+        double mass = getTotalMass(entities);
+
+        Universe universe = new Universe(entities);
+        universe.setVelocityGrid(Universe.VelocityGrid.STAGGERED);
+        universe.updateUniverseState();
+
+        // The faces of the dense cell push its neighbors straight away from it, and cancel out in it
+        assertTrue(entities[8][7].getDeltaX() > 0);
+        assertEquals(-entities[8][7].getDeltaX(), entities[6][7].getDeltaX(), FluidEntity.FUZZ);
+        assertTrue(entities[7][8].getDeltaY() > 0);
+        assertTrue(entities[7][6].getDeltaY() < 0);
+        assertEquals(0, entities[7][7].getDeltaX(), FluidEntity.FUZZ);
+        assertEquals(entities[6][7].getDeltaY(), entities[8][7].getDeltaY(), FluidEntity.FUZZ);
+        assertEquals(mass, getTotalMass(entities), FluidEntity.FUZZ);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStaggeredVelocitiesOnlyAcrossWholeGrid() {
+        // The left half of a 20 wide grid, whose faces on the right would need the other half's
+        Subdomain subdomain = new Subdomain(20, 10, 0, 0, 10, 10);
+        Universe universe = new Universe(Setup.createGrid(subdomain), subdomain, HaloExchange.NONE);
+        universe.setVelocityGrid(Universe.VelocityGrid.STAGGERED);
+    }
+
+    @Test
+    public void testSnapshotsHeldWhileStepping() {
+        FluidEntity[][] entities = Setup.rectangle(10, 10);
+        entities[5][5].setMass(20);
+        Universe universe = new Universe(entities);
+        universe.setPublishingSnapshots(true);
+
+        DisplaySnapshot first = universe.getSnapshot();
+        assertEquals(0, first.getStep());
+        assertEquals(20, first.getMass(5, 5), FluidEntity.FUZZ);
+
+        // The one being read isn't written, however many steps are published meanwhile
+        for (int i = 0; i < 3; i++) {
+            universe.updateUniverseState();
+        }
+        assertEquals(0, first.getStep());
+        assertEquals(20, first.getMass(5, 5), FluidEntity.FUZZ);
+
+        DisplaySnapshot latest = universe.getSnapshot();
+        assertNotSame(first, latest);
+        assertEquals(3, latest.getStep());
+        assertEquals(entities[5][5].getMass(), latest.getMass(5, 5), 1e-4);
+        assertSame(latest, universe.getSnapshot());
+    }
+
+    @Test
+    public void testSnapshotsHoldTracers() {
+        FluidEntity[][] entities = Setup.rectangle(16, 16);
+        for (FluidEntity[] column : entities) {
+            for (FluidEntity entity : column) {
+                entity.setDeltaX(FluidEntity.SPACE / 2.);
+            }
+        }
+        Universe universe = new Universe(entities);
+        universe.getTracers().seed(4, 8, 4.001, 8.001, 1);
+        universe.setPublishingSnapshots(true);
+
+        DisplaySnapshot first = universe.getSnapshot();
+        assertEquals(1, first.getTracerCount());
+        assertEquals(4, first.getTracerX(0), .01);
+        assertEquals(8, first.getTracerY(0), .01);
+
+        // Moved in the latest, but not in the one being read
+        universe.updateUniverseState();
+        assertEquals(4, first.getTracerX(0), .01);
+        assertEquals(4.5, universe.getSnapshot().getTracerX(0), .01);
+
+        // Sampled once there are more than are drawn
+        universe.getTracers().seed(-.5, -.5, 15.5, 15.5, 3 * DisplaySnapshot.MAX_TRACERS);
+        universe.updateUniverseState();
+        int count = universe.getSnapshot().getTracerCount();
+        assertTrue(count > DisplaySnapshot.MAX_TRACERS / 2 && count <= DisplaySnapshot.MAX_TRACERS);
+    }
+
+    @Test
+    public void testSnapshotBlocksWeightedByMass() {
+        FluidEntity[][] entities = Setup.rectangle(4, 4);
+        entities[0][0].setMass(30);
+        entities[0][0].setTemperature(400);
+        entities[0][0].setInk(Ink.argb(1, 0, 0, 1));
+        entities[1][0].setMass(10);
+        entities[1][0].setTemperature(200);
+        Universe universe = new Universe(entities);
+        universe.setPublishingSnapshots(true);
+        DisplaySnapshot cells = universe.getSnapshot();
+
+        DisplaySnapshot blocks = new DisplaySnapshot(2, 2, 0);
+        blocks.aggregate(cells, 0, 0, 2);
+        double mass = 30 + 10 + cells.getMass(0, 1) + cells.getMass(1, 1);
+        assertEquals(mass / 4, blocks.getMass(0, 0), 1e-4);
+        double temperature = (30 * 400 + 10 * 200 + cells.getMass(0, 1) * cells.getTemperature(0, 1)
+                + cells.getMass(1, 1) * cells.getTemperature(1, 1)) / mass;
+        assertEquals(temperature, blocks.getTemperature(0, 0), 1e-3);
+        assertEquals(30 / mass, Ink.red(blocks.getInk(0, 0)), 1 / 255.0);
+        // The same as the cells where none are averaged together
+        assertEquals(cells.getMass(3, 3), blocks.getMass(1, 1), 1e-4);
+    }
+
+    @Test
+    public void testOpenBoundaryHeldAtItsState() {
+        // Fluid denser and hotter than the reservoir loses mass and heat into it, once it's pushed into motion, and
+        // the reservoir doesn't change
+        Universe universe = createBesideBoundary(CellType.OPEN, 2 * FluidEntity.DEFAULT_MASS, 2 * FluidEntity.DEFAULT_TEMPERATURE, 0);
+        double mass = getFluidMass(universe);
+        for (int i = 0; i < 3; i++) {
+            universe.updateUniverseState();
+        }
+        assertTrue(getFluidMass(universe) < mass);
+        assertTrue(universe.getEntities()[2][1].getTemperature() < 2 * FluidEntity.DEFAULT_TEMPERATURE);
+        assertBoundaryState(universe, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+
+        // And thinner fluid is supplied from it
+        universe = createBesideBoundary(CellType.OPEN, FluidEntity.DEFAULT_MASS / 2, FluidEntity.DEFAULT_TEMPERATURE, 0);
+        mass = getFluidMass(universe);
+        universe.updateUniverseState();
+        assertTrue(getFluidMass(universe) > mass);
+        assertBoundaryState(universe, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+    }
+
+    @Test
+    public void testMatchingBoundaryTakesOnTheFluid() {
+        Universe universe = createBesideBoundary(CellType.MATCHING, 2 * FluidEntity.DEFAULT_MASS, 2 * FluidEntity.DEFAULT_TEMPERATURE, 0);
+        double mass = getFluidMass(universe);
+        universe.updateUniverseState();
+        // Nothing is pushed or conducted across it
+        assertEquals(mass, getFluidMass(universe), 1e-9);
+        for (int y = 0; y < 3; y++) {
+            assertEquals(2 * FluidEntity.DEFAULT_TEMPERATURE, universe.getEntities()[2][y].getTemperature(), 1e-9);
+        }
+        assertBoundaryState(universe, 2 * FluidEntity.DEFAULT_MASS, 2 * FluidEntity.DEFAULT_TEMPERATURE);
+    }
+
+    @Test
+    public void testReflectiveBoundaryTurnsBackFluid() {
+        Universe universe = createBesideBoundary(CellType.REFLECTIVE, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE, 1);
+        universe.updateUniverseState();
+        for (int y = 0; y < 3; y++) {
+            assertTrue(universe.getEntities()[2][y].getDeltaX() < 0);
+        }
+        assertBoundaryState(universe, FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+    }
+
+    @Test
+    public void testFastCellMovesFurtherThanBorder() {
+        FluidEntity[][] entities = Setup.rectangle(16, 3);
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                entity.setConstants(new PhysicalConstants(0, .02, .0001));
+            }
+        }
+        // Three and a half cells a step, further than the border is wide
+        entities[6][1].setDeltaX(3.5 * FluidEntity.SPACE);
+        Universe universe = new Universe(entities);
+        universe.updateUniverseState();
+
+        // Half its mass moved to each of the cells it ends up between, and taken from those it came from between
+        assertEquals(1.5 * FluidEntity.DEFAULT_MASS, entities[9][1].getMass(), FluidEntity.FUZZ);
+        assertEquals(1.5 * FluidEntity.DEFAULT_MASS, entities[10][1].getMass(), FluidEntity.FUZZ);
+        assertEquals(.5 * FluidEntity.DEFAULT_MASS, entities[2][1].getMass(), FluidEntity.FUZZ);
+        assertEquals(.5 * FluidEntity.DEFAULT_MASS, entities[3][1].getMass(), FluidEntity.FUZZ);
+    }
+
+    @Test
+    public void testReflectiveGhostsTurnBackFluid() {
+        int width = 6;
+        int height = 4;
+        int border = Subdomain.DEFAULT_BORDER;
+        Grid grid = new Grid(new CellLayout(width + 2 * border, height + 2 * border, CellLayout.Order.COLUMN_MAJOR),
+                GhostBoundary.REFLECTIVE, GhostBoundary.CLAMP, Collections.emptyList());
+        PhysicalConstants constants = new PhysicalConstants(0, .02, .0001);
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                FluidEntity entity = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+                entity.setConstants(constants);
+                // Everything moving left, through the left edge
+                entity.setDeltaX(-1.5);
+                grid.setEntity(x, y, entity);
+            }
+        }
+        Universe universe = new Universe(grid);
+        double mass = getTotalMass(universe.getEntities());
+        universe.updateUniverseState();
+
+        // The ghosts hold the velocity of the cells mirrored across the edge, reversed
+        for (int x = 0; x < border; x++) {
+            for (int y = border; y < border + height; y++) {
+                assertEquals(1.5, grid.getEntity(x, y).getDeltaX(), FluidEntity.FUZZ);
+            }
+        }
+        // And what moved into them was handed back to the edge, turned back
+        assertEquals(mass, getTotalMass(universe.getEntities()), FluidEntity.FUZZ);
+        for (int y = 0; y < height; y++) {
+            assertTrue(universe.getEntities()[0][y].getMass() > FluidEntity.DEFAULT_MASS);
+            assertTrue(universe.getEntities()[0][y].getDeltaX() > -1.5);
+        }
+    }
+
+    /**
+     * Three columns of fluid in the given state, without gravity, then a column of boundary cells of the type at the
+     * default mass and temperature on the right
+     */
+    private static Universe createBesideBoundary(byte cellType, double mass, double temperature, double deltaX) {
+        PhysicalConstants constants = new PhysicalConstants(0, .02, .0001);
+        FluidEntity[][] cells = new FluidEntity[4][3];
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 3; y++) {
+                boolean boundary = x == 3;
+                cells[x][y] = new FluidEntity(boundary ? FluidEntity.DEFAULT_MASS : mass, boundary ? FluidEntity.DEFAULT_TEMPERATURE : temperature);
+                cells[x][y].setConstants(constants);
+                cells[x][y].setDeltaX(boundary ? 0 : deltaX);
+            }
+        }
+        int border = Subdomain.DEFAULT_BORDER;
+        Grid grid = Grid.withBorder(cells, border);
+        for (int y = 0; y < 3; y++) {
+            grid.setCellType(border + 3, border + y, cellType);
+        }
+        return new Universe(grid);
+    }
+
+    private static double getFluidMass(Universe universe) {
+        double mass = 0;
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                mass += universe.getEntities()[x][y].getMass();
+            }
+        }
+        return mass;
+    }
+
+    private static void assertBoundaryState(Universe universe, double mass, double temperature) {
+        for (int y = 0; y < 3; y++) {
+            FluidEntity boundary = universe.getEntities()[3][y];
+            assertEquals(mass, boundary.getMass(), 1e-9);
+            assertEquals(temperature, boundary.getTemperature(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testMacCormackInkStaysSharper() {
+        double carried = getInkSharpnessAfterSteps(Universe.InkAdvection.CARRIED, 40);
+        double traced = getInkSharpnessAfterSteps(Universe.InkAdvection.MACCORMACK, 40);
+        assertTrue(traced + " should be sharper than " + carried, traced > carried + .1);
+    }
+
+    /**
+     * Mean alpha of the ink weighted by its alpha, of a square blob drifting across a grid that wraps around
+     */
+    private static double getInkSharpnessAfterSteps(Universe.InkAdvection inkAdvection, int steps) {
+        int border = Subdomain.DEFAULT_BORDER;
+        Grid grid = new Grid(new CellLayout(24 + 2 * border, 24 + 2 * border, CellLayout.Order.COLUMN_MAJOR),
+                GhostBoundary.PERIODIC, GhostBoundary.PERIODIC, Collections.emptyList());
+        PhysicalConstants constants = new PhysicalConstants(0, .02, .0001);
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                FluidEntity entity = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+                entity.setConstants(constants);
+                entity.setDeltaX(2);
+                entity.setDeltaY(1);
+                grid.setEntity(x, y, entity);
+            }
+        }
+        for (int x = border + 4; x < border + 10; x++) {
+            for (int y = border + 4; y < border + 10; y++) {
+                grid.getEntity(x, y).setInk(1, 0, 0, 1);
+            }
+        }
+        Universe universe = new Universe(grid);
+        universe.setInkAdvection(inkAdvection);
+        for (int i = 0; i < steps; i++) {
+            universe.updateUniverseState();
+        }
+
+        double alpha = 0;
+        double squared = 0;
+        for (FluidEntity[] entityColumn : universe.getEntities()) {
+            for (FluidEntity entity : entityColumn) {
+                assertTrue(entity.getInkAlpha() >= 0 && entity.getInkAlpha() <= 1);
+                alpha += entity.getInkAlpha();
+                squared += entity.getInkAlpha() * entity.getInkAlpha();
+            }
+        }
+        return squared / alpha;
+    }
+
+    @Test
+    public void testSurfaceOfDrop() {
+        int side = 64;
+        double radius = 10;
+        Grid grid = new Grid(new CellLayout(side, side, CellLayout.Order.COLUMN_MAJOR), GhostBoundary.CLAMP, GhostBoundary.CLAMP,
+                Arrays.asList("water"));
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                FluidEntity entity = new FluidEntity(FluidEntity.DEFAULT_MASS, FluidEntity.DEFAULT_TEMPERATURE);
+                grid.setEntity(x, y, entity);
+                // Partly water along the surface, so that it's found between the cells rather than stepping round them
+                double distance = Math.hypot(x - side / 2, y - side / 2) - radius;
+                entity.setScalar(0, Math.max(0, Math.min(1, .5 - distance)));
+            }
+        }
+
+        NarrowBandLevelSet surface = new NarrowBandLevelSet(side, side, 3, 1);
+        surface.initialize(grid, 0);
+
+        // Only the blocks around the surface are kept
+        assertTrue(surface.getBandBlockCount() < surface.getBlockCount());
+        assertEquals(-3, surface.getDistance(side / 2, side / 2), FluidEntity.FUZZ);
+        assertEquals(3, surface.getDistance(0, 0), FluidEntity.FUZZ);
+        // Distances go up by a cell a cell, and the surface bulges out by the inverse of its radius
+        int edge = side / 2 + (int) radius;
+        assertEquals(1, surface.getDistance(edge + 1, side / 2) - surface.getDistance(edge, side / 2), .1);
+        double curvature = 0;
+        int surfaceCells = 0;
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                if (Math.abs(surface.getDistance(x, y)) < .5) {
+                    curvature += surface.getCurvature(x, y);
+                    surfaceCells++;
+                }
+            }
+        }
+        assertEquals(1 / radius, curvature / surfaceCells, .01);
+
+        // Its tension pulls the cells at the surface in
+        surface.applySurfaceTension(grid, false);
+        FluidEntity atSurface = grid.getEntity(edge, side / 2);
+        atSurface.changeForce();
+        assertTrue(atSurface.getDeltaX() < 0);
+        assertEquals(0, atSurface.getDeltaY(), FluidEntity.FUZZ);
+    }
+
+    private static double getTotalScalar(FluidEntity[][] entities, int field) {
+        double amount = 0;
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                amount += entity.getScalar(field) * entity.getMass();
+            }
+        }
+        return amount;
+    }
+
+    private static double getTotalMass(FluidEntity[][] entities) {
+        double mass = 0;
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                mass += entity.getMass();
+            }
+        }
+        return mass;
+    }
+
+    private static double getTotalHeat(FluidEntity[][] entities) {
+        double heat = 0;
+        for (FluidEntity[] entityColumn : entities) {
+            for (FluidEntity entity : entityColumn) {
+                heat += entity.getMass() * entity.getTemperature();
+            }
+        }
+        return heat;
+    }
+}
@@ -0,0 +1,110 @@
+package fluid.setup;
+
+import fluid.entity.FluidEntity;
+import fluid.physics.CellType;
+import fluid.physics.Grid;
+import fluid.physics.HaloExchange;
+import fluid.physics.Subdomain;
+import fluid.physics.Universe;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ScenarioTest {
+
+    @Test
+    public void testEvaluate() {
+        Assert.assertEquals(7, Scenario.evaluate("7", 30, 20));
+        Assert.assertEquals(14, Scenario.evaluate("width/2-1", 30, 20));
+        Assert.assertEquals(13, Scenario.evaluate("height*2/3", 30, 20));
+        Assert.assertEquals(50, Scenario.evaluate("width+height", 30, 20));
+        Assert.assertEquals(-5, Scenario.evaluate("5-width/3", 30, 20));
+    }
+
+    @Test
+    public void testBaseScenario() throws IOException {
+        Scenario candle = Scenario.load("candle");
+        Assert.assertEquals(220, candle.getWidth());
+        Assert.assertEquals(175, candle.getHeight());
+        Assert.assertEquals(4, candle.getCellRegions().size());
+        Assert.assertEquals(3, candle.createInputs(30, 20).size());
+        Assert.assertEquals(0, Scenario.load("box").createInputs(30, 20).size());
+    }
+
+    @Test
+    public void testCellRegionsLaidOverEachOther() throws IOException {
+        Grid grid = Setup.createGrid(Scenario.load("box"), Subdomain.whole(30, 20));
+        int border = Subdomain.DEFAULT_BORDER;
+
+        Assert.assertEquals(CellType.REFLECTIVE, grid.getCellType(border, border));
+        Assert.assertEquals(CellType.REFLECTIVE, grid.getCellType(border + 29, border));
+        Assert.assertEquals(CellType.MATCHING, grid.getCellType(border, border + 19));
+        Assert.assertEquals(CellType.OPEN, grid.getCellType(border, border + 1));
+        Assert.assertEquals(CellType.OPEN, grid.getCellType(border + 29, border + 18));
+        Assert.assertEquals(CellType.FLUID, grid.getCellType(border + 1, border + 1));
+    }
+
+    @Test
+    public void testScalarFields() throws IOException {
+        Scenario scenario = Scenario.load("kelvin-helmholtz");
+        Assert.assertEquals(Collections.singletonList("dye"), scenario.getScalarNames());
+        Assert.assertTrue(Scenario.load("candle").getScalarNames().isEmpty());
+
+        Grid grid = Setup.createGrid(scenario, Subdomain.whole(30, 20));
+        Assert.assertEquals(0, grid.getScalarFields().indexOf("dye"));
+        Assert.assertEquals(0, grid.getEntity(10, 10).getScalar(0), 0);
+    }
+
+    @Test
+    public void testMaterials() throws IOException {
+        Scenario scenario = Scenario.load("air-water");
+        Assert.assertEquals(Arrays.asList("air", "water"), scenario.getFieldNames());
+
+        Grid grid = Setup.createGrid(scenario, Subdomain.whole(30, 21));
+        int border = Subdomain.DEFAULT_BORDER;
+        FluidEntity water = grid.getEntity(border + 10, border + 3);
+        FluidEntity air = grid.getEntity(border + 3, border + 10);
+        Assert.assertEquals(1, water.getScalar(grid.getScalarFields().indexOf("water")), 0);
+        Assert.assertEquals(4, water.getRestDensity(), FluidEntity.FUZZ);
+        Assert.assertEquals(1, air.getRestDensity(), FluidEntity.FUZZ);
+        // Four times the mass, of four times the molar weight
+        Assert.assertEquals(air.getPressure(), water.getPressure(), FluidEntity.FUZZ);
+    }
+
+    @Test
+    public void testPhaseTransition() throws IOException {
+        Grid grid = Setup.createGrid(Scenario.load("boiling"), Subdomain.whole(30, 20));
+        int border = Subdomain.DEFAULT_BORDER;
+        FluidEntity water = grid.getEntity(border + 10, border + 2);
+        int waterField = grid.getScalarFields().indexOf("water");
+        int steamField = grid.getScalarFields().indexOf("steam");
+        // At rest, the liquid's pressure is that of the air over it
+        Assert.assertEquals(2, water.getPressure(), FluidEntity.FUZZ);
+
+        // 10 degrees over boiling, at a latent heat of 40, boils a quarter of the water and brings it down to boiling
+        water.setTemperature(35);
+        water.changePhase();
+        Assert.assertEquals(.75, water.getScalar(waterField), FluidEntity.FUZZ);
+        Assert.assertEquals(.25, water.getScalar(steamField), FluidEntity.FUZZ);
+        Assert.assertEquals(25, water.getTemperature(), FluidEntity.FUZZ);
+
+        // And it condenses back, giving the heat back
+        water.setTemperature(15);
+        water.changePhase();
+        Assert.assertEquals(1, water.getScalar(waterField), FluidEntity.FUZZ);
+        Assert.assertEquals(0, water.getScalar(steamField), FluidEntity.FUZZ);
+        Assert.assertEquals(25, water.getTemperature(), FluidEntity.FUZZ);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testConfigureRefusesSurfaceOnSubdomain() throws IOException {
+        Scenario scenario = Scenario.load("surface-tension");
+        Subdomain subdomain = new Subdomain(30, 20, 0, 0, 15, 20);
+        Universe universe = new Universe(Setup.createGrid(scenario, subdomain), subdomain, HaloExchange.NONE);
+        Setup.configure(universe, scenario);
+    }
+
+}